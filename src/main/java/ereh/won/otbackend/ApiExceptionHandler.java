@@ -1,6 +1,9 @@
 package ereh.won.otbackend;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -9,7 +12,11 @@ import java.time.Instant;
 
 @RestControllerAdvice
 public class ApiExceptionHandler {
-    private static final String INVALID_PRIME_POSITION_CODE = "INVALID_PRIME_POSITION";
+    static final String INVALID_PRIME_POSITION_CODE = "INVALID_PRIME_POSITION";
+    static final String COMPUTATION_UNAVAILABLE_CODE = "PRIME_COMPUTATION_UNAVAILABLE";
+    private static final String INVALID_BATCH_CODE = "INVALID_PRIME_BATCH";
+    private static final String INVALID_RANGE_CODE = "INVALID_PRIME_RANGE";
+    private static final String JOB_NOT_FOUND_CODE = "PRIME_JOB_NOT_FOUND";
 
     @ExceptionHandler(InvalidNumberException.class)
     public ResponseEntity<ApiErrorResponse> handleInvalidNumberException(InvalidNumberException exception,
@@ -20,6 +27,73 @@ public class ApiExceptionHandler {
                 request.getRequestURI(),
                 Instant.now()
         );
-        return ResponseEntity.badRequest().body(error);
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(error);
+    }
+
+    @ExceptionHandler(InvalidBatchException.class)
+    public ResponseEntity<ApiErrorResponse> handleInvalidBatchException(InvalidBatchException exception,
+                                                                        HttpServletRequest request) {
+        ApiErrorResponse error = new ApiErrorResponse(
+                INVALID_BATCH_CODE,
+                exception.getMessage(),
+                request.getRequestURI(),
+                Instant.now()
+        );
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(error);
+    }
+
+    @ExceptionHandler(InvalidRangeException.class)
+    public ResponseEntity<ApiErrorResponse> handleInvalidRangeException(InvalidRangeException exception,
+                                                                        HttpServletRequest request) {
+        ApiErrorResponse error = new ApiErrorResponse(
+                INVALID_RANGE_CODE,
+                exception.getMessage(),
+                request.getRequestURI(),
+                Instant.now()
+        );
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(error);
+    }
+
+    @ExceptionHandler(JobNotFoundException.class)
+    public ResponseEntity<ApiErrorResponse> handleJobNotFoundException(JobNotFoundException exception,
+                                                                       HttpServletRequest request) {
+        ApiErrorResponse error = new ApiErrorResponse(
+                JOB_NOT_FOUND_CODE,
+                exception.getMessage(),
+                request.getRequestURI(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(error);
+    }
+
+    @ExceptionHandler(ComputationRejectedException.class)
+    public ResponseEntity<ApiErrorResponse> handleComputationRejectedException(
+            ComputationRejectedException exception, HttpServletRequest request) {
+        ApiErrorResponse error = new ApiErrorResponse(
+                COMPUTATION_UNAVAILABLE_CODE,
+                exception.getMessage(),
+                request.getRequestURI(),
+                Instant.now()
+        );
+        // Retry-After is whole seconds, and zero would invite an immediate retry into the same overload
+        long retryAfterSeconds = Math.max(1, (exception.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(error);
+    }
+
+    @ExceptionHandler(ComputationUnavailableException.class)
+    public ResponseEntity<ApiErrorResponse> handleComputationUnavailableException(
+            ComputationUnavailableException exception, HttpServletRequest request) {
+        ApiErrorResponse error = new ApiErrorResponse(
+                COMPUTATION_UNAVAILABLE_CODE,
+                exception.getMessage(),
+                request.getRequestURI(),
+                Instant.now()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(error);
     }
 }
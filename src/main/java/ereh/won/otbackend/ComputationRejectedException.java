@@ -0,0 +1,15 @@
+package ereh.won.otbackend;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public class ComputationRejectedException extends ComputationUnavailableException {
+    private final Duration retryAfter;
+
+    public ComputationRejectedException(long position, String reason, Duration retryAfter) {
+        super(position, reason);
+        this.retryAfter = retryAfter;
+    }
+}
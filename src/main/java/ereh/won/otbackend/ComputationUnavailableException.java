@@ -0,0 +1,8 @@
+package ereh.won.otbackend;
+
+public class ComputationUnavailableException extends RuntimeException {
+
+    public ComputationUnavailableException(long position, String reason) {
+        super("Prime at position " + position + " is not available: " + reason);
+    }
+}
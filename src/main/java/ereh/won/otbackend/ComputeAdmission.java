@@ -0,0 +1,159 @@
+package ereh.won.otbackend;
+
+import lombok.extern.java.Log;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cost-aware bulkhead in front of the engine. Every computation holds its estimated cost (see
+ * {@code PrimeEngine.estimateCost}) out of a shared budget while it runs, so a few large sieves use up
+ * the budget that many small ones would share. No computation holds more than the weight cap, however
+ * long it runs: a prime counting jump or a background job keeps one thread busy like a full sieve
+ * does, and must not lock cheap misses out. When the budget is spent, callers queue in arrival order
+ * for at most the queue timeout, and callers beyond the queue capacity are refused at once. Both
+ * refusals carry a retry hint. Computations estimated to cost nothing, such as answers already in the
+ * in-memory table, never wait. Only misses reach this point; cache hits are answered before it.
+ */
+@Log
+public class ComputeAdmission {
+    private static final Permit FREE = () -> {
+    };
+
+    private final ServiceMetrics serviceMetrics;
+    private final long budget;
+    private final long maxWeight;
+    private final int maxQueued;
+    private final Duration queueTimeout;
+    private final Duration retryAfter;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final ArrayDeque<Object> queue = new ArrayDeque<>();
+    private long inUse;
+
+    public ComputeAdmission(ServiceMetrics serviceMetrics, long budget, int maxQueued, Duration queueTimeout,
+                            Duration retryAfter) {
+        this(serviceMetrics, budget, budget, maxQueued, queueTimeout, retryAfter);
+    }
+
+    public ComputeAdmission(ServiceMetrics serviceMetrics, long budget, long maxWeight, int maxQueued,
+                            Duration queueTimeout, Duration retryAfter) {
+        if (budget < 1) {
+            throw new IllegalArgumentException("Admission budget must be positive: " + budget);
+        }
+        if (maxWeight < 1 || maxWeight > budget) {
+            throw new IllegalArgumentException("Admission weight cap must be between 1 and the budget: " + maxWeight);
+        }
+        if (maxQueued < 0 || queueTimeout.isNegative() || retryAfter.isNegative()) {
+            throw new IllegalArgumentException("Admission queue settings must not be negative");
+        }
+        this.serviceMetrics = serviceMetrics;
+        this.budget = budget;
+        this.maxWeight = maxWeight;
+        this.maxQueued = maxQueued;
+        this.queueTimeout = queueTimeout;
+        this.retryAfter = retryAfter;
+    }
+
+    public static ComputeAdmission unlimited(ServiceMetrics serviceMetrics) {
+        return new ComputeAdmission(serviceMetrics, Long.MAX_VALUE, 0, Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * Reserves {@code cost} of the budget, at most the weight cap, for the computation of
+     * {@code position}, waiting for it if others hold it. Close the permit when the computation ends.
+     *
+     * @throws ComputationRejectedException when the queue is full or the wait times out
+     */
+    public Permit admit(long position, long cost) {
+        long weight = Math.min(Math.max(cost, 0), maxWeight);
+        if (weight == 0) {
+            return FREE;
+        }
+        acquire(position, weight);
+        serviceMetrics.recordAdmissionCostInUse(weight);
+        return () -> release(weight);
+    }
+
+    public long inUse() {
+        lock.lock();
+        try {
+            return inUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire(long position, long weight) {
+        lock.lock();
+        try {
+            if (queue.isEmpty() && weight <= budget - inUse) {
+                inUse += weight;
+                return;
+            }
+            if (queue.size() >= maxQueued) {
+                throw reject(position, "queue_full", "the compute budget is exhausted");
+            }
+
+            Object ticket = new Object();
+            queue.addLast(ticket);
+            serviceMetrics.recordAdmissionQueued(1);
+            try {
+                long remaining = queueTimeout.toNanos();
+                // first come, first served: a large computation at the head is not overtaken by small ones
+                while (queue.peekFirst() != ticket || weight > budget - inUse) {
+                    if (remaining <= 0) {
+                        throw reject(position, "timeout", "timed out waiting for compute budget");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inUse += weight;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject(position, "cancelled", "cancelled while waiting for compute budget");
+            } finally {
+                queue.remove(ticket);
+                serviceMetrics.recordAdmissionQueued(-1);
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long weight) {
+        lock.lock();
+        try {
+            inUse -= weight;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        serviceMetrics.recordAdmissionCostInUse(-weight);
+    }
+
+    private ComputationRejectedException reject(long position, String reason, String message) {
+        serviceMetrics.recordAdmissionRejected(reason);
+        log.warning("Rejected computation of position " + position + " (" + reason + "), " + inUse + " of "
+                + budget + " in use");
+        return new ComputationRejectedException(position, message, retryAfter);
+    }
+
+    /** A held share of the budget, given back on {@link #close()}. */
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,92 @@
+package ereh.won.otbackend;
+
+import lombok.extern.java.Log;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Single-flight deduplication of prime computations. The first caller for a position runs the
+ * computation on its own thread and publishes the result through a future; callers arriving while it
+ * runs wait on that future instead of computing again. A waiter that times out or is interrupted
+ * gives up alone: the shared computation keeps running for the owner and the remaining waiters. The
+ * entry is removed once the computation settles, so a failure is reported to everyone waiting on it
+ * and the next request starts a fresh attempt.
+ */
+@Log
+public class InFlightComputations {
+    public static final Duration DEFAULT_WAIT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ConcurrentHashMap<Long, CompletableFuture<Long>> inFlight = new ConcurrentHashMap<>();
+    private final ServiceMetrics serviceMetrics;
+    private final Duration waitTimeout;
+
+    public InFlightComputations(ServiceMetrics serviceMetrics, Duration waitTimeout) {
+        if (waitTimeout.isNegative() || waitTimeout.isZero()) {
+            throw new IllegalArgumentException("Wait timeout must be positive: " + waitTimeout);
+        }
+        this.serviceMetrics = serviceMetrics;
+        this.waitTimeout = waitTimeout;
+    }
+
+    public long computeOnce(long position, LongUnaryOperator computation) {
+        CompletableFuture<Long> owned = new CompletableFuture<>();
+        CompletableFuture<Long> existing = inFlight.putIfAbsent(position, owned);
+        if (existing != null) {
+            return await(position, existing);
+        }
+
+        serviceMetrics.recordInFlightComputation(1);
+        try {
+            long result = computation.applyAsLong(position);
+            owned.complete(result);
+            return result;
+        } catch (Throwable failure) {
+            owned.completeExceptionally(failure);
+            throw failure;
+        } finally {
+            inFlight.remove(position, owned);
+            serviceMetrics.recordInFlightComputation(-1);
+        }
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    int waiters(long position) {
+        CompletableFuture<Long> flight = inFlight.get(position);
+        return flight == null ? 0 : flight.getNumberOfDependents();
+    }
+
+    private long await(long position, CompletableFuture<Long> flight) {
+        try {
+            long result = flight.get(waitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            serviceMetrics.recordCoalescedWaiter("joined");
+            return result;
+        } catch (TimeoutException e) {
+            serviceMetrics.recordCoalescedWaiter("timeout");
+            log.warning("Gave up waiting " + waitTimeout + " for in-flight computation of position " + position);
+            throw new ComputationUnavailableException(position, "timed out waiting for in-flight computation");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            serviceMetrics.recordCoalescedWaiter("cancelled");
+            throw new ComputationUnavailableException(position, "cancelled while waiting for in-flight computation");
+        } catch (ExecutionException e) {
+            serviceMetrics.recordCoalescedWaiter("failed");
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("In-flight computation of position " + position + " failed", cause);
+        }
+    }
+}
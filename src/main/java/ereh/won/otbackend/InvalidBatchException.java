@@ -0,0 +1,13 @@
+package ereh.won.otbackend;
+
+public class InvalidBatchException extends RuntimeException {
+
+    public InvalidBatchException(int size) {
+        super("A batch must contain between 1 and " + PrimesService.MAX_BATCH_POSITIONS
+                + " positions. Received: " + size);
+    }
+
+    public InvalidBatchException(String message) {
+        super(message);
+    }
+}
@@ -2,7 +2,9 @@ package ereh.won.otbackend;
 
 public class InvalidNumberException extends RuntimeException {
 
-    public InvalidNumberException(int value) {
-        super("Prime position must be greater than zero. Received: " + value);
+    public InvalidNumberException(long value) {
+        super(value < 1
+                ? "Prime position must be greater than zero. Received: " + value
+                : "Prime position must not exceed " + PrimeUtils.MAX_POSITION + ". Received: " + value);
     }
 }
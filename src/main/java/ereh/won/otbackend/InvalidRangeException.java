@@ -0,0 +1,8 @@
+package ereh.won.otbackend;
+
+public class InvalidRangeException extends RuntimeException {
+
+    public InvalidRangeException(String message) {
+        super(message);
+    }
+}
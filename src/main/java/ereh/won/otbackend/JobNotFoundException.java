@@ -0,0 +1,8 @@
+package ereh.won.otbackend;
+
+public class JobNotFoundException extends RuntimeException {
+
+    public JobNotFoundException(String id) {
+        super("No prime job with id " + id + ". Finished jobs are kept for a limited time.");
+    }
+}
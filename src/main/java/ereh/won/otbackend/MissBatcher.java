@@ -0,0 +1,245 @@
+package ereh.won.otbackend;
+
+import ereh.won.otbackend.cache.CacheMetrics;
+import ereh.won.otbackend.cache.PrimeCache;
+import ereh.won.otbackend.cache.PrimeCacheEntry;
+import ereh.won.otbackend.cache.PrimeCacheKey;
+import ereh.won.otbackend.prime.PrimeEngine;
+import lombok.extern.java.Log;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Computes cache misses and writes them back, optionally in micro-batches. With a positive window the
+ * first miss opens a batch and holds it open for the window (or until it is full); misses arriving
+ * meanwhile join it. The opener then answers every position in one ascending pass of the engine,
+ * writes the results to the cache in one bulk write and completes each waiting caller. A zero window
+ * computes and writes each miss on its own. Either way the engine continues from the nearest cached
+ * answer below the (smallest) position when the cache knows one, and only once {@link ComputeAdmission}
+ * has let the estimated cost of all its passes in.
+ */
+@Log
+public class MissBatcher {
+    private static final PrimeCacheEntry NO_FLOOR = new PrimeCacheEntry(0, 0);
+
+    private final PrimeEngine primeEngine;
+    private final PrimeCache primeCache;
+    private final CacheMetrics cacheMetrics;
+    private final ServiceMetrics serviceMetrics;
+    private final ComputeAdmission admission;
+    private final long maxBatchCost;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchFull = lock.newCondition();
+    private List<Miss> openBatch;
+
+    public MissBatcher(PrimeEngine primeEngine, PrimeCache primeCache, CacheMetrics cacheMetrics,
+                       ServiceMetrics serviceMetrics, Duration window, int maxBatchSize) {
+        this(primeEngine, primeCache, cacheMetrics, serviceMetrics, ComputeAdmission.unlimited(serviceMetrics),
+                window, maxBatchSize);
+    }
+
+    public MissBatcher(PrimeEngine primeEngine, PrimeCache primeCache, CacheMetrics cacheMetrics,
+                       ServiceMetrics serviceMetrics, ComputeAdmission admission, Duration window, int maxBatchSize) {
+        this(primeEngine, primeCache, cacheMetrics, serviceMetrics, admission, Long.MAX_VALUE, window, maxBatchSize);
+    }
+
+    /**
+     * {@code maxBatchCost} bounds the summed estimate of the misses passed to {@link #computeAndCacheAll}
+     * together; misses batched through the window are single lookups and are not bounded.
+     */
+    public MissBatcher(PrimeEngine primeEngine, PrimeCache primeCache, CacheMetrics cacheMetrics,
+                       ServiceMetrics serviceMetrics, ComputeAdmission admission, long maxBatchCost, Duration window,
+                       int maxBatchSize) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("Batch window must not be negative: " + window);
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        }
+        this.primeEngine = primeEngine;
+        this.primeCache = primeCache;
+        this.cacheMetrics = cacheMetrics;
+        this.serviceMetrics = serviceMetrics;
+        this.admission = admission;
+        this.maxBatchCost = maxBatchCost;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public static MissBatcher unbatched(PrimeEngine primeEngine, PrimeCache primeCache, CacheMetrics cacheMetrics,
+                                        ServiceMetrics serviceMetrics) {
+        return new MissBatcher(primeEngine, primeCache, cacheMetrics, serviceMetrics, Duration.ZERO, 1);
+    }
+
+    public long computeAndCache(long position) {
+        if (window.isZero() || maxBatchSize == 1) {
+            return computeAndCacheAlone(position);
+        }
+
+        Miss miss = new Miss(position, new CompletableFuture<>());
+        List<Miss> batch = null;
+        lock.lock();
+        try {
+            if (openBatch == null) {
+                openBatch = new ArrayList<>();
+                openBatch.add(miss);
+                batch = collect();
+            } else {
+                openBatch.add(miss);
+                if (openBatch.size() >= maxBatchSize) {
+                    batchFull.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (batch != null) {
+            run(batch);
+        }
+        try {
+            return miss.prime().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    // called with the lock held by the miss that opened the batch
+    private List<Miss> collect() {
+        long remaining = window.toNanos();
+        while (openBatch.size() < maxBatchSize && remaining > 0) {
+            try {
+                remaining = batchFull.awaitNanos(remaining);
+            } catch (InterruptedException e) {
+                // the joined callers still need their answers, so close the batch early instead
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        List<Miss> batch = openBatch;
+        openBatch = null;
+        return batch;
+    }
+
+    /**
+     * Computes and caches misses that arrived together, such as those of one batch request: one floor
+     * lookup, one ascending engine pass and one bulk write, without waiting for a window.
+     *
+     * @param positions ascending, distinct positions
+     * @return the primes at {@code positions}, index for index
+     * @throws InvalidBatchException when computing the positions is estimated to cost more than the
+     *                               batch limit
+     */
+    public long[] computeAndCacheAll(long[] positions) {
+        if (positions.length == 0) {
+            return positions;
+        }
+        return computeBatch(positions, maxBatchCost);
+    }
+
+    private void run(List<Miss> batch) {
+        try {
+            long[] positions = batch.stream().mapToLong(Miss::position).sorted().distinct().toArray();
+            long[] primes = computeBatch(positions, Long.MAX_VALUE);
+            for (Miss miss : batch) {
+                miss.prime().complete(primes[Arrays.binarySearch(positions, miss.position())]);
+            }
+        } catch (Throwable failure) {
+            for (Miss miss : batch) {
+                miss.prime().completeExceptionally(failure);
+            }
+        }
+    }
+
+    private long[] computeBatch(long[] positions, long maxCost) {
+        long started = System.nanoTime();
+        PrimeCacheEntry floor = floorOf(positions[0]);
+        long cost = primeEngine.estimateBatchCost(floor.position(), floor.prime(), positions);
+        if (cost > maxCost) {
+            throw new InvalidBatchException("Computing the " + positions.length
+                    + " uncached positions of the batch would cost an estimated " + cost + ", more than the limit of "
+                    + maxCost + ". Request fewer or closer positions, or submit the distant ones as jobs.");
+        }
+        long[] primes;
+        try (ComputeAdmission.Permit permit = admission.admit(positions[0], cost)) {
+            primes = primeEngine.nthPrimesAfter(floor.position(), floor.prime(), positions);
+        }
+
+        Map<PrimeCacheKey, Long> entries = new LinkedHashMap<>();
+        for (int i = 0; i < positions.length; i++) {
+            entries.put(new PrimeCacheKey(positions[i]), primes[i]);
+        }
+        write(entries);
+        serviceMetrics.recordMissBatch(positions.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return primes;
+    }
+
+    /**
+     * Computes and caches one miss straight away, never in a window batch, for callers such as
+     * background jobs that should neither hold up nor be held up by the requests around them.
+     */
+    public long computeAndCacheAlone(long position) {
+        PrimeCacheEntry floor = floorOf(position);
+        if (floor.position() == position) {
+            return floor.prime();
+        }
+        long cost = primeEngine.estimateCost(floor.position(), floor.prime(), position);
+        long computedPrime;
+        try (ComputeAdmission.Permit permit = admission.admit(position, cost)) {
+            computedPrime = primeEngine.nthPrimeAfter(floor.position(), floor.prime(), position);
+        }
+        try {
+            primeCache.put(new PrimeCacheKey(position), computedPrime);
+            cacheMetrics.record("put", "success");
+        } catch (Exception e) {
+            log.warning("Failed to write prime at position " + position + " to cache: " + e.getMessage());
+            cacheMetrics.record("put", "error");
+        }
+        return computedPrime;
+    }
+
+    // the nearest cached answer at or below the position, or (0, 0) when none is known
+    private PrimeCacheEntry floorOf(long position) {
+        try {
+            Optional<PrimeCacheEntry> floor = primeCache.floor(position);
+            cacheMetrics.record("floor", floor.isPresent() ? "hit" : "miss");
+            return floor.orElse(NO_FLOOR);
+        } catch (Exception e) {
+            log.warning("Failed to read cache floor for position " + position + ": " + e.getMessage());
+            cacheMetrics.record("floor", "error");
+            return NO_FLOOR;
+        }
+    }
+
+    private void write(Map<PrimeCacheKey, Long> entries) {
+        try {
+            primeCache.putAll(entries);
+            cacheMetrics.record("put_all", "success");
+        } catch (Exception e) {
+            log.warning("Failed to write " + entries.size() + " primes to cache: " + e.getMessage());
+            cacheMetrics.record("put_all", "error");
+        }
+    }
+
+    private record Miss(long position, CompletableFuture<Long> prime) {
+    }
+}
@@ -0,0 +1,6 @@
+package ereh.won.otbackend;
+
+import java.util.List;
+
+public record PrimeBatchResponse(List<PrimeBatchResult> results) {
+}
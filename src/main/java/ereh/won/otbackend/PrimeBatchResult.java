@@ -0,0 +1,19 @@
+package ereh.won.otbackend;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One position of a batch response: either its prime, or the error code and message the single
+ * lookup would have answered with.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PrimeBatchResult(long position, Long prime, String code, String message) {
+
+    public static PrimeBatchResult found(long position, long prime) {
+        return new PrimeBatchResult(position, prime, null, null);
+    }
+
+    public static PrimeBatchResult failed(long position, String code, String message) {
+        return new PrimeBatchResult(position, null, code, message);
+    }
+}
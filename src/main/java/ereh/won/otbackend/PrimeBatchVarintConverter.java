@@ -0,0 +1,67 @@
+package ereh.won.otbackend;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes batch responses in the {@link PrimeGapEncoding} batch layout when a client accepts it. Error
+ * messages are not carried; the tag says which error code the JSON response would have reported.
+ */
+@Component
+public class PrimeBatchVarintConverter extends AbstractHttpMessageConverter<PrimeBatchResponse> {
+
+    public PrimeBatchVarintConverter() {
+        super(PrimeGapEncoding.MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return PrimeBatchResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected PrimeBatchResponse readInternal(Class<? extends PrimeBatchResponse> clazz,
+                                              HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Batch responses are write-only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(PrimeBatchResponse response, HttpOutputMessage outputMessage) throws IOException {
+        List<PrimeBatchResult> results = response.results();
+        byte[] buffer = new byte[PrimeGapEncoding.HEADER_BYTES
+                + PrimeGapEncoding.MAX_VARINT_BYTES * (1 + 2 * results.size())];
+        int length = PrimeGapEncoding.putHeader(buffer, 0, PrimeGapEncoding.BATCH);
+        length = PrimeGapEncoding.putVarint(buffer, length, results.size());
+        long previousPosition = 0;
+        long previousPrime = 0;
+        for (PrimeBatchResult result : results) {
+            length = PrimeGapEncoding.putVarint(buffer, length,
+                    PrimeGapEncoding.zigzag(result.position() - previousPosition));
+            previousPosition = result.position();
+            long tag;
+            if (result.prime() != null) {
+                tag = PrimeGapEncoding.PRIME_TAG_OFFSET + PrimeGapEncoding.zigzag(result.prime() - previousPrime);
+                previousPrime = result.prime();
+            } else if (ApiExceptionHandler.INVALID_PRIME_POSITION_CODE.equals(result.code())) {
+                tag = PrimeGapEncoding.INVALID_POSITION_TAG;
+            } else {
+                tag = PrimeGapEncoding.UNAVAILABLE_TAG;
+            }
+            length = PrimeGapEncoding.putVarint(buffer, length, tag);
+        }
+        outputMessage.getHeaders().setContentLength(length);
+        outputMessage.getBody().write(buffer, 0, length);
+    }
+}
@@ -0,0 +1,38 @@
+package ereh.won.otbackend;
+
+/**
+ * Strong entity tags for single-prime answers, {@code "<position>-<prime>"}. The prime at a position
+ * never changes, so a tag the service issued for a position stays valid forever.
+ */
+public final class PrimeETag {
+
+    private PrimeETag() {
+    }
+
+    public static String of(long position, long prime) {
+        return "\"" + position + "-" + prime + "\"";
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header names the tag of {@code prime} at {@code position}, the
+     * answer the service actually holds. Weak tags are compared by their opaque part, as RFC 9110
+     * prescribes for {@code If-None-Match}; {@code *} is not matched because the answer would have no
+     * tag to send.
+     */
+    public static boolean matches(String ifNoneMatch, long position, long prime) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String expected = of(position, prime);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.strip();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
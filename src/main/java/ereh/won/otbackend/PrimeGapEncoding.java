@@ -0,0 +1,56 @@
+package ereh.won.otbackend;
+
+import org.springframework.http.MediaType;
+
+/**
+ * The {@code application/vnd.primes.varint} wire format for bulk responses. Every body starts with a
+ * four-byte header: the magic bytes {@code 'P' 'G'}, the format version and a kind byte. Numbers are
+ * unsigned LEB128 varints; signed deltas are zigzag-encoded first.
+ * <ul>
+ *     <li>Range ({@code 'R'}): the position of the first prime, then the gap from the previous prime
+ *     (starting from zero) for every prime until the end of the body.</li>
+ *     <li>Batch ({@code 'B'}): the number of results, then per result the position delta from the
+ *     previous result and a tag: {@code 0} for an invalid position, {@code 1} when the computation was
+ *     unavailable, otherwise {@code 2 +} the prime delta from the previous successful result.</li>
+ * </ul>
+ * Gaps between consecutive primes below 2^40 fit in one or two bytes, against ten or more for the
+ * same prime in JSON.
+ */
+public final class PrimeGapEncoding {
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.primes.varint";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+    public static final byte VERSION = 1;
+    public static final byte RANGE = 'R';
+    public static final byte BATCH = 'B';
+    public static final int HEADER_BYTES = 4;
+    public static final int MAX_VARINT_BYTES = 10;
+    public static final int INVALID_POSITION_TAG = 0;
+    public static final int UNAVAILABLE_TAG = 1;
+    public static final int PRIME_TAG_OFFSET = 2;
+
+    private PrimeGapEncoding() {
+    }
+
+    /** Writes the header for {@code kind} at {@code offset} and returns the offset after it. */
+    public static int putHeader(byte[] buffer, int offset, byte kind) {
+        buffer[offset] = 'P';
+        buffer[offset + 1] = 'G';
+        buffer[offset + 2] = VERSION;
+        buffer[offset + 3] = kind;
+        return offset + HEADER_BYTES;
+    }
+
+    /** Writes {@code value} as an unsigned varint at {@code offset} and returns the offset after it. */
+    public static int putVarint(byte[] buffer, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
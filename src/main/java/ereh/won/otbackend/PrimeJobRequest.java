@@ -0,0 +1,4 @@
+package ereh.won.otbackend;
+
+public record PrimeJobRequest(long position) {
+}
@@ -0,0 +1,200 @@
+package ereh.won.otbackend;
+
+import ereh.won.otbackend.cache.CacheMetrics;
+import ereh.won.otbackend.cache.PrimeCache;
+import ereh.won.otbackend.cache.PrimeCacheEntry;
+import ereh.won.otbackend.prime.PrimeComputeProperties;
+import ereh.won.otbackend.prime.PrimeEngine;
+import ereh.won.otbackend.prime.PrimeProgress;
+import lombok.extern.java.Log;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs expensive lookups off the request thread. A submission whose estimated cost is within the
+ * threshold, or whose answer is already cached, is answered inline. Anything dearer becomes a job on
+ * a fixed pool with a bounded queue, and a full queue is refused rather than buffered. Jobs own their
+ * computation: they go through {@link MissBatcher} on their own, outside request coalescing and batch
+ * windows, so no job waits out a request's timeout, no request waits on a job, and the job thread is
+ * the one that reports progress. They still pass admission and leave their answer in the cache.
+ */
+@Log
+public class PrimeJobService implements AutoCloseable {
+    public static final String JOBS_ENDPOINT = "/api/primes/jobs";
+    private static final String INVALID_INPUT_ERROR_TYPE = "invalid_input";
+    private static final PrimeCacheEntry NO_FLOOR = new PrimeCacheEntry(0, 0);
+    private static final int ADMISSION_ATTEMPTS = 60;
+
+    private final PrimesService primesService;
+    private final MissBatcher missBatcher;
+    private final PrimeEngine primeEngine;
+    private final PrimeCache primeCache;
+    private final CacheMetrics cacheMetrics;
+    private final ServiceMetrics serviceMetrics;
+    private final long costThreshold;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, PrimeJob> jobs = new ConcurrentHashMap<>();
+
+    public PrimeJobService(PrimesService primesService, MissBatcher missBatcher, PrimeEngine primeEngine,
+                           PrimeCache primeCache, CacheMetrics cacheMetrics, ServiceMetrics serviceMetrics,
+                           PrimeComputeProperties.Jobs properties) {
+        if (properties.getThreads() < 1 || properties.getQueueCapacity() < 1) {
+            throw new IllegalArgumentException("Job threads and queue capacity must be positive");
+        }
+        this.primesService = primesService;
+        this.missBatcher = missBatcher;
+        this.primeEngine = primeEngine;
+        this.primeCache = primeCache;
+        this.cacheMetrics = cacheMetrics;
+        this.serviceMetrics = serviceMetrics;
+        this.costThreshold = properties.getCostThreshold();
+        this.retention = properties.getRetention();
+        AtomicInteger workerCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()), runnable -> {
+                    Thread thread = new Thread(runnable, "prime-job-" + workerCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Answers the position inline when that is cheap, otherwise queues a job and returns its status.
+     *
+     * @throws InvalidNumberException when the position is out of range
+     * @throws ComputationUnavailableException when the job queue is full
+     */
+    public PrimeJobStatus submit(long position) {
+        if (position < 1 || position > PrimeUtils.MAX_POSITION) {
+            serviceMetrics.recordError(JOBS_ENDPOINT, INVALID_INPUT_ERROR_TYPE);
+            throw new InvalidNumberException(position);
+        }
+        serviceMetrics.recordRequest(JOBS_ENDPOINT);
+        pruneFinishedJobs();
+
+        PrimeCacheEntry floor = floorOf(position);
+        if (floor.position() == position) {
+            serviceMetrics.recordJob("inline");
+            return PrimeJobStatus.inline(position, floor.prime());
+        }
+        if (primeEngine.estimateCost(floor.position(), floor.prime(), position) <= costThreshold) {
+            serviceMetrics.recordJob("inline");
+            return PrimeJobStatus.inline(position, primesService.getPrime(position));
+        }
+
+        PrimeJob job = new PrimeJob(UUID.randomUUID().toString(), position);
+        // the acceptance reports the job as queued even when a worker picks it up at once
+        PrimeJobStatus queued = job.status();
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            serviceMetrics.recordJob("rejected");
+            throw new ComputationUnavailableException(position, "the job queue is full");
+        }
+        serviceMetrics.recordJob("accepted");
+        return queued;
+    }
+
+    public Optional<PrimeJobStatus> status(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(PrimeJob::status);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void run(PrimeJob job) {
+        job.state = PrimeJobStatus.State.RUNNING;
+        try {
+            job.prime = PrimeProgress.track(counted -> job.counted = counted,
+                    () -> computeWhenAdmitted(job.position));
+            serviceMetrics.recordJob("succeeded");
+            job.finish(PrimeJobStatus.State.SUCCEEDED);
+        } catch (RuntimeException e) {
+            log.warning("Prime job " + job.id + " for position " + job.position + " failed: " + e.getMessage());
+            job.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            serviceMetrics.recordJob("failed");
+            job.finish(PrimeJobStatus.State.FAILED);
+        }
+    }
+
+    // a job has already waited its turn in the job queue, so it retries for a while rather than failing
+    // as soon as the compute budget is spent
+    private long computeWhenAdmitted(long position) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return missBatcher.computeAndCacheAlone(position);
+            } catch (ComputationRejectedException e) {
+                if (attempt == ADMISSION_ATTEMPTS) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(e.getRetryAfter());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private PrimeCacheEntry floorOf(long position) {
+        try {
+            Optional<PrimeCacheEntry> floor = primeCache.floor(position);
+            cacheMetrics.record("floor", floor.isPresent() ? "hit" : "miss");
+            return floor.orElse(NO_FLOOR);
+        } catch (Exception e) {
+            log.warning("Failed to read cache floor for position " + position + ": " + e.getMessage());
+            cacheMetrics.record("floor", "error");
+            return NO_FLOOR;
+        }
+    }
+
+    private void pruneFinishedJobs() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private static final class PrimeJob {
+        private final String id;
+        private final long position;
+        private volatile PrimeJobStatus.State state = PrimeJobStatus.State.QUEUED;
+        private volatile long counted;
+        private volatile long prime;
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        private PrimeJob(String id, long position) {
+            this.id = id;
+            this.position = position;
+        }
+
+        private void finish(PrimeJobStatus.State finalState) {
+            finishedAt = Instant.now();
+            state = finalState;
+        }
+
+        private PrimeJobStatus status() {
+            PrimeJobStatus.State current = state;
+            return switch (current) {
+                case SUCCEEDED -> new PrimeJobStatus(id, position, current, 1.0, prime, null);
+                case FAILED -> new PrimeJobStatus(id, position, current, (double) counted / position, null, error);
+                default -> new PrimeJobStatus(id, position, current, (double) counted / position, null, null);
+            };
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ereh.won.otbackend;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A job's state as reported to clients. {@code progress} is the share of the position's primes
+ * counted so far; answers computed inline carry no id.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PrimeJobStatus(String id, long position, State state, double progress, Long prime, String error) {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    public static PrimeJobStatus inline(long position, long prime) {
+        return new PrimeJobStatus(null, position, State.SUCCEEDED, 1.0, prime, null);
+    }
+}
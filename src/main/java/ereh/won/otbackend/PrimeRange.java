@@ -0,0 +1,13 @@
+package ereh.won.otbackend;
+
+/**
+ * A resolved request for consecutive primes: at most {@code limit} primes in {@code [firstValue, endValue)}.
+ * {@code firstPosition} is the position of the first of them, or zero when the format does not need it.
+ */
+public record PrimeRange(long firstValue, long endValue, long limit, long firstPosition) {
+
+    public enum Unit {
+        VALUE,
+        POSITION
+    }
+}
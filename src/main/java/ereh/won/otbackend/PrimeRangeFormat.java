@@ -0,0 +1,54 @@
+package ereh.won.otbackend;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire formats of {@code /api/primes/range}: one {@code {"position":N,"prime":P}} object per line, just
+ * the primes one per line, or the gap-encoded varints of {@link PrimeGapEncoding}.
+ */
+public enum PrimeRangeFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON),
+    TEXT(MediaType.TEXT_PLAIN),
+    BINARY(PrimeGapEncoding.MEDIA_TYPE);
+
+    private final MediaType mediaType;
+
+    PrimeRangeFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Picks the format an {@code Accept} header prefers, by quality and then specificity, so a
+     * wildcard stands for NDJSON. Types refused with {@code q=0} are skipped; NDJSON is the default.
+     */
+    public static PrimeRangeFormat negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return NDJSON;
+        }
+        try {
+            List<MediaType> requested = new ArrayList<>(MediaType.parseMediaTypes(accept));
+            MimeTypeUtils.sortBySpecificity(requested);
+            for (MediaType type : requested) {
+                if (type.getQualityValue() > 0) {
+                    for (PrimeRangeFormat format : values()) {
+                        if (format.mediaType.isCompatibleWith(type)) {
+                            return format;
+                        }
+                    }
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return NDJSON;
+        }
+        return NDJSON;
+    }
+}
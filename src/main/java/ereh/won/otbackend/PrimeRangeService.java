@@ -0,0 +1,206 @@
+package ereh.won.otbackend;
+
+import ereh.won.otbackend.prime.PrimeCounting;
+import ereh.won.otbackend.prime.PrimeEngine;
+import ereh.won.otbackend.prime.SegmentedSieve;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Streams runs of consecutive primes straight from the engine's segmented generator. Nothing but the
+ * current segment and a small output buffer is held, however many primes the range covers; the
+ * generator stops as soon as a write fails, which is how a client disconnect surfaces.
+ */
+@Service
+@Log
+public class PrimeRangeService {
+    public static final String RANGE_ENDPOINT = "/api/primes/range";
+    public static final long MAX_RANGE_POSITIONS = 10_000_000;
+    public static final long MAX_RANGE_VALUES = 250_000_000;
+    /** Counting the primes below this takes under a second and a few megabytes (see PrimeCounting). */
+    public static final long MAX_COUNTED_VALUE = 100_000_000_000L;
+    private static final long MAX_VALUE = SegmentedSieve.upperBound(PrimeUtils.MAX_POSITION);
+    private static final String INVALID_INPUT_ERROR_TYPE = "invalid_input";
+    private static final String DISCONNECT_ERROR_TYPE = "client_disconnected";
+    private static final int BUFFER_SIZE = 8_192;
+
+    private final PrimeEngine primeEngine;
+    private final PrimesService primesService;
+    private final ServiceMetrics serviceMetrics;
+    private final ComputeAdmission admission;
+
+    public PrimeRangeService(PrimeEngine primeEngine, PrimesService primesService, ServiceMetrics serviceMetrics) {
+        this(primeEngine, primesService, serviceMetrics, ComputeAdmission.unlimited(serviceMetrics));
+    }
+
+    @Autowired
+    public PrimeRangeService(PrimeEngine primeEngine, PrimesService primesService, ServiceMetrics serviceMetrics,
+                             ComputeAdmission admission) {
+        this.primeEngine = primeEngine;
+        this.primesService = primesService;
+        this.serviceMetrics = serviceMetrics;
+        this.admission = admission;
+    }
+
+    /**
+     * Validates the inclusive bounds and resolves them to a value range. A position range starts at
+     * the prime at {@code from}, which is looked up like a single request so the cache can answer it.
+     * A value range in a format that numbers its primes has the position of its first prime counted
+     * here, once admitted, which is why such a range may not start above {@link #MAX_COUNTED_VALUE}.
+     */
+    public PrimeRange plan(long from, long to, PrimeRange.Unit unit, PrimeRangeFormat format) {
+        if (unit == PrimeRange.Unit.POSITION) {
+            if (from < 1 || to < from || to > PrimeUtils.MAX_POSITION || to - from >= MAX_RANGE_POSITIONS) {
+                throw invalidRange("Position range must satisfy 1 <= from <= to <= " + PrimeUtils.MAX_POSITION
+                        + " and cover at most " + MAX_RANGE_POSITIONS + " positions. Received: " + from + ".." + to);
+            }
+            long firstPrime = primesService.getPrime(from);
+            return new PrimeRange(firstPrime, SegmentedSieve.upperBound(to) + 1, to - from + 1, from);
+        }
+
+        if (from < 0 || to < from || to > MAX_VALUE || to - from >= MAX_RANGE_VALUES) {
+            throw invalidRange("Value range must satisfy 0 <= from <= to <= " + MAX_VALUE
+                    + " and span at most " + MAX_RANGE_VALUES + " values. Received: " + from + ".." + to);
+        }
+        if (format == PrimeRangeFormat.TEXT) {
+            return new PrimeRange(from, to + 1, Long.MAX_VALUE, 0);
+        }
+        if (from > MAX_COUNTED_VALUE) {
+            throw invalidRange("A value range with positions must start at or below " + MAX_COUNTED_VALUE
+                    + "; ask for text/plain or a position range instead. Received: " + from + ".." + to);
+        }
+        long below = Math.max(0, from - 1);
+        long primesBelow;
+        try (ComputeAdmission.Permit permit = admission.admit(from, (long) Math.pow(below, 0.75))) {
+            primesBelow = PrimeCounting.pi(below);
+        }
+        return new PrimeRange(from, to + 1, Long.MAX_VALUE, primesBelow + 1);
+    }
+
+    /**
+     * Reserves the sieve work behind streaming {@code range}, the values it crosses, for as long as
+     * the stream runs. A position range ends at an upper bound, so it is charged for its primes at
+     * their average gap instead. Close the permit once {@link #write} returns.
+     *
+     * @throws ComputationRejectedException when the compute budget stays spent
+     */
+    public ComputeAdmission.Permit admit(PrimeRange range) {
+        long span = range.endValue() - range.firstValue();
+        if (range.limit() != Long.MAX_VALUE) {
+            span = Math.min(span, (long) (range.limit() * Math.log(range.endValue())));
+        }
+        return admission.admit(range.firstValue(), span);
+    }
+
+    public void write(PrimeRange range, PrimeRangeFormat format, OutputStream out) throws IOException {
+        serviceMetrics.recordRequest(RANGE_ENDPOINT);
+        Instant requestStart = Instant.now();
+        long firstPosition = range.firstPosition();
+        ChunkWriter writer = new ChunkWriter(out);
+        long[] written = {0};
+        long[] previous = {0};
+        try {
+            if (format == PrimeRangeFormat.BINARY) {
+                writer.appendHeader(PrimeGapEncoding.RANGE).appendVarint(firstPosition);
+            }
+            primeEngine.primesInRange(range.firstValue(), range.endValue(), prime -> {
+                switch (format) {
+                    case NDJSON -> writer.append("{\"position\":").append(firstPosition + written[0])
+                            .append(",\"prime\":").append(prime).append("}\n");
+                    case TEXT -> writer.append(prime).append("\n");
+                    case BINARY -> writer.appendVarint(prime - previous[0]);
+                }
+                previous[0] = prime;
+                return ++written[0] < range.limit();
+            });
+            writer.flush();
+        } catch (UncheckedIOException e) {
+            log.info("Range stream stopped after " + written[0] + " primes: " + e.getCause().getMessage());
+            serviceMetrics.recordError(RANGE_ENDPOINT, DISCONNECT_ERROR_TYPE);
+            throw e.getCause();
+        }
+        serviceMetrics.recordResponseTime(RANGE_ENDPOINT, requestStart.until(Instant.now(), ChronoUnit.MILLIS));
+    }
+
+    private InvalidRangeException invalidRange(String message) {
+        serviceMetrics.recordError(RANGE_ENDPOINT, INVALID_INPUT_ERROR_TYPE);
+        log.severe(message);
+        return new InvalidRangeException(message);
+    }
+
+    // formats numbers, varints and ASCII text into a reused buffer, so streaming allocates nothing per prime
+    private static final class ChunkWriter {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int length;
+
+        ChunkWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        ChunkWriter appendHeader(byte kind) {
+            reserve(PrimeGapEncoding.HEADER_BYTES);
+            length = PrimeGapEncoding.putHeader(buffer, length, kind);
+            return this;
+        }
+
+        ChunkWriter appendVarint(long value) {
+            reserve(PrimeGapEncoding.MAX_VARINT_BYTES);
+            length = PrimeGapEncoding.putVarint(buffer, length, value);
+            return this;
+        }
+
+        ChunkWriter append(String text) {
+            reserve(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                buffer[length++] = (byte) text.charAt(i);
+            }
+            return this;
+        }
+
+        ChunkWriter append(long value) {
+            reserve(20);
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            for (int i = length + digits - 1; i >= length; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digits;
+            return this;
+        }
+
+        void flush() {
+            drain();
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void reserve(int bytes) {
+            if (length + bytes > buffer.length) {
+                drain();
+            }
+        }
+
+        private void drain() {
+            try {
+                out.write(buffer, 0, length);
+                length = 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -1,48 +1,45 @@
 package ereh.won.otbackend;
 
-public class PrimeUtils {
+import ereh.won.otbackend.prime.PrimeEngine;
+
+/**
+ * Static entry points for callers outside the Spring context. They validate like {@link PrimesService}
+ * does and delegate to the engine the application configured, which {@code PrimeEngineConfig} installs;
+ * there is no engine of their own, so no second prime table is ever built.
+ */
+public final class PrimeUtils {
+    // p(10^12) is about 2.9 * 10^13; prime counting memory grows with the square root of that
+    public static final long MAX_POSITION = 1_000_000_000_000L;
+    private static volatile PrimeEngine engine;
+
     private PrimeUtils() {
     }
 
-    public static int calculateNthPrime(int position) {
-        if (position < 1) {
-            throw new InvalidNumberException(position);
-        }
-
-        if (position == 1) {
-            return 2;
-        }
-
-        int primesFound = 1;
-        int candidate = 1;
+    public static void useEngine(PrimeEngine primeEngine) {
+        engine = primeEngine;
+    }
 
-        while (primesFound < position) {
-            candidate += 2;
-            if (isPrime(candidate)) {
-                primesFound++;
-            }
+    public static long calculateNthPrime(long position) {
+        if (position < 1 || position > MAX_POSITION) {
+            throw new InvalidNumberException(position);
         }
 
-        return candidate;
+        return engine().nthPrime(position);
     }
 
-
-    public static boolean isPrime(int candidate) {
+    public static boolean isPrime(long candidate) {
         if (candidate < 1) {
             throw new InvalidNumberException(candidate);
         }
 
-        if (candidate < 2) {
-            return false;
-        }
+        return engine().isPrime(candidate);
+    }
 
-        int checkBound = (int) Math.ceil(Math.sqrt(candidate));
-        for (int i = 2; i <= checkBound; i++) {
-            if (candidate % i == 0) {
-                return false;
-            }
+    private static PrimeEngine engine() {
+        PrimeEngine current = engine;
+        if (current == null) {
+            throw new IllegalStateException("No PrimeEngine has been configured for PrimeUtils");
         }
-
-        return true;
+        return current;
     }
 }
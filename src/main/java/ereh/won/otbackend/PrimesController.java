@@ -1,25 +1,115 @@
 package ereh.won.otbackend;
 
 import lombok.val;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+import java.time.Duration;
 
 @RestController
 @RequestMapping("/api/primes")
 public class PrimesController {
 
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
     private final PrimesService primesService;
+    private final PrimeRangeService primeRangeService;
+    private final PrimeJobService primeJobService;
+    private final ServiceMetrics serviceMetrics;
 
-    public PrimesController(PrimesService primesService) {
+    public PrimesController(PrimesService primesService, PrimeRangeService primeRangeService,
+                            PrimeJobService primeJobService, ServiceMetrics serviceMetrics) {
         this.primesService = primesService;
+        this.primeRangeService = primeRangeService;
+        this.primeJobService = primeJobService;
+        this.serviceMetrics = serviceMetrics;
     }
 
+    /**
+     * Answers are immutable, so they are cacheable by anyone for a year and tagged with a strong ETag.
+     * A conditional request is answered with 304 only when its tag names the prime the service looked
+     * up or computed for the position; any other tag gets the normal answer.
+     */
     @GetMapping("/getPrime")
-    public ResponseEntity<Integer> getPrime(@RequestParam int position) {
+    public ResponseEntity<Long> getPrime(@RequestParam long position,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                         String ifNoneMatch) {
         val result = primesService.getPrime(position);
-        return ResponseEntity.ok(result);
+        if (PrimeETag.matches(ifNoneMatch, position, result)) {
+            serviceMetrics.recordNotModified(PrimesService.GET_PRIME_ENDPOINT);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .cacheControl(IMMUTABLE)
+                    .eTag(PrimeETag.of(position, result))
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(IMMUTABLE)
+                .eTag(PrimeETag.of(position, result))
+                .body(result);
+    }
+
+    @PostMapping(value = "/batch", produces = {MediaType.APPLICATION_JSON_VALUE, PrimeGapEncoding.MEDIA_TYPE_VALUE})
+    public ResponseEntity<PrimeBatchResponse> getPrimes(@RequestBody PrimeBatchRequest request) {
+        val results = primesService.getPrimes(request.positions());
+        return ResponseEntity.ok(new PrimeBatchResponse(results));
+    }
+
+    /**
+     * Streams the primes between two inclusive bounds, given as values or positions, as NDJSON, plain
+     * text or gap-encoded varints depending on {@code Accept}. The body is written while the primes
+     * are generated, under an admission permit taken before the response starts, so a spent compute
+     * budget is answered with 503 rather than a broken stream.
+     */
+    @GetMapping(value = "/range", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE,
+            PrimeGapEncoding.MEDIA_TYPE_VALUE})
+    public ResponseEntity<StreamingResponseBody> getRange(
+            @RequestParam long from,
+            @RequestParam long to,
+            @RequestParam(defaultValue = "VALUE") PrimeRange.Unit by,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        val format = PrimeRangeFormat.negotiate(accept);
+        val range = primeRangeService.plan(from, to, by, format);
+        val permit = primeRangeService.admit(range);
+        return ResponseEntity.ok()
+                .contentType(format.mediaType())
+                .body(out -> {
+                    try (permit) {
+                        primeRangeService.write(range, format, out);
+                    }
+                });
+    }
+
+    /**
+     * Answers cheap positions with 200 and the prime. Expensive ones are accepted as a background job
+     * with 202, whose status URL is in {@code Location}.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<PrimeJobStatus> submitJob(@RequestBody PrimeJobRequest request) {
+        val status = primeJobService.submit(request.position());
+        if (status.id() == null) {
+            return ResponseEntity.ok(status);
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create(PrimeJobService.JOBS_ENDPOINT + "/" + status.id()))
+                .body(status);
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<PrimeJobStatus> getJob(@PathVariable String id) {
+        val status = primeJobService.status(id).orElseThrow(() -> new JobNotFoundException(id));
+        return ResponseEntity.ok(status);
     }
 }
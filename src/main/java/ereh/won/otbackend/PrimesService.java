@@ -3,68 +3,179 @@ package ereh.won.otbackend;
 import ereh.won.otbackend.cache.CacheMetrics;
 import ereh.won.otbackend.cache.PrimeCache;
 import ereh.won.otbackend.cache.PrimeCacheKey;
+import ereh.won.otbackend.prime.PrimeEngine;
 import io.micrometer.observation.annotation.Observed;
 import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Log
 public class PrimesService {
     public static final String GET_PRIME_ENDPOINT = "/api/primes/getPrime";
+    public static final String BATCH_ENDPOINT = "/api/primes/batch";
+    public static final int MAX_BATCH_POSITIONS = 1_000;
     private static final String INVALID_INPUT_ERROR_TYPE = "invalid_input";
+    private static final String COMPUTATION_ERROR_TYPE = "computation_failed";
 
     private final ServiceMetrics serviceMetrics;
     private final PrimeCache primeCache;
     private final CacheMetrics cacheMetrics;
+    private final InFlightComputations inFlightComputations;
+    private final MissBatcher missBatcher;
 
-    public PrimesService(ServiceMetrics serviceMetrics, PrimeCache primeCache, CacheMetrics cacheMetrics) {
+    public PrimesService(ServiceMetrics serviceMetrics, PrimeCache primeCache, CacheMetrics cacheMetrics,
+                         PrimeEngine primeEngine) {
+        this(serviceMetrics, primeCache, cacheMetrics,
+                new InFlightComputations(serviceMetrics, InFlightComputations.DEFAULT_WAIT_TIMEOUT),
+                MissBatcher.unbatched(primeEngine, primeCache, cacheMetrics, serviceMetrics));
+    }
+
+    @Autowired
+    public PrimesService(ServiceMetrics serviceMetrics, PrimeCache primeCache, CacheMetrics cacheMetrics,
+                         InFlightComputations inFlightComputations, MissBatcher missBatcher) {
         this.serviceMetrics = serviceMetrics;
         this.primeCache = primeCache;
         this.cacheMetrics = cacheMetrics;
+        this.inFlightComputations = inFlightComputations;
+        this.missBatcher = missBatcher;
     }
 
     @Observed
     @WithSpan
-    public int getPrime(@SpanAttribute("primePosition") int primePosition) {
-        if (primePosition < 1) {
+    public long getPrime(@SpanAttribute("primePosition") long primePosition) {
+        if (!isValidPosition(primePosition)) {
             serviceMetrics.recordError(GET_PRIME_ENDPOINT, INVALID_INPUT_ERROR_TYPE);
             log.severe(primePosition + " is an invalid index for a prime");
             throw new InvalidNumberException(primePosition);
         }
 
         serviceMetrics.recordRequest(GET_PRIME_ENDPOINT);
-        Instant requestStart = Instant.now();
-        PrimeCacheKey cacheKey = new PrimeCacheKey(primePosition);
-        Optional<Integer> cached;
+        long requestStart = System.nanoTime();
+        // the primitive read keeps a hit free of keys, Optionals and boxed values
+        long cached;
         try {
-            cached = primeCache.get(cacheKey);
+            cached = primeCache.getPrime(primePosition);
         } catch (Exception e) {
             log.warning("Failed to read prime at position " + primePosition + " from cache: " + e.getMessage());
             cacheMetrics.record("get", "error");
-            cached = Optional.empty();
+            cached = PrimeCache.ABSENT;
         }
 
-        if (cached.isPresent()) {
+        if (cached != PrimeCache.ABSENT) {
             cacheMetrics.record("get", "hit");
-            serviceMetrics.recordResponseTime(GET_PRIME_ENDPOINT, requestStart.until(Instant.now(), ChronoUnit.MILLIS));
-            return cached.get();
+            serviceMetrics.recordResponseTime(GET_PRIME_ENDPOINT, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestStart));
+            return cached;
         }
 
         cacheMetrics.record("get", "miss");
-        int computedPrime = PrimeUtils.calculateNthPrime(primePosition);
+        // concurrent misses for the same position share one computation; the owner writes the cache
+        // before the flight is released, so later requests hit instead of starting a new one
+        return inFlightComputations.computeOnce(primePosition, missBatcher::computeAndCache);
+    }
+
+    /**
+     * Answers a batch of positions in request order. Every distinct valid position is looked up with one
+     * multi-get, the misses are computed together in one ascending pass and written back with one bulk
+     * write. Invalid positions, and misses whose computation failed, are reported per position rather
+     * than failing the whole batch. Misses estimated to cost more together than the batch limit reject
+     * the whole batch before anything is computed. Batch misses do not join single lookups' in-flight
+     * computations.
+     */
+    @Observed
+    @WithSpan
+    public List<PrimeBatchResult> getPrimes(long[] positions) {
+        int size = positions == null ? 0 : positions.length;
+        if (size == 0 || size > MAX_BATCH_POSITIONS) {
+            serviceMetrics.recordError(BATCH_ENDPOINT, INVALID_INPUT_ERROR_TYPE);
+            log.severe("Rejected a batch of " + size + " positions");
+            throw new InvalidBatchException(size);
+        }
+
+        serviceMetrics.recordRequest(BATCH_ENDPOINT);
+        Instant requestStart = Instant.now();
+        long[] distinct = Arrays.stream(positions).filter(PrimesService::isValidPosition).sorted().distinct().toArray();
+        // primes[i] answers distinct[i]; zero marks a position that is still unanswered
+        long[] primes = new long[distinct.length];
+        Map<PrimeCacheKey, Long> cached = getAllCached(distinct);
+        long[] misses = new long[distinct.length];
+        int missCount = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            Long prime = cached.get(new PrimeCacheKey(distinct[i]));
+            if (prime != null) {
+                cacheMetrics.record("get", "hit");
+                primes[i] = prime;
+            } else {
+                cacheMetrics.record("get", "miss");
+                misses[missCount++] = distinct[i];
+            }
+        }
+
+        String failure = null;
+        if (missCount > 0) {
+            misses = Arrays.copyOf(misses, missCount);
+            try {
+                long[] computed = missBatcher.computeAndCacheAll(misses);
+                for (int i = 0; i < misses.length; i++) {
+                    primes[Arrays.binarySearch(distinct, misses[i])] = computed[i];
+                }
+            } catch (InvalidBatchException e) {
+                serviceMetrics.recordError(BATCH_ENDPOINT, INVALID_INPUT_ERROR_TYPE);
+                log.severe(e.getMessage());
+                throw e;
+            } catch (RuntimeException e) {
+                log.warning("Failed to compute " + missCount + " batch misses: " + e.getMessage());
+                serviceMetrics.recordError(BATCH_ENDPOINT, COMPUTATION_ERROR_TYPE);
+                failure = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+        }
+
+        List<PrimeBatchResult> results = new ArrayList<>(positions.length);
+        for (long position : positions) {
+            if (!isValidPosition(position)) {
+                serviceMetrics.recordError(BATCH_ENDPOINT, INVALID_INPUT_ERROR_TYPE);
+                results.add(PrimeBatchResult.failed(position, ApiExceptionHandler.INVALID_PRIME_POSITION_CODE,
+                        new InvalidNumberException(position).getMessage()));
+                continue;
+            }
+            long prime = primes[Arrays.binarySearch(distinct, position)];
+            results.add(prime != 0
+                    ? PrimeBatchResult.found(position, prime)
+                    : PrimeBatchResult.failed(position, ApiExceptionHandler.COMPUTATION_UNAVAILABLE_CODE,
+                            new ComputationUnavailableException(position, failure).getMessage()));
+        }
+        serviceMetrics.recordResponseTime(BATCH_ENDPOINT, requestStart.until(Instant.now(), ChronoUnit.MILLIS));
+        return results;
+    }
+
+    private Map<PrimeCacheKey, Long> getAllCached(long[] positions) {
+        if (positions.length == 0) {
+            return Map.of();
+        }
+        List<PrimeCacheKey> keys = new ArrayList<>(positions.length);
+        for (long position : positions) {
+            keys.add(new PrimeCacheKey(position));
+        }
         try {
-            primeCache.put(cacheKey, computedPrime);
-            cacheMetrics.record("put", "success");
+            return primeCache.getAll(keys);
         } catch (Exception e) {
-            log.warning("Failed to write prime at position " + primePosition + " to cache: " + e.getMessage());
-            cacheMetrics.record("put", "error");
+            log.warning("Failed to read " + keys.size() + " primes from cache: " + e.getMessage());
+            cacheMetrics.record("get_all", "error");
+            return Map.of();
         }
-        return computedPrime;
+    }
+
+    static boolean isValidPosition(long position) {
+        return position >= 1 && position <= PrimeUtils.MAX_POSITION;
     }
 }
@@ -1,18 +1,37 @@
 package ereh.won.otbackend;
 
 import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.metrics.DoubleHistogram;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.LongUpDownCounter;
 import io.opentelemetry.api.metrics.Meter;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Component
 public class ServiceMetrics {
+    private static final AttributeKey<String> ENDPOINT = AttributeKey.stringKey("endpoint");
+
+    // endpoints are a handful of constants; reusing their attributes keeps per-request recording allocation-free
+    private final Map<String, Attributes> endpointAttributes = new ConcurrentHashMap<>();
     private final LongCounter requestCounter;
     private final LongCounter errorCounter;
     private final DoubleHistogram responseTimeHistogram;
+    private final LongCounter coalescedWaiterCounter;
+    private final LongUpDownCounter inFlightComputations;
+    private final LongHistogram missBatchSizeHistogram;
+    private final DoubleHistogram missBatchTimeHistogram;
+    private final LongCounter notModifiedCounter;
+    private final LongCounter jobCounter;
+    private final LongCounter admissionRejectedCounter;
+    private final LongUpDownCounter admissionQueueDepth;
+    private final LongUpDownCounter admissionCostInUse;
 
     public ServiceMetrics(@Qualifier("backendOpenTelemetry") OpenTelemetry openTelemetry) {
         // Create a Meter instance for the order service
@@ -35,10 +54,65 @@ public class ServiceMetrics {
                 .setDescription("Response time for requests")
                 .setUnit("ms")
                 .build();
+
+        this.coalescedWaiterCounter = meter
+                .counterBuilder("coalesced_waiters_total")
+                .setDescription("Requests that waited on another request's in-flight computation")
+                .setUnit("requests")
+                .build();
+
+        this.inFlightComputations = meter
+                .upDownCounterBuilder("in_flight_computations")
+                .setDescription("Prime computations currently running")
+                .setUnit("computations")
+                .build();
+
+        this.missBatchSizeHistogram = meter
+                .histogramBuilder("miss_batch_size")
+                .setDescription("Distinct positions answered by one batched computation")
+                .setUnit("positions")
+                .ofLongs()
+                .build();
+
+        this.missBatchTimeHistogram = meter
+                .histogramBuilder("miss_batch_time_ms")
+                .setDescription("Time to compute and cache one batch of misses")
+                .setUnit("ms")
+                .build();
+
+        this.notModifiedCounter = meter
+                .counterBuilder("not_modified_total")
+                .setDescription("Conditional requests answered with 304 from the request headers alone")
+                .setUnit("requests")
+                .build();
+
+        this.jobCounter = meter
+                .counterBuilder("prime_jobs_total")
+                .setDescription("Job submissions and completions by outcome")
+                .setUnit("jobs")
+                .build();
+
+        this.admissionRejectedCounter = meter
+                .counterBuilder("admission_rejected_total")
+                .setDescription("Computations refused because the compute budget was exhausted")
+                .setUnit("computations")
+                .build();
+
+        this.admissionQueueDepth = meter
+                .upDownCounterBuilder("admission_queue_depth")
+                .setDescription("Computations waiting for compute budget")
+                .setUnit("computations")
+                .build();
+
+        this.admissionCostInUse = meter
+                .upDownCounterBuilder("admission_cost_in_use")
+                .setDescription("Estimated cost of the computations currently admitted")
+                .setUnit("numbers")
+                .build();
     }
 
     public void recordRequest(String endpoint) {
-        requestCounter.add(1, Attributes.builder().put("endpoint", endpoint).build());
+        requestCounter.add(1, endpointAttributes(endpoint));
     }
 
 
@@ -54,6 +128,51 @@ public class ServiceMetrics {
 
 
     public void recordResponseTime(String endpoint, double durationInMs) {
-        responseTimeHistogram.record(durationInMs, Attributes.builder().put("endpoint", endpoint).build());
+        responseTimeHistogram.record(durationInMs, endpointAttributes(endpoint));
+    }
+
+
+    public void recordCoalescedWaiter(String outcome) {
+        coalescedWaiterCounter.add(1, Attributes.builder().put("outcome", outcome).build());
+    }
+
+
+    public void recordInFlightComputation(long delta) {
+        inFlightComputations.add(delta);
+    }
+
+
+    public void recordMissBatch(int positions, double durationInMs) {
+        missBatchSizeHistogram.record(positions);
+        missBatchTimeHistogram.record(durationInMs);
+    }
+
+
+    public void recordNotModified(String endpoint) {
+        notModifiedCounter.add(1, endpointAttributes(endpoint));
+    }
+
+
+    public void recordJob(String outcome) {
+        jobCounter.add(1, Attributes.builder().put("outcome", outcome).build());
+    }
+
+
+    public void recordAdmissionRejected(String reason) {
+        admissionRejectedCounter.add(1, Attributes.builder().put("reason", reason).build());
+    }
+
+
+    public void recordAdmissionQueued(long delta) {
+        admissionQueueDepth.add(delta);
+    }
+
+
+    public void recordAdmissionCostInUse(long delta) {
+        admissionCostInUse.add(delta);
+    }
+
+    private Attributes endpointAttributes(String endpoint) {
+        return endpointAttributes.computeIfAbsent(endpoint, name -> Attributes.of(ENDPOINT, name));
     }
 }
@@ -1,15 +1,23 @@
 package ereh.won.otbackend.cache;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.java.Log;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Component
 @Log
 public class CacheMetrics {
 	private final MeterRegistry registry;
 	private final String backendName;
+	// counters by operation (or tier and operation), then outcome; looked up on every cache call, so a hit
+	// avoids building a meter id and querying the registry
+	private final Map<String, Map<String, Counter>> operationCounters = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, Map<String, Counter>>> tierCounters = new ConcurrentHashMap<>();
 
 	public CacheMetrics(MeterRegistry registry, PrimeCacheSelection cacheSelection) {
 		this.registry = registry;
@@ -18,12 +26,54 @@ public class CacheMetrics {
 	}
 
 	public void record(String operation, String outcome) {
-		Counter.builder("prime.cache.operations")
-				.description("Prime cache operations by backend/outcome")
+		Map<String, Counter> byOutcome = operationCounters.get(operation);
+		Counter counter = byOutcome == null ? null : byOutcome.get(outcome);
+		if (counter == null) {
+			counter = operationCounters.computeIfAbsent(operation, key -> new ConcurrentHashMap<>())
+					.computeIfAbsent(outcome, key -> Counter.builder("prime.cache.operations")
+							.description("Prime cache operations by backend/outcome")
+							.tag("backend", backendName)
+							.tag("operation", operation)
+							.tag("outcome", outcome)
+							.register(registry));
+		}
+		counter.increment();
+	}
+
+	/**
+	 * Records an operation on one tier of a tiered cache ({@code l1} or {@code l2}), so near-cache hits
+	 * can be told apart from hits that cost a backend round trip.
+	 */
+	public void recordTier(String tier, String operation, String outcome) {
+		Map<String, Map<String, Counter>> byOperation = tierCounters.get(tier);
+		Map<String, Counter> byOutcome = byOperation == null ? null : byOperation.get(operation);
+		Counter counter = byOutcome == null ? null : byOutcome.get(outcome);
+		if (counter == null) {
+			counter = tierCounters.computeIfAbsent(tier, key -> new ConcurrentHashMap<>())
+					.computeIfAbsent(operation, key -> new ConcurrentHashMap<>())
+					.computeIfAbsent(outcome, key -> Counter.builder("prime.cache.tier.operations")
+							.description("Prime cache operations by tier for tiered caches")
+							.tag("backend", backendName)
+							.tag("tier", tier)
+							.tag("operation", operation)
+							.tag("outcome", outcome)
+							.register(registry));
+		}
+		counter.increment();
+	}
+
+	/**
+	 * Publishes the size and estimated heap footprint of a bounded in-memory cache as gauges.
+	 */
+	public void registerMemoryCache(InMemoryPrimeCache cache) {
+		Gauge.builder("prime.cache.memory.entries", cache, InMemoryPrimeCache::size)
+				.description("Entries held by the in-memory prime cache")
+				.tag("backend", backendName)
+				.register(registry);
+		Gauge.builder("prime.cache.memory.estimated.bytes", cache, InMemoryPrimeCache::estimatedBytes)
+				.description("Estimated heap footprint of the in-memory prime cache")
 				.tag("backend", backendName)
-				.tag("operation", operation)
-				.tag("outcome", outcome)
-				.register(registry)
-				.increment();
+				.baseUnit("bytes")
+				.register(registry);
 	}
 }
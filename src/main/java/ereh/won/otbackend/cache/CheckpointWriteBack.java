@@ -0,0 +1,101 @@
+package ereh.won.otbackend.cache;
+
+import ereh.won.otbackend.prime.PrimeCheckpointSink;
+import lombok.extern.java.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Writes the sparse checkpoints of long computations to the prime cache in the background. Offers
+ * go into a bounded queue and are dropped when it is full, so the computing thread never waits; a
+ * single writer thread drains at most {@code maxWritesPerFlush} of them every flush interval,
+ * resolves their primes and stores them with one bulk write.
+ */
+@Log
+public class CheckpointWriteBack implements PrimeCheckpointSink, AutoCloseable {
+    private final PrimeCache primeCache;
+    private final CacheMetrics cacheMetrics;
+    private final long interval;
+    private final int maxWritesPerFlush;
+    private final BlockingQueue<Checkpoint> pending;
+    private final ScheduledExecutorService writer;
+
+    public CheckpointWriteBack(PrimeCache primeCache, CacheMetrics cacheMetrics,
+                               PrimeCacheProperties.Checkpoints properties) {
+        if (properties.getInterval() < 1 || properties.getQueueCapacity() < 1 || properties.getMaxWritesPerFlush() < 1) {
+            throw new IllegalArgumentException("Checkpoint interval, queue capacity and writes per flush must be positive");
+        }
+        this.primeCache = primeCache;
+        this.cacheMetrics = cacheMetrics;
+        this.interval = properties.getInterval();
+        this.maxWritesPerFlush = properties.getMaxWritesPerFlush();
+        this.pending = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "prime-checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushMillis = Math.max(1, properties.getFlushInterval().toMillis());
+        writer.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long interval() {
+        return interval;
+    }
+
+    @Override
+    public void offer(long position, LongSupplier prime) {
+        if (!pending.offer(new Checkpoint(position, prime))) {
+            cacheMetrics.record("checkpoint", "dropped");
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    void flush() {
+        List<Checkpoint> batch = new ArrayList<>(Math.min(maxWritesPerFlush, pending.size()));
+        pending.drainTo(batch, maxWritesPerFlush);
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<PrimeCacheKey, Long> entries = new LinkedHashMap<>();
+            for (Checkpoint checkpoint : batch) {
+                entries.put(new PrimeCacheKey(checkpoint.position()), checkpoint.prime().getAsLong());
+            }
+            primeCache.putAll(entries);
+            cacheMetrics.record("checkpoint_flush", "success");
+        } catch (Exception e) {
+            log.warning("Failed to write " + batch.size() + " checkpoints to cache: " + e.getMessage());
+            cacheMetrics.record("checkpoint_flush", "error");
+        }
+    }
+
+    @Override
+    public void close() {
+        writer.shutdownNow();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warning("Checkpoint writer did not stop within 5 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Checkpoint(long position, LongSupplier prime) {
+    }
+}
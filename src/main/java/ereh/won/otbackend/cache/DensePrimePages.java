@@ -0,0 +1,100 @@
+package ereh.won.otbackend.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Primes stored by position in lazily allocated pages of {@code int}, four bytes per position and no
+ * per-entry objects. Every prime below 2^32 fits an unsigned {@code int}, which covers the first
+ * {@link #MAX_POSITIONS} positions; zero marks an empty slot, since no prime is zero. Pages are
+ * published with a compare-and-set and slots with release/acquire stores and loads, so readers and
+ * writers never lock, and neither {@link #get} nor {@link #put} allocates once a page exists.
+ */
+final class DensePrimePages {
+	// the number of primes below 2^32
+	static final long MAX_POSITIONS = 203_280_221;
+	static final int PAGE_SHIFT = 12;
+	static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	static final long PAGE_BYTES = (long) PAGE_SIZE * Integer.BYTES;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private final AtomicReferenceArray<int[]> pages;
+	private final long maxPosition;
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong highest = new AtomicLong();
+	private final AtomicInteger allocatedPages = new AtomicInteger();
+
+	DensePrimePages(long maxPosition) {
+		if (maxPosition < 1 || maxPosition > MAX_POSITIONS) {
+			throw new IllegalArgumentException("Dense positions must be between 1 and " + MAX_POSITIONS + ": "
+					+ maxPosition);
+		}
+		this.maxPosition = maxPosition;
+		this.pages = new AtomicReferenceArray<>((int) (maxPosition >>> PAGE_SHIFT) + 1);
+	}
+
+	boolean covers(long position) {
+		return position <= maxPosition;
+	}
+
+	/** Returns the prime at {@code position}, or zero when it is not stored. */
+	long get(long position) {
+		int[] page = pages.get((int) (position >>> PAGE_SHIFT));
+		if (page == null) {
+			return 0;
+		}
+		return Integer.toUnsignedLong((int) SLOTS.getAcquire(page, (int) position & PAGE_MASK));
+	}
+
+	void put(long position, long prime) {
+		int[] page = pageFor((int) (position >>> PAGE_SHIFT));
+		int previous = (int) SLOTS.getAndSetRelease(page, (int) position & PAGE_MASK, (int) prime);
+		if (previous == 0) {
+			count.incrementAndGet();
+			highest.accumulateAndGet(position, Math::max);
+		}
+	}
+
+	/** Returns the largest stored position at or below {@code position}, or zero when there is none. */
+	long floorPosition(long position) {
+		long from = Math.min(position, Math.min(maxPosition, highest.get()));
+		for (int pageIndex = (int) (from >>> PAGE_SHIFT); pageIndex >= 0; pageIndex--) {
+			int[] page = pages.get(pageIndex);
+			if (page == null) {
+				continue;
+			}
+			int start = pageIndex == (int) (from >>> PAGE_SHIFT) ? (int) from & PAGE_MASK : PAGE_MASK;
+			for (int slot = start; slot >= 0; slot--) {
+				if ((int) SLOTS.getAcquire(page, slot) != 0) {
+					return ((long) pageIndex << PAGE_SHIFT) | slot;
+				}
+			}
+		}
+		return 0;
+	}
+
+	long size() {
+		return count.get();
+	}
+
+	long allocatedBytes() {
+		return allocatedPages.get() * PAGE_BYTES;
+	}
+
+	private int[] pageFor(int pageIndex) {
+		int[] page = pages.get(pageIndex);
+		if (page != null) {
+			return page;
+		}
+		int[] created = new int[PAGE_SIZE];
+		if (pages.compareAndSet(pageIndex, null, created)) {
+			allocatedPages.incrementAndGet();
+			return created;
+		}
+		return pages.get(pageIndex);
+	}
+}
@@ -0,0 +1,89 @@
+package ereh.won.otbackend.cache;
+
+/**
+ * A count-min sketch of recent access frequency with four-bit counters, as used by TinyLFU. Each
+ * position increments one counter in each of four rows; its estimate is the smallest of the four.
+ * When the sample of increments reaches ten times the cache size every counter is halved, so the
+ * estimate favours recent popularity over all-time popularity. Not thread-safe: callers serialise
+ * access.
+ */
+final class FrequencySketch {
+	private static final long[] SEEDS = {
+			0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+	private static final int MAX_TABLE_LENGTH = 1 << 22;
+
+	private final long[] table;
+	private final int tableMask;
+	private final long sampleSize;
+	private long size;
+
+	FrequencySketch(long maximumSize) {
+		int length = (int) Math.clamp(maximumSize, 8, MAX_TABLE_LENGTH);
+		length = Integer.highestOneBit(length - 1) << 1;
+		this.table = new long[length];
+		this.tableMask = length - 1;
+		this.sampleSize = 10 * Math.max(maximumSize, 1);
+	}
+
+	/** Returns the estimated number of recent accesses to {@code position}, at most 15. */
+	int frequency(long position) {
+		int hash = spread(position);
+		int start = (hash & 3) << 2;
+		int frequency = 15;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xF);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	void increment(long position) {
+		int hash = spread(position);
+		int start = (hash & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+		if (added && ++size >= sampleSize) {
+			reset();
+		}
+	}
+
+	long sizeInBytes() {
+		return (long) table.length * Long.BYTES;
+	}
+
+	private boolean incrementAt(int index, int counter) {
+		int offset = counter << 2;
+		long mask = 0xFL << offset;
+		if ((table[index] & mask) != mask) {
+			table[index] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	private void reset() {
+		long oddCounters = 0;
+		for (int i = 0; i < table.length; i++) {
+			oddCounters += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size = (size >>> 1) - (oddCounters >>> 2);
+	}
+
+	private int indexOf(int hash, int row) {
+		long h = (hash + SEEDS[row]) * SEEDS[row];
+		h += h >>> 32;
+		return (int) h & tableMask;
+	}
+
+	private static int spread(long position) {
+		long x = (position ^ (position >>> 30)) * 0xbf58476d1ce4e5b9L;
+		x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+		return (int) (x ^ (x >>> 31));
+	}
+}
@@ -1,18 +1,248 @@
 package ereh.won.otbackend.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * An in-process cache in two parts. The first {@code densePositions} positions are kept in
+ * {@link DensePrimePages}: four bytes per position, no locks, and never evicted. Every other position
+ * goes to a bounded map with W-TinyLFU eviction. New entries land in a small LRU window; an entry
+ * pushed out of the window only enters the main segmented-LRU space if the frequency sketch says it is
+ * used more often than the entry it would displace. A scan over many positions touched once therefore
+ * churns the window but leaves the frequently read entries in the main space alone.
+ * <p>
+ * Map reads and floor queries go straight to a concurrent navigable map. Access is recorded in the policy
+ * only when its lock is free, so a busy reader never waits on it; the policy may miss some accesses
+ * under contention, which only blurs the frequency estimates.
+ */
 public class InMemoryPrimeCache implements PrimeCache {
-	private final ConcurrentHashMap<PrimeCacheKey, Integer> cacheEntries = new ConcurrentHashMap<>();
+	public static final long DEFAULT_MAXIMUM_SIZE = 1L << 20;
+	public static final long DEFAULT_DENSE_POSITIONS = 1L << 24;
+	// a skip-list node, index share, boxed key and value, and one policy-list entry
+	public static final int ESTIMATED_ENTRY_BYTES = 128;
+	private static final double WINDOW_SHARE = 0.01;
+	private static final double PROTECTED_SHARE = 0.8;
+
+	// ordered by position so floor lookups are a navigable-map query
+	private final ConcurrentSkipListMap<Long, Long> cacheEntries = new ConcurrentSkipListMap<>();
+	private final ReentrantLock policyLock = new ReentrantLock();
+	// insertion-ordered, least recently used first; guarded by policyLock
+	private final LinkedHashMap<Long, Boolean> window = new LinkedHashMap<>();
+	private final LinkedHashMap<Long, Boolean> probation = new LinkedHashMap<>();
+	private final LinkedHashMap<Long, Boolean> protectedSpace = new LinkedHashMap<>();
+	private final DensePrimePages densePages;
+	private final FrequencySketch sketch;
+	private final long maximumSize;
+	private final long windowCapacity;
+	private final long protectedCapacity;
+	private final CacheMetrics cacheMetrics;
+
+	public InMemoryPrimeCache() {
+		this(DEFAULT_MAXIMUM_SIZE, DEFAULT_DENSE_POSITIONS, null);
+	}
+
+	public InMemoryPrimeCache(long maximumSize) {
+		this(maximumSize, 0, null);
+	}
+
+	public InMemoryPrimeCache(long maximumSize, CacheMetrics cacheMetrics) {
+		this(maximumSize, 0, cacheMetrics);
+	}
+
+	/**
+	 * @param maximumSize    entries kept outside the dense positions
+	 * @param densePositions positions {@code 1..densePositions} kept densely; zero for none, at most
+	 *                       {@link DensePrimePages#MAX_POSITIONS}
+	 * @param cacheMetrics   receives an {@code evict} record per evicted entry; may be {@code null}
+	 */
+	public InMemoryPrimeCache(long maximumSize, long densePositions, CacheMetrics cacheMetrics) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum cache size must be positive: " + maximumSize);
+		}
+		this.densePages = densePositions > 0 ? new DensePrimePages(densePositions) : null;
+		this.maximumSize = maximumSize;
+		this.windowCapacity = Math.max(1, (long) (maximumSize * WINDOW_SHARE));
+		this.protectedCapacity = (long) ((maximumSize - windowCapacity) * PROTECTED_SHARE);
+		this.sketch = new FrequencySketch(maximumSize);
+		this.cacheMetrics = cacheMetrics;
+	}
+
+	@Override
+	public Optional<Long> get(PrimeCacheKey key) {
+		if (densePages != null && densePages.covers(key.position())) {
+			long prime = densePages.get(key.position());
+			if (prime != 0) {
+				return Optional.of(prime);
+			}
+		}
+		return Optional.ofNullable(lookup(key.position()));
+	}
+
+	/**
+	 * A hit in the dense pages allocates nothing. A map hit still boxes the position for the lookup,
+	 * which escape analysis usually removes once the caller is compiled.
+	 */
+	@Override
+	public long getPrime(long position) {
+		PrimeCacheKey.checkPosition(position);
+		if (densePages != null && densePages.covers(position)) {
+			long prime = densePages.get(position);
+			if (prime != ABSENT) {
+				return prime;
+			}
+		}
+		Long value = lookup(position);
+		return value == null ? ABSENT : value;
+	}
+
+	@Override
+	public void put(PrimeCacheKey key, long value) {
+		putPrime(key.position(), value);
+	}
+
+	@Override
+	public void putPrime(long position, long prime) {
+		PrimeCacheKey.checkPosition(position);
+		if (storeDensely(position, prime)) {
+			return;
+		}
+		policyLock.lock();
+		try {
+			add(position, prime);
+		} finally {
+			policyLock.unlock();
+		}
+	}
 
 	@Override
-	public Optional<Integer> get(PrimeCacheKey key) {
-		return Optional.ofNullable(cacheEntries.get(key));
+	public Map<PrimeCacheKey, Long> getAll(Collection<PrimeCacheKey> keys) {
+		Map<PrimeCacheKey, Long> found = new HashMap<>();
+		for (PrimeCacheKey key : keys) {
+			long prime = densePages != null && densePages.covers(key.position()) ? densePages.get(key.position()) : 0;
+			Long value = prime != 0 ? Long.valueOf(prime) : lookup(key.position());
+			if (value != null) {
+				found.put(key, value);
+			}
+		}
+		return found;
 	}
 
 	@Override
-	public void put(PrimeCacheKey key, int value) {
-		cacheEntries.put(key, value);
+	public void putAll(Map<PrimeCacheKey, Long> entries) {
+		policyLock.lock();
+		try {
+			entries.forEach((key, value) -> {
+				if (!storeDensely(key.position(), value)) {
+					add(key.position(), value);
+				}
+			});
+		} finally {
+			policyLock.unlock();
+		}
+	}
+
+	@Override
+	public Optional<PrimeCacheEntry> floor(long position) {
+		Map.Entry<Long, Long> entry = cacheEntries.floorEntry(position);
+		long denseFloor = densePages == null ? 0 : densePages.floorPosition(position);
+		if (denseFloor != 0 && (entry == null || entry.getKey() < denseFloor)) {
+			return Optional.of(new PrimeCacheEntry(denseFloor, densePages.get(denseFloor)));
+		}
+		return entry == null ? Optional.empty() : Optional.of(new PrimeCacheEntry(entry.getKey(), entry.getValue()));
+	}
+
+	public long maximumSize() {
+		return maximumSize;
+	}
+
+	public long size() {
+		return cacheEntries.size() + (densePages == null ? 0 : densePages.size());
+	}
+
+	public long estimatedBytes() {
+		long denseBytes = densePages == null ? 0 : densePages.allocatedBytes();
+		return (long) cacheEntries.size() * ESTIMATED_ENTRY_BYTES + sketch.sizeInBytes() + denseBytes;
+	}
+
+	private Long lookup(long position) {
+		Long value = cacheEntries.get(position);
+		if (policyLock.tryLock()) {
+			try {
+				sketch.increment(position);
+				if (value != null) {
+					onHit(position);
+				}
+			} finally {
+				policyLock.unlock();
+			}
+		}
+		return value;
+	}
+
+	// zero is the dense pages' empty marker and they hold unsigned 32-bit primes, so anything else is
+	// kept in the map even when its position is dense
+	private boolean storeDensely(long position, long value) {
+		if (densePages == null || !densePages.covers(position) || value <= 0 || value > 0xFFFF_FFFFL) {
+			return false;
+		}
+		densePages.put(position, value);
+		return true;
+	}
+
+	private void add(long position, long value) {
+		sketch.increment(position);
+		if (cacheEntries.put(position, value) != null) {
+			onHit(position);
+			return;
+		}
+		window.putLast(position, Boolean.TRUE);
+		if (window.size() > windowCapacity) {
+			admitToMain(window.pollFirstEntry().getKey());
+		}
+	}
+
+	private void onHit(long position) {
+		if (window.containsKey(position)) {
+			window.putLast(position, Boolean.TRUE);
+		} else if (probation.remove(position) != null) {
+			protectedSpace.putLast(position, Boolean.TRUE);
+			if (protectedSpace.size() > protectedCapacity) {
+				probation.putLast(protectedSpace.pollFirstEntry().getKey(), Boolean.TRUE);
+			}
+		} else if (protectedSpace.containsKey(position)) {
+			protectedSpace.putLast(position, Boolean.TRUE);
+		}
+	}
+
+	// the TinyLFU filter: a window candidate only displaces the main space's eviction victim if it is
+	// used more often
+	private void admitToMain(long candidate) {
+		if (probation.size() + protectedSpace.size() < maximumSize - windowCapacity) {
+			probation.putLast(candidate, Boolean.TRUE);
+			return;
+		}
+		Map.Entry<Long, Boolean> victimEntry = !probation.isEmpty() ? probation.firstEntry() : protectedSpace.firstEntry();
+		if (victimEntry == null || sketch.frequency(candidate) <= sketch.frequency(victimEntry.getKey())) {
+			evict(candidate, "candidate");
+			return;
+		}
+		long victim = victimEntry.getKey();
+		if (probation.remove(victim) == null) {
+			protectedSpace.remove(victim);
+		}
+		evict(victim, "victim");
+		probation.putLast(candidate, Boolean.TRUE);
+	}
+
+	private void evict(long position, String outcome) {
+		cacheEntries.remove(position);
+		if (cacheMetrics != null) {
+			cacheMetrics.record("evict", outcome);
+		}
 	}
 }
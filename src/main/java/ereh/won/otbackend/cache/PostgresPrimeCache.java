@@ -1,11 +1,28 @@
 package ereh.won.otbackend.cache;
 
 import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class PostgresPrimeCache implements PrimeCacheBackend {
 
     private static final String TABLE_NAME = "prime_cache";
+    private static final String SELECT_SQL = "SELECT prime_value FROM " + TABLE_NAME + " WHERE position = ?";
+    private static final String SELECT_ALL_SQL = "SELECT position, prime_value FROM " + TABLE_NAME
+            + " WHERE position = ANY(?)";
+    private static final int BATCH_SIZE = 500;
+    private static final String UPSERT_SQL = """
+            INSERT INTO %s (position, prime_value, created_at, updated_at)
+            VALUES (?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
+            ON CONFLICT (position)
+            DO UPDATE SET prime_value = EXCLUDED.prime_value, updated_at = CURRENT_TIMESTAMP
+            """.formatted(TABLE_NAME);
     private final JdbcTemplate jdbcTemplate;
 
     public PostgresPrimeCache(JdbcTemplate jdbcTemplate) {
@@ -16,34 +33,115 @@ public class PostgresPrimeCache implements PrimeCacheBackend {
     private void initializeTable() {
         String sql = """
                 CREATE TABLE IF NOT EXISTS %s (
-                    position INTEGER PRIMARY KEY,
-                    prime_value INTEGER NOT NULL,
+                    position BIGINT PRIMARY KEY,
+                    prime_value BIGINT NOT NULL,
                     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
                     )
                 """.formatted(TABLE_NAME);
         jdbcTemplate.execute(sql);
+        // tables created before positions went 64-bit are widened once; ALTER TABLE takes an ACCESS EXCLUSIVE
+        // lock, so it only runs while a column is still narrower
+        if (hasNarrowColumns()) {
+            jdbcTemplate.execute("""
+                    ALTER TABLE %s
+                        ALTER COLUMN position TYPE BIGINT,
+                        ALTER COLUMN prime_value TYPE BIGINT
+                    """.formatted(TABLE_NAME));
+        }
+    }
+
+    private boolean hasNarrowColumns() {
+        Integer narrow = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.columns
+                WHERE table_schema = current_schema()
+                  AND table_name = ?
+                  AND column_name IN ('position', 'prime_value')
+                  AND data_type <> 'bigint'
+                """, Integer.class, TABLE_NAME);
+        return narrow != null && narrow > 0;
     }
 
     @Override
-    public Optional<Integer> get(PrimeCacheKey key) {
-        String sql = "SELECT prime_value FROM " + TABLE_NAME + " WHERE position = ?";
-        try {
-            Integer value = jdbcTemplate.queryForObject(sql, Integer.class, key.position());
-            return Optional.ofNullable(value);
-        } catch (Exception e) {
-            return Optional.empty();
+    public Optional<Long> get(PrimeCacheKey key) {
+        return Optional.ofNullable(select(key.position()));
+    }
+
+    @Override
+    public long getPrime(long position) {
+        Long value = select(PrimeCacheKey.checkPosition(position));
+        return value == null ? ABSENT : value;
+    }
+
+    @Override
+    public void put(PrimeCacheKey key, long value) {
+        putPrime(key.position(), value);
+    }
+
+    @Override
+    public void putPrime(long position, long prime) {
+        PrimeCacheKey.checkPosition(position);
+        jdbcTemplate.update(UPSERT_SQL, position, prime);
+    }
+
+    /**
+     * Reads every key with one {@code position = ANY(?)} query over a {@code bigint[]} parameter, so the
+     * statement text stays the same whatever the batch size.
+     */
+    @Override
+    public Map<PrimeCacheKey, Long> getAll(Collection<PrimeCacheKey> keys) {
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        Long[] positions = keys.stream().map(PrimeCacheKey::position).toArray(Long[]::new);
+        List<PrimeCacheEntry> rows = jdbcTemplate.query(SELECT_ALL_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", positions)),
+                (rs, rowNum) -> new PrimeCacheEntry(rs.getLong("position"), rs.getLong("prime_value")));
+        Map<PrimeCacheKey, Long> found = new HashMap<>();
+        for (PrimeCacheEntry row : rows) {
+            found.put(new PrimeCacheKey(row.position()), row.prime());
+        }
+        return found;
+    }
+
+    /**
+     * Sends the upserts as JDBC batches. Rows are written in position order, so two overlapping batches
+     * lock their rows in the same order and cannot deadlock.
+     */
+    @Override
+    public void putAll(Map<PrimeCacheKey, Long> entries) {
+        if (entries.isEmpty()) {
+            return;
         }
+        List<Map.Entry<PrimeCacheKey, Long>> rows = new ArrayList<>(entries.entrySet());
+        rows.sort(Comparator.comparingLong(row -> row.getKey().position()));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setLong(1, row.getKey().position());
+            ps.setLong(2, row.getValue());
+        });
     }
 
     @Override
-    public void put(PrimeCacheKey key, int value) {
+    public Optional<PrimeCacheEntry> floor(long position) {
+        // backward scan of the primary key index, so this reads a single row
         String sql = """
-                INSERT INTO %s (position, prime_value, created_at, updated_at)
-                VALUES (?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
-                ON CONFLICT (position)
-                DO UPDATE SET prime_value = EXCLUDED.prime_value, updated_at = CURRENT_TIMESTAMP
+                SELECT position, prime_value FROM %s
+                WHERE position <= ?
+                ORDER BY position DESC
+                LIMIT 1
                 """.formatted(TABLE_NAME);
-        jdbcTemplate.update(sql, key.position(), value);
+        return jdbcTemplate.query(sql,
+                        (rs, rowNum) -> new PrimeCacheEntry(rs.getLong("position"), rs.getLong("prime_value")),
+                        position)
+                .stream()
+                .findFirst();
+    }
+
+    private Long select(long position) {
+        try {
+            return jdbcTemplate.queryForObject(SELECT_SQL, Long.class, position);
+        } catch (Exception e) {
+            return null;
+        }
     }
 }
@@ -1,9 +1,49 @@
 package ereh.won.otbackend.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 public interface PrimeCache {
-	Optional<Integer> get(PrimeCacheKey key);
+	/** Returned by {@link #getPrime} for a position that is not cached; no prime is zero. */
+	long ABSENT = 0;
 
-	void put(PrimeCacheKey key, int value);
+	Optional<Long> get(PrimeCacheKey key);
+
+	void put(PrimeCacheKey key, long value);
+
+	/**
+	 * Primitive form of {@link #get} for the hot read path: returns the cached prime at {@code position},
+	 * or {@link #ABSENT}. Backends override it to skip the key, {@code Optional} and boxed {@code Long}.
+	 */
+	default long getPrime(long position) {
+		return get(new PrimeCacheKey(position)).orElse(ABSENT);
+	}
+
+	/** Primitive form of {@link #put}. */
+	default void putPrime(long position, long prime) {
+		put(new PrimeCacheKey(position), prime);
+	}
+
+	/**
+	 * Looks up several keys at once and returns the entries that are cached; absent keys are left out.
+	 */
+	default Map<PrimeCacheKey, Long> getAll(Collection<PrimeCacheKey> keys) {
+		Map<PrimeCacheKey, Long> found = new HashMap<>();
+		for (PrimeCacheKey key : keys) {
+			get(key).ifPresent(value -> found.put(key, value));
+		}
+		return found;
+	}
+
+	default void putAll(Map<PrimeCacheKey, Long> entries) {
+		entries.forEach(this::put);
+	}
+
+	/**
+	 * Returns the cached entry with the largest position at or below {@code position}, so a miss can
+	 * continue from the nearest known prime instead of starting over.
+	 */
+	Optional<PrimeCacheEntry> floor(long position);
 }
@@ -0,0 +1,4 @@
+package ereh.won.otbackend.cache;
+
+public record PrimeCacheEntry(long position, long prime) {
+}
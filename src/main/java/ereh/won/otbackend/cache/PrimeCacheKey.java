@@ -1,12 +1,15 @@
 package ereh.won.otbackend.cache;
 
-public record PrimeCacheKey(Integer position) {
+public record PrimeCacheKey(long position) {
 	public PrimeCacheKey {
-		if (position == null) {
-			throw new IllegalArgumentException("Prime cache position cannot be null");
-		}
+		checkPosition(position);
+	}
+
+	/** Applies the constructor's validation for primitive cache calls that never build a key. */
+	public static long checkPosition(long position) {
 		if (position < 1) {
 			throw new IllegalArgumentException("Prime cache position must be positive");
 		}
+		return position;
 	}
 }
@@ -3,14 +3,37 @@ package ereh.won.otbackend.cache;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 @Getter
 @Setter
 @ConfigurationProperties(prefix = "prime.cache")
 public class PrimeCacheProperties {
     private Backend backend = Backend.MEMORY;
+    private Memory memory = new Memory();
     private Redis redis = new Redis();
     private Postgres postgres = new Postgres();
+    private Checkpoints checkpoints = new Checkpoints();
+    private NearCache nearCache = new NearCache();
+
+    @Getter
+    @Setter
+    public static class Memory {
+        private long maxEntries = InMemoryPrimeCache.DEFAULT_MAXIMUM_SIZE;
+        // optional; converted to entries at the estimated per-entry footprint, and the tighter limit wins
+        private DataSize maxBytes;
+        // positions 1..dense-positions are kept in lazily allocated int pages outside the bound above
+        private long densePositions = InMemoryPrimeCache.DEFAULT_DENSE_POSITIONS;
+
+        public long maximumSize() {
+            if (maxBytes == null) {
+                return maxEntries;
+            }
+            return Math.max(1, Math.min(maxEntries, maxBytes.toBytes() / InMemoryPrimeCache.ESTIMATED_ENTRY_BYTES));
+        }
+    }
 
     @Getter
     @Setter
@@ -29,6 +52,26 @@ public class PrimeCacheProperties {
         private String database = "postgres";
     }
 
+    @Getter
+    @Setter
+    public static class Checkpoints {
+        private boolean enabled = true;
+        // positions between checkpoints written during long computations
+        private long interval = 100_000;
+        private int queueCapacity = 1_024;
+        private int maxWritesPerFlush = 256;
+        private Duration flushInterval = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class NearCache {
+        // in-process L1 in front of REDIS or POSTGRES; unused with MEMORY
+        private boolean enabled = true;
+        // slots, rounded up to a power of two
+        private int capacity = 65_536;
+    }
+
     public enum Backend {
         MEMORY,
         REDIS,
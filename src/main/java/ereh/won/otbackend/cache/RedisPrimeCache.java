@@ -1,12 +1,25 @@
 package ereh.won.otbackend.cache;
 
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class RedisPrimeCache implements PrimeCacheBackend {
 
     private static final String KEY_PREFIX = "prime:cache:";
+    // sorted set of cached positions scored by position; exact because positions stay below 2^53
+    private static final String POSITION_INDEX_KEY = "prime:cache-index";
     private final StringRedisTemplate redisTemplate;
 
     public RedisPrimeCache(StringRedisTemplate redisTemplate) {
@@ -14,22 +27,110 @@ public class RedisPrimeCache implements PrimeCacheBackend {
     }
 
     @Override
-    public Optional<Integer> get(PrimeCacheKey key) {
-        String cacheKey = buildKey(key);
-        String value = redisTemplate.opsForValue().get(cacheKey);
+    public Optional<Long> get(PrimeCacheKey key) {
+        String value = redisTemplate.opsForValue().get(buildKey(key.position()));
         if (value == null) {
             return Optional.empty();
         }
-        return Optional.of(Integer.parseInt(value));
+        return Optional.of(Long.parseLong(value));
     }
 
     @Override
-    public void put(PrimeCacheKey key, int value) {
-        String cacheKey = buildKey(key);
-        redisTemplate.opsForValue().set(cacheKey, String.valueOf(value));
+    public long getPrime(long position) {
+        String value = redisTemplate.opsForValue().get(buildKey(PrimeCacheKey.checkPosition(position)));
+        return value == null ? ABSENT : Long.parseLong(value);
     }
 
-    private String buildKey(PrimeCacheKey key) {
-        return KEY_PREFIX + key.position();
+    @Override
+    public void put(PrimeCacheKey key, long value) {
+        putPrime(key.position(), value);
+    }
+
+    @Override
+    public void putPrime(long position, long prime) {
+        PrimeCacheKey.checkPosition(position);
+        writeAtomically(operations -> {
+            operations.opsForValue().set(buildKey(position), String.valueOf(prime));
+            operations.opsForZSet().add(POSITION_INDEX_KEY, String.valueOf(position), position);
+        });
+    }
+
+    /**
+     * Reads every key with a single MGET, so a batch costs one round trip instead of one per key.
+     */
+    @Override
+    public Map<PrimeCacheKey, Long> getAll(Collection<PrimeCacheKey> keys) {
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        List<PrimeCacheKey> ordered = new ArrayList<>(keys);
+        List<String> cacheKeys = new ArrayList<>(ordered.size());
+        for (PrimeCacheKey key : ordered) {
+            cacheKeys.add(buildKey(key.position()));
+        }
+        List<String> values = redisTemplate.opsForValue().multiGet(cacheKeys);
+        Map<PrimeCacheKey, Long> found = new HashMap<>();
+        if (values == null) {
+            return found;
+        }
+        for (int i = 0; i < ordered.size(); i++) {
+            String value = values.get(i);
+            if (value != null) {
+                found.put(ordered.get(i), Long.parseLong(value));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Writes the values with one MSET and the position index with one multi-member ZADD, applied together
+     * in a single round trip.
+     */
+    @Override
+    public void putAll(Map<PrimeCacheKey, Long> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Map<String, String> values = new HashMap<>();
+        Set<ZSetOperations.TypedTuple<String>> index = new HashSet<>();
+        entries.forEach((key, value) -> {
+            values.put(buildKey(key.position()), String.valueOf(value));
+            index.add(ZSetOperations.TypedTuple.of(String.valueOf(key.position()), (double) key.position()));
+        });
+        writeAtomically(operations -> {
+            operations.opsForValue().multiSet(values);
+            operations.opsForZSet().add(POSITION_INDEX_KEY, index);
+        });
+    }
+
+    @Override
+    public Optional<PrimeCacheEntry> floor(long position) {
+        Set<String> members = redisTemplate.opsForZSet()
+                .reverseRangeByScore(POSITION_INDEX_KEY, Double.NEGATIVE_INFINITY, position, 0, 1);
+        if (members == null || members.isEmpty()) {
+            return Optional.empty();
+        }
+        long floorPosition = Long.parseLong(members.iterator().next());
+        return get(new PrimeCacheKey(floorPosition)).map(prime -> new PrimeCacheEntry(floorPosition, prime));
+    }
+
+    // MULTI/EXEC inside a pipeline: a value and its index entry are applied together, in one round trip,
+    // so floor never misses a value that get can see
+    private void writeAtomically(Consumer<RedisOperations<String, String>> writes) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> stringOperations = (RedisOperations<String, String>) operations;
+                stringOperations.multi();
+                writes.accept(stringOperations);
+                stringOperations.exec();
+                return null;
+            }
+        });
+    }
+
+    private String buildKey(long position) {
+        return KEY_PREFIX + position;
     }
 }
@@ -0,0 +1,135 @@
+package ereh.won.otbackend.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An in-process near cache (L1) in front of a remote backend (L2). Reads try L1 first and fill it from
+ * L2; writes go to both. Primes never change, so an L1 entry is never stale and needs no invalidation.
+ * L1 is a fixed-size, direct-mapped table: each position hashes to one slot and a newer entry simply
+ * replaces the one there. Slots hold immutable entries, so lookups need no locks. Floor lookups always
+ * go to L2, which holds every entry L1 does.
+ */
+public class TieredPrimeCache implements PrimeCache {
+	private final PrimeCacheEntry[] slots;
+	private final int mask;
+	private final PrimeCacheBackend backend;
+	private final CacheMetrics cacheMetrics;
+
+	public TieredPrimeCache(PrimeCacheBackend backend, CacheMetrics cacheMetrics, int capacity) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Near cache capacity must be between 1 and 2^30: " + capacity);
+		}
+		int slotCount = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.slots = new PrimeCacheEntry[slotCount];
+		this.mask = slotCount - 1;
+		this.backend = backend;
+		this.cacheMetrics = cacheMetrics;
+	}
+
+	@Override
+	public Optional<Long> get(PrimeCacheKey key) {
+		long position = key.position();
+		PrimeCacheEntry near = slots[slot(position)];
+		if (near != null && near.position() == position) {
+			cacheMetrics.recordTier("l1", "get", "hit");
+			return Optional.of(near.prime());
+		}
+		cacheMetrics.recordTier("l1", "get", "miss");
+
+		Optional<Long> far = backend.get(key);
+		cacheMetrics.recordTier("l2", "get", far.isPresent() ? "hit" : "miss");
+		far.ifPresent(prime -> remember(position, prime));
+		return far;
+	}
+
+	@Override
+	public long getPrime(long position) {
+		PrimeCacheKey.checkPosition(position);
+		PrimeCacheEntry near = slots[slot(position)];
+		if (near != null && near.position() == position) {
+			cacheMetrics.recordTier("l1", "get", "hit");
+			return near.prime();
+		}
+		cacheMetrics.recordTier("l1", "get", "miss");
+
+		long far = backend.getPrime(position);
+		cacheMetrics.recordTier("l2", "get", far != ABSENT ? "hit" : "miss");
+		if (far != ABSENT) {
+			remember(position, far);
+		}
+		return far;
+	}
+
+	@Override
+	public Map<PrimeCacheKey, Long> getAll(Collection<PrimeCacheKey> keys) {
+		Map<PrimeCacheKey, Long> found = new HashMap<>();
+		List<PrimeCacheKey> missing = new ArrayList<>();
+		for (PrimeCacheKey key : keys) {
+			PrimeCacheEntry near = slots[slot(key.position())];
+			if (near != null && near.position() == key.position()) {
+				found.put(key, near.prime());
+				cacheMetrics.recordTier("l1", "get", "hit");
+			} else {
+				missing.add(key);
+				cacheMetrics.recordTier("l1", "get", "miss");
+			}
+		}
+		if (missing.isEmpty()) {
+			return found;
+		}
+
+		Map<PrimeCacheKey, Long> far = backend.getAll(missing);
+		for (PrimeCacheKey key : missing) {
+			Long prime = far.get(key);
+			cacheMetrics.recordTier("l2", "get", prime != null ? "hit" : "miss");
+			if (prime != null) {
+				remember(key.position(), prime);
+				found.put(key, prime);
+			}
+		}
+		return found;
+	}
+
+	@Override
+	public void put(PrimeCacheKey key, long value) {
+		// L1 first: the value is correct even if the L2 write fails, and keeping it spares the next read
+		remember(key.position(), value);
+		backend.put(key, value);
+	}
+
+	@Override
+	public void putPrime(long position, long prime) {
+		PrimeCacheKey.checkPosition(position);
+		remember(position, prime);
+		backend.putPrime(position, prime);
+	}
+
+	@Override
+	public void putAll(Map<PrimeCacheKey, Long> entries) {
+		entries.forEach((key, value) -> remember(key.position(), value));
+		backend.putAll(entries);
+	}
+
+	@Override
+	public Optional<PrimeCacheEntry> floor(long position) {
+		return backend.floor(position);
+	}
+
+	int capacity() {
+		return slots.length;
+	}
+
+	private void remember(long position, long prime) {
+		slots[slot(position)] = new PrimeCacheEntry(position, prime);
+	}
+
+	private int slot(long position) {
+		// Fibonacci hashing spreads consecutive positions, which are the common access pattern, over all slots
+		return (int) ((position * 0x9E3779B97F4A7C15L) >>> 33) & mask;
+	}
+}
@@ -1,11 +1,16 @@
 package ereh.won.otbackend.config;
 
+import ereh.won.otbackend.cache.CacheMetrics;
+import ereh.won.otbackend.cache.CheckpointWriteBack;
 import ereh.won.otbackend.cache.InMemoryPrimeCache;
 import ereh.won.otbackend.cache.PostgresPrimeCache;
 import ereh.won.otbackend.cache.PrimeCache;
+import ereh.won.otbackend.cache.PrimeCacheBackend;
 import ereh.won.otbackend.cache.PrimeCacheProperties;
 import ereh.won.otbackend.cache.PrimeCacheSelection;
 import ereh.won.otbackend.cache.RedisPrimeCache;
+import ereh.won.otbackend.cache.TieredPrimeCache;
+import ereh.won.otbackend.prime.PrimeCheckpointSink;
 import lombok.extern.java.Log;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -134,17 +139,47 @@ public class CacheConfig {
     @Bean
     @ConditionalOnMissingBean
     public PrimeCache primeCache(RedisConnectionFactory redisConnectionFactory,
-                                  JdbcTemplate jdbcTemplate) {
+                                  JdbcTemplate jdbcTemplate, CacheMetrics cacheMetrics) {
         PrimeCacheProperties.Backend effective = cacheSelection.getEffectiveBackend();
         log.info("Creating PrimeCache with effective backend: " + effective);
 
         return switch (effective) {
-            case REDIS -> new RedisPrimeCache(new StringRedisTemplate(redisConnectionFactory));
-            case POSTGRES -> new PostgresPrimeCache(jdbcTemplate);
-            default -> new InMemoryPrimeCache();
+            case REDIS -> withNearCache(new RedisPrimeCache(new StringRedisTemplate(redisConnectionFactory)),
+                    cacheMetrics);
+            case POSTGRES -> withNearCache(new PostgresPrimeCache(jdbcTemplate), cacheMetrics);
+            default -> memoryCache(cacheMetrics);
         };
     }
 
+    private InMemoryPrimeCache memoryCache(CacheMetrics cacheMetrics) {
+        PrimeCacheProperties.Memory memory = properties.getMemory();
+        long maximumSize = memory.maximumSize();
+        log.info("Bounding the in-memory cache at " + maximumSize + " entries beyond the first "
+                + memory.getDensePositions() + " positions");
+        InMemoryPrimeCache cache = new InMemoryPrimeCache(maximumSize, memory.getDensePositions(), cacheMetrics);
+        cacheMetrics.registerMemoryCache(cache);
+        return cache;
+    }
+
+    private PrimeCache withNearCache(PrimeCacheBackend backend, CacheMetrics cacheMetrics) {
+        PrimeCacheProperties.NearCache nearCache = properties.getNearCache();
+        if (!nearCache.isEnabled()) {
+            return backend;
+        }
+        log.info("Fronting the cache backend with a " + nearCache.getCapacity() + "-entry in-process near cache");
+        return new TieredPrimeCache(backend, cacheMetrics, nearCache.getCapacity());
+    }
+
+    @Bean
+    public PrimeCheckpointSink primeCheckpointSink(PrimeCache primeCache, CacheMetrics cacheMetrics) {
+        PrimeCacheProperties.Checkpoints checkpoints = properties.getCheckpoints();
+        if (!checkpoints.isEnabled()) {
+            return PrimeCheckpointSink.NONE;
+        }
+        log.info("Writing computation checkpoints to the cache every " + checkpoints.getInterval() + " positions");
+        return new CheckpointWriteBack(primeCache, cacheMetrics, checkpoints);
+    }
+
     @Bean
     public RedisConnectionFactory redisConnectionFactory() {
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration();
@@ -0,0 +1,152 @@
+package ereh.won.otbackend.config;
+
+import ereh.won.otbackend.ComputeAdmission;
+import ereh.won.otbackend.InFlightComputations;
+import ereh.won.otbackend.MissBatcher;
+import ereh.won.otbackend.PrimeJobService;
+import ereh.won.otbackend.PrimeUtils;
+import ereh.won.otbackend.PrimesService;
+import ereh.won.otbackend.ServiceMetrics;
+import ereh.won.otbackend.cache.CacheMetrics;
+import ereh.won.otbackend.cache.PrimeCache;
+import ereh.won.otbackend.prime.AutoTunedPrimeEngine;
+import ereh.won.otbackend.prime.BitmapPrimeEngine;
+import ereh.won.otbackend.prime.MappedPrimeBitmap;
+import ereh.won.otbackend.prime.ParallelSegmentedSieve;
+import ereh.won.otbackend.prime.PrimeCheckpointSink;
+import ereh.won.otbackend.prime.PrimeCheckpoints;
+import ereh.won.otbackend.prime.PrimeComputeProperties;
+import ereh.won.otbackend.prime.PrimeEngine;
+import ereh.won.otbackend.prime.PrimeTable;
+import ereh.won.otbackend.prime.SievePrimeEngine;
+import ereh.won.otbackend.prime.TrialDivisionPrimeEngine;
+import lombok.extern.java.Log;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@Configuration
+@EnableConfigurationProperties(PrimeComputeProperties.class)
+@Log
+public class PrimeEngineConfig {
+
+    private final PrimeComputeProperties properties;
+
+    public PrimeEngineConfig(PrimeComputeProperties properties) {
+        this.properties = properties;
+    }
+
+    @Bean
+    public ParallelSegmentedSieve parallelSegmentedSieve() {
+        int parallelism = properties.getParallelism();
+        if (parallelism <= 1) {
+            return ParallelSegmentedSieve.sequential();
+        }
+
+        // dedicated daemon workers so sieving never competes with the servlet container's thread pool
+        AtomicInteger workerCount = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            var worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            worker.setName("prime-sieve-" + workerCount.incrementAndGet());
+            return worker;
+        }, null, false);
+        return new ParallelSegmentedSieve(pool, properties.getParallelThreshold());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public PrimeEngine primeEngine(ParallelSegmentedSieve parallelSegmentedSieve,
+                                   PrimeCheckpointSink primeCheckpointSink) {
+        PrimeComputeProperties.Engine configured = properties.getEngine();
+        PrimeEngine engine = switch (configured) {
+            case TRIAL_DIVISION -> new TrialDivisionPrimeEngine();
+            case SIEVE -> sieveEngine(parallelSegmentedSieve, PrimeCheckpoints.load(), primeCheckpointSink);
+            case BITMAP -> new BitmapPrimeEngine(openBitmap(),
+                    sieveEngine(parallelSegmentedSieve, PrimeCheckpoints.load(), primeCheckpointSink));
+            case AUTO -> autoTunedEngine(parallelSegmentedSieve, primeCheckpointSink);
+        };
+        log.info("Creating PrimeEngine '" + engine.name() + "' for configured engine " + configured);
+        PrimeUtils.useEngine(engine);
+        return engine;
+    }
+
+    @Bean
+    public InFlightComputations inFlightComputations(ServiceMetrics serviceMetrics) {
+        return new InFlightComputations(serviceMetrics, properties.getCoalescing().getWaitTimeout());
+    }
+
+    @Bean
+    public ComputeAdmission computeAdmission(ServiceMetrics serviceMetrics) {
+        PrimeComputeProperties.Admission admission = properties.getAdmission();
+        if (!admission.isEnabled()) {
+            return ComputeAdmission.unlimited(serviceMetrics);
+        }
+        return new ComputeAdmission(serviceMetrics, admission.getBudget(),
+                Math.min(admission.getMaxWeight(), admission.getBudget()),
+                admission.getMaxQueued(), admission.getQueueTimeout(), admission.getRetryAfter());
+    }
+
+    @Bean
+    public MissBatcher missBatcher(PrimeEngine primeEngine, PrimeCache primeCache, CacheMetrics cacheMetrics,
+                                   ServiceMetrics serviceMetrics, ComputeAdmission computeAdmission) {
+        PrimeComputeProperties.Batching batching = properties.getBatching();
+        return new MissBatcher(primeEngine, primeCache, cacheMetrics, serviceMetrics, computeAdmission,
+                properties.getJobs().getCostThreshold(), batching.getWindow(), batching.getMaxSize());
+    }
+
+    @Bean
+    public PrimeJobService primeJobService(PrimesService primesService, MissBatcher missBatcher,
+                                           PrimeEngine primeEngine, PrimeCache primeCache, CacheMetrics cacheMetrics,
+                                           ServiceMetrics serviceMetrics) {
+        return new PrimeJobService(primesService, missBatcher, primeEngine, primeCache, cacheMetrics, serviceMetrics,
+                properties.getJobs());
+    }
+
+    private SievePrimeEngine sieveEngine(ParallelSegmentedSieve parallelSegmentedSieve, PrimeCheckpoints checkpoints,
+                                         PrimeCheckpointSink primeCheckpointSink) {
+        return new SievePrimeEngine(new PrimeTable(properties.getTableCapacity(), parallelSegmentedSieve,
+                checkpoints, primeCheckpointSink));
+    }
+
+    private MappedPrimeBitmap openBitmap() {
+        String bitmapFile = properties.getBitmapFile();
+        if (bitmapFile == null || bitmapFile.isBlank()) {
+            throw new IllegalStateException("prime.compute.bitmap-file must be set to use the BITMAP engine");
+        }
+        try {
+            return MappedPrimeBitmap.openOrBuild(Path.of(bitmapFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open prime bitmap " + bitmapFile, e);
+        }
+    }
+
+    private PrimeEngine autoTunedEngine(ParallelSegmentedSieve parallelSegmentedSieve,
+                                        PrimeCheckpointSink primeCheckpointSink) {
+        PrimeCheckpoints checkpoints = PrimeCheckpoints.load();
+        SievePrimeEngine sieve = sieveEngine(parallelSegmentedSieve, checkpoints, primeCheckpointSink);
+        // probes sieve into tables of their own and report no checkpoints, so tuning leaves no trace behind
+        Supplier<PrimeEngine> sieveProbe =
+                () -> sieveEngine(parallelSegmentedSieve, checkpoints, PrimeCheckpointSink.NONE);
+        List<AutoTunedPrimeEngine.Candidate> candidates = new ArrayList<>(List.of(
+                AutoTunedPrimeEngine.Candidate.stateless(new TrialDivisionPrimeEngine()),
+                new AutoTunedPrimeEngine.Candidate(sieve, sieveProbe)));
+        String bitmapFile = properties.getBitmapFile();
+        if (bitmapFile != null && !bitmapFile.isBlank()) {
+            MappedPrimeBitmap bitmap = openBitmap();
+            candidates.add(new AutoTunedPrimeEngine.Candidate(new BitmapPrimeEngine(bitmap, sieve),
+                    () -> new BitmapPrimeEngine(bitmap, sieveProbe.get())));
+        }
+        PrimeComputeProperties.AutoTune autoTune = properties.getAutoTune();
+        return AutoTunedPrimeEngine.tune(candidates, autoTune.getRangeBoundaries(), checkpoints, autoTune.getBudget());
+    }
+}
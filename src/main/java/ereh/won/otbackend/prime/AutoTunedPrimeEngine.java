@@ -0,0 +1,199 @@
+package ereh.won.otbackend.prime;
+
+import lombok.extern.java.Log;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Routes each position range to the engine that was fastest for it in a startup micro-benchmark on
+ * the current hardware. Ranges are split at ascending {@code boundaries}; every range is timed in its
+ * middle, halfway between two checkpoints so no sample is a checkpoint hit, starting with the
+ * cheapest, and an engine whose next measurement is predicted to exceed the budget is dropped from
+ * the remaining ranges so tuning never stalls on a slow engine. Each sample runs on a fresh probe
+ * engine, so it pays for a real miss and the production engines' tables are left as they were.
+ * Primality and range queries go to the winner of the last range, the one that scales furthest.
+ */
+@Log
+public final class AutoTunedPrimeEngine implements PrimeEngine, AutoCloseable {
+    private static final int SAMPLES = 5;
+
+    private final long[] boundaries;
+    private final PrimeEngine[] routes;
+    private final List<PrimeEngine> candidates;
+
+    private AutoTunedPrimeEngine(long[] boundaries, PrimeEngine[] routes, List<PrimeEngine> candidates) {
+        this.boundaries = boundaries;
+        this.routes = routes;
+        this.candidates = candidates;
+    }
+
+    /**
+     * An engine to route to, and how to build a throwaway engine that computes like it from an empty
+     * state. Probes may share read-only resources with the engine but must not grow its state.
+     */
+    public record Candidate(PrimeEngine engine, Supplier<PrimeEngine> probe) {
+
+        /** For engines that keep no state between lookups, which can be timed directly. */
+        public static Candidate stateless(PrimeEngine engine) {
+            return new Candidate(engine, () -> engine);
+        }
+    }
+
+    public static AutoTunedPrimeEngine tune(List<Candidate> candidates, List<Long> boundaries,
+                                            PrimeCheckpoints checkpoints, Duration budget) {
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("Auto-tuning needs at least one engine");
+        }
+        long[] bounds = boundaries.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        if (bounds.length > 0 && bounds[0] < 2) {
+            throw new IllegalArgumentException("Range boundaries must be above 1: " + boundaries);
+        }
+
+        List<Candidate> eligible = new ArrayList<>(candidates);
+        PrimeEngine[] routes = new PrimeEngine[bounds.length + 1];
+        int interval = checkpoints.interval();
+        long sample = samplePosition(bounds, 0, interval);
+        for (int range = 0; range < routes.length; range++) {
+            long nextSample = range < bounds.length ? samplePosition(bounds, range + 1, interval) : sample;
+            long bestNanos = Long.MAX_VALUE;
+            for (Candidate candidate : List.copyOf(eligible)) {
+                long nanos = measure(candidate.probe(), sample);
+                if (nanos < bestNanos) {
+                    bestNanos = nanos;
+                    routes[range] = candidate.engine();
+                }
+                double predicted = (double) nanos * nextSample / sample;
+                if (eligible.size() > 1 && predicted > budget.toNanos()) {
+                    eligible.remove(candidate);
+                }
+            }
+            log.info("Auto-tune: positions from " + (range == 0 ? 1 : bounds[range - 1]) + " -> "
+                    + routes[range].name() + " (" + bestNanos / 1_000 + " us at " + sample + ")");
+            sample = nextSample;
+        }
+        return new AutoTunedPrimeEngine(bounds, routes,
+                candidates.stream().map(Candidate::engine).toList());
+    }
+
+    /**
+     * The middle of a range, moved to halfway between the checkpoints around it when that stays in
+     * the range. The last range has no end and is sampled as if it were as wide as its start.
+     */
+    static long samplePosition(long[] bounds, int range, int checkpointInterval) {
+        long lower = range == 0 ? 1 : bounds[range - 1];
+        long upper = range < bounds.length ? bounds[range] : 2 * lower;
+        long middle = lower + (upper - lower) / 2;
+        long between = middle - middle % checkpointInterval + checkpointInterval / 2;
+        return middle >= checkpointInterval && between > lower && between < upper ? between : middle;
+    }
+
+    // the median of fresh probes, so one slow or lucky run does not decide the route
+    private static long measure(Supplier<PrimeEngine> probe, long position) {
+        long[] nanos = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            PrimeEngine engine = probe.get();
+            long start = System.nanoTime();
+            engine.nthPrime(position + i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[SAMPLES / 2];
+    }
+
+    @Override
+    public String name() {
+        StringBuilder name = new StringBuilder("auto[");
+        for (int range = 0; range < routes.length; range++) {
+            name.append(range == 0 ? "1" : ", " + boundaries[range - 1]).append(':').append(routes[range].name());
+        }
+        return name.append(']').toString();
+    }
+
+    PrimeEngine engineFor(long position) {
+        int index = Arrays.binarySearch(boundaries, position);
+        return routes[index >= 0 ? index + 1 : -index - 1];
+    }
+
+    @Override
+    public long nthPrime(long position) {
+        return engineFor(position).nthPrime(position);
+    }
+
+    @Override
+    public long nthPrimeAfter(long knownPosition, long knownPrime, long position) {
+        return engineFor(position).nthPrimeAfter(knownPosition, knownPrime, position);
+    }
+
+    @Override
+    public long estimateCost(long knownPosition, long knownPrime, long position) {
+        return engineFor(position).estimateCost(knownPosition, knownPrime, position);
+    }
+
+    @Override
+    public long estimateBatchCost(long knownPosition, long knownPrime, long[] positions) {
+        long cost = 0;
+        int start = 0;
+        while (start < positions.length) {
+            PrimeEngine engine = engineFor(positions[start]);
+            int end = start + 1;
+            while (end < positions.length && engineFor(positions[end]) == engine) {
+                end++;
+            }
+            cost += engine.estimateBatchCost(knownPosition, knownPrime, Arrays.copyOfRange(positions, start, end));
+            start = end;
+        }
+        return cost;
+    }
+
+    @Override
+    public long[] nthPrimes(long[] positions) {
+        return nthPrimesAfter(0, 0, positions);
+    }
+
+    @Override
+    public long[] nthPrimesAfter(long knownPosition, long knownPrime, long[] positions) {
+        for (int i = 1; i < positions.length; i++) {
+            if (positions[i] < positions[i - 1]) {
+                throw new IllegalArgumentException("Prime positions must be ascending");
+            }
+        }
+
+        long[] primes = new long[positions.length];
+        int start = 0;
+        while (start < positions.length) {
+            PrimeEngine engine = engineFor(positions[start]);
+            int end = start + 1;
+            while (end < positions.length && engineFor(positions[end]) == engine) {
+                end++;
+            }
+            long[] answered = engine.nthPrimesAfter(knownPosition, knownPrime, Arrays.copyOfRange(positions, start, end));
+            System.arraycopy(answered, 0, primes, start, answered.length);
+            start = end;
+        }
+        return primes;
+    }
+
+    @Override
+    public boolean isPrime(long candidate) {
+        return routes[routes.length - 1].isPrime(candidate);
+    }
+
+    @Override
+    public void primesInRange(long from, long to, LongPredicate action) {
+        routes[routes.length - 1].primesInRange(from, to, action);
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (PrimeEngine engine : candidates) {
+            if (engine instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
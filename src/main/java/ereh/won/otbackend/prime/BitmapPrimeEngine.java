@@ -0,0 +1,111 @@
+package ereh.won.otbackend.prime;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Serves everything within a {@link MappedPrimeBitmap} from the bitmap and hands the rest to a
+ * fallback engine.
+ */
+public final class BitmapPrimeEngine implements PrimeEngine, AutoCloseable {
+    private final MappedPrimeBitmap bitmap;
+    private final PrimeEngine fallback;
+
+    public BitmapPrimeEngine(MappedPrimeBitmap bitmap, PrimeEngine fallback) {
+        this.bitmap = bitmap;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String name() {
+        return "bitmap";
+    }
+
+    @Override
+    public long nthPrime(long position) {
+        return nthPrimeAfter(0, 0, position);
+    }
+
+    // past the bitmap the fallback can always continue from the bitmap's last prime
+    @Override
+    public long nthPrimeAfter(long knownPosition, long knownPrime, long position) {
+        if (position >= 1 && position <= bitmap.primeCount()) {
+            return bitmap.nthPrime(position);
+        }
+        if (position < 1 || knownPosition >= bitmap.primeCount()) {
+            return fallback.nthPrimeAfter(knownPosition, knownPrime, position);
+        }
+        return fallback.nthPrimeAfter(bitmap.primeCount(), bitmap.nthPrime(bitmap.primeCount()), position);
+    }
+
+    @Override
+    public long estimateCost(long knownPosition, long knownPrime, long position) {
+        if (position >= 1 && position <= bitmap.primeCount()) {
+            return 0;
+        }
+        if (knownPosition >= bitmap.primeCount()) {
+            return fallback.estimateCost(knownPosition, knownPrime, position);
+        }
+        return fallback.estimateCost(bitmap.primeCount(), bitmap.nthPrime(bitmap.primeCount()), position);
+    }
+
+    @Override
+    public long estimateBatchCost(long knownPosition, long knownPrime, long[] positions) {
+        int inBitmap = 0;
+        while (inBitmap < positions.length && positions[inBitmap] >= 1 && positions[inBitmap] <= bitmap.primeCount()) {
+            inBitmap++;
+        }
+        if (inBitmap == positions.length) {
+            return 0;
+        }
+        long[] beyondPositions = Arrays.copyOfRange(positions, inBitmap, positions.length);
+        return knownPosition >= bitmap.primeCount() || beyondPositions[0] < 1
+                ? fallback.estimateBatchCost(knownPosition, knownPrime, beyondPositions)
+                : fallback.estimateBatchCost(bitmap.primeCount(), bitmap.nthPrime(bitmap.primeCount()), beyondPositions);
+    }
+
+    @Override
+    public long[] nthPrimes(long[] positions) {
+        return nthPrimesAfter(0, 0, positions);
+    }
+
+    @Override
+    public long[] nthPrimesAfter(long knownPosition, long knownPrime, long[] positions) {
+        int inBitmap = 0;
+        while (inBitmap < positions.length && positions[inBitmap] >= 1 && positions[inBitmap] <= bitmap.primeCount()) {
+            inBitmap++;
+        }
+        long[] primes = PrimeEngine.super.nthPrimes(Arrays.copyOf(positions, inBitmap));
+        if (inBitmap == positions.length) {
+            return primes;
+        }
+        long[] beyondPositions = Arrays.copyOfRange(positions, inBitmap, positions.length);
+        long[] beyond = knownPosition >= bitmap.primeCount() || beyondPositions[0] < 1
+                ? fallback.nthPrimesAfter(knownPosition, knownPrime, beyondPositions)
+                : fallback.nthPrimesAfter(bitmap.primeCount(), bitmap.nthPrime(bitmap.primeCount()), beyondPositions);
+        primes = Arrays.copyOf(primes, positions.length);
+        System.arraycopy(beyond, 0, primes, inBitmap, beyond.length);
+        return primes;
+    }
+
+    @Override
+    public boolean isPrime(long candidate) {
+        return candidate <= bitmap.limit() ? bitmap.isPrime(candidate) : fallback.isPrime(candidate);
+    }
+
+    @Override
+    public void primesInRange(long from, long to, LongPredicate action) {
+        long bitmapEnd = Math.min(to, bitmap.limit() + 1);
+        if (from < bitmapEnd && !bitmap.forEachPrime(from, bitmapEnd, action)) {
+            return;
+        }
+        if (to > bitmapEnd) {
+            fallback.primesInRange(Math.max(from, bitmapEnd), to, action);
+        }
+    }
+
+    @Override
+    public void close() {
+        bitmap.close();
+    }
+}
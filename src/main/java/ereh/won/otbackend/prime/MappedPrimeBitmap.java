@@ -0,0 +1,290 @@
+package ereh.won.otbackend.prime;
+
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongPredicate;
+
+/**
+ * Odd-only primality bitmap in a memory-mapped file, where bit {@code i} is set when {@code 2i + 1} is
+ * prime. Two rank directories follow the bitmap: an absolute count per 2^16-bit superblock and a count
+ * relative to the superblock per 512-bit block, so {@code pi(x)} needs at most eight popcounts and the
+ * nth prime two binary searches. Everything lives off-heap; the file is built once, published with an
+ * atomic rename and then mapped read-only, so JVMs on the same host share the page cache.
+ */
+@Log
+public final class MappedPrimeBitmap implements AutoCloseable {
+    public static final long DEFAULT_LIMIT = 0xFFFF_FFFFL;
+    private static final int MAGIC = 0x504D_4250;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int BLOCK_BITS = 512;
+    private static final int SUPERBLOCK_BITS = 1 << 16;
+    private static final int BLOCKS_PER_SUPERBLOCK = SUPERBLOCK_BITS / BLOCK_BITS;
+
+    private final Arena arena;
+    private final MemorySegment file;
+    private final long limit;
+    private final long bits;
+    private final long superblockOffset;
+    private final long blockOffset;
+    private final long primeCount;
+
+    private MappedPrimeBitmap(Arena arena, MemorySegment file, long limit) {
+        this.arena = arena;
+        this.file = file;
+        this.limit = limit;
+        this.bits = bitsFor(limit);
+        this.superblockOffset = HEADER_BYTES + bits / Byte.SIZE;
+        this.blockOffset = superblockOffset + superblocks(bits) * Integer.BYTES;
+        this.primeCount = file.get(ValueLayout.JAVA_LONG, 16);
+    }
+
+    public static MappedPrimeBitmap openOrBuild(Path path) throws IOException {
+        return openOrBuild(path, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Maps the bitmap at {@code path}, building it first when the file is missing or was built for a
+     * different limit.
+     */
+    public static MappedPrimeBitmap openOrBuild(Path path, long limit) throws IOException {
+        if (limit < 2 || limit > DEFAULT_LIMIT) {
+            throw new IllegalArgumentException("Bitmap limit must be between 2 and " + DEFAULT_LIMIT);
+        }
+        if (!isValid(path, limit)) {
+            build(path, limit);
+        }
+
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileBytes(limit), arena);
+            return new MappedPrimeBitmap(arena, segment, limit);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    public long limit() {
+        return limit;
+    }
+
+    /** Number of primes up to and including {@link #limit()}. */
+    public long primeCount() {
+        return primeCount;
+    }
+
+    public boolean isPrime(long n) {
+        checkWithinLimit(n);
+        if (n < 3) {
+            return n == 2;
+        }
+        long bit = n >>> 1;
+        return (n & 1) != 0 && (word(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /** {@code pi(x)}: the number of primes at or below {@code x}. */
+    public long pi(long x) {
+        checkWithinLimit(x);
+        if (x < 2) {
+            return 0;
+        }
+        return 1 + oddPrimesThrough((x - 1) >>> 1);
+    }
+
+    public long nthPrime(long n) {
+        if (n < 1 || n > primeCount) {
+            throw new IllegalArgumentException("Prime position must be between 1 and " + primeCount + ": " + n);
+        }
+        if (n == 1) {
+            return 2;
+        }
+        long rank = n - 1;
+
+        int low = 0;
+        int high = superblocks(bits) - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (superblockRank(middle) < rank) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int superblock = low;
+        rank -= superblockRank(superblock);
+
+        int firstBlock = superblock * BLOCKS_PER_SUPERBLOCK;
+        low = firstBlock;
+        high = (int) Math.min(firstBlock + BLOCKS_PER_SUPERBLOCK, bits / BLOCK_BITS) - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blockRank(middle) < rank) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        rank -= blockRank(low);
+
+        for (long w = (long) low * (BLOCK_BITS / Long.SIZE); ; w++) {
+            long word = word(w);
+            int available = Long.bitCount(word);
+            if (rank <= available) {
+                for (int k = 1; k < rank; k++) {
+                    word &= word - 1;
+                }
+                return 2 * (w * Long.SIZE + Long.numberOfTrailingZeros(word)) + 1;
+            }
+            rank -= available;
+        }
+    }
+
+    /**
+     * Visits the primes in {@code [from, to)} in ascending order; returns false when {@code action}
+     * stopped the walk early.
+     */
+    public boolean forEachPrime(long from, long to, LongPredicate action) {
+        checkWithinLimit(to - 1);
+        if (from <= 2 && to > 2 && !action.test(2)) {
+            return false;
+        }
+        long firstBit = Math.max(from, 3) >>> 1;
+        long endBit = to >>> 1;
+        for (long w = firstBit >>> 6; w << 6 < endBit; w++) {
+            long word = word(w);
+            if (w == firstBit >>> 6) {
+                word &= -1L << firstBit;
+            }
+            if (w == (endBit - 1) >>> 6 && (endBit & 63) != 0) {
+                word &= (1L << endBit) - 1;
+            }
+            while (word != 0) {
+                if (!action.test(2 * ((w << 6) + Long.numberOfTrailingZeros(word)) + 1)) {
+                    return false;
+                }
+                word &= word - 1;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private long oddPrimesThrough(long bit) {
+        long count = superblockRank((int) (bit / SUPERBLOCK_BITS)) + blockRank((int) (bit / BLOCK_BITS));
+        long lastWord = bit >>> 6;
+        for (long w = (bit / BLOCK_BITS) * (BLOCK_BITS / Long.SIZE); w < lastWord; w++) {
+            count += Long.bitCount(word(w));
+        }
+        return count + Long.bitCount(word(lastWord) & (-1L >>> (63 - (bit & 63))));
+    }
+
+    private long word(long index) {
+        return file.get(ValueLayout.JAVA_LONG, HEADER_BYTES + index * Long.BYTES);
+    }
+
+    private long superblockRank(int superblock) {
+        return Integer.toUnsignedLong(file.get(ValueLayout.JAVA_INT, superblockOffset + (long) superblock * Integer.BYTES));
+    }
+
+    private int blockRank(int block) {
+        return Short.toUnsignedInt(file.get(ValueLayout.JAVA_SHORT, blockOffset + (long) block * Short.BYTES));
+    }
+
+    private void checkWithinLimit(long n) {
+        if (n > limit) {
+            throw new IllegalArgumentException(n + " is beyond the bitmap limit " + limit);
+        }
+    }
+
+    private static boolean isValid(Path path, long limit) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) != fileBytes(limit)) {
+            return false;
+        }
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES, arena);
+            return header.get(ValueLayout.JAVA_INT, 0) == MAGIC
+                    && header.get(ValueLayout.JAVA_INT, 4) == VERSION
+                    && header.get(ValueLayout.JAVA_LONG, 8) == limit;
+        }
+    }
+
+    private static void build(Path path, long limit) throws IOException {
+        log.info("Building prime bitmap up to " + limit + " at " + path);
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        // built under a unique name so concurrent builders never see each other's partial files
+        Path partial = Files.createTempFile(directory, path.getFileName().toString(), ".partial");
+        try {
+            long bits = bitsFor(limit);
+            try (Arena arena = Arena.ofConfined();
+                 FileChannel channel = FileChannel.open(partial, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MemorySegment segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes(limit), arena);
+                segment.fill((byte) 0);
+                SegmentedSieve.forEachPrime(3, limit + 1, prime -> {
+                    long bit = prime >>> 1;
+                    long offset = HEADER_BYTES + (bit >>> 6) * Long.BYTES;
+                    segment.set(ValueLayout.JAVA_LONG, offset, segment.get(ValueLayout.JAVA_LONG, offset) | (1L << bit));
+                    return true;
+                });
+                long oddPrimes = writeRanks(segment, bits);
+
+                segment.set(ValueLayout.JAVA_INT, 0, MAGIC);
+                segment.set(ValueLayout.JAVA_INT, 4, VERSION);
+                segment.set(ValueLayout.JAVA_LONG, 8, limit);
+                segment.set(ValueLayout.JAVA_LONG, 16, oddPrimes + 1);
+                segment.force();
+            }
+            Files.move(partial, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    private static long writeRanks(MemorySegment segment, long bits) {
+        long superblockOffset = HEADER_BYTES + bits / Byte.SIZE;
+        long blockOffset = superblockOffset + superblocks(bits) * Integer.BYTES;
+        long count = 0;
+        long superblockStart = 0;
+        for (long block = 0; block < bits / BLOCK_BITS; block++) {
+            if (block % BLOCKS_PER_SUPERBLOCK == 0) {
+                superblockStart = count;
+                segment.set(ValueLayout.JAVA_INT, superblockOffset + block / BLOCKS_PER_SUPERBLOCK * Integer.BYTES, (int) count);
+            }
+            segment.set(ValueLayout.JAVA_SHORT, blockOffset + block * Short.BYTES, (short) (count - superblockStart));
+            long firstWord = HEADER_BYTES + block * (BLOCK_BITS / Byte.SIZE);
+            for (int w = 0; w < BLOCK_BITS / Long.SIZE; w++) {
+                count += Long.bitCount(segment.get(ValueLayout.JAVA_LONG, firstWord + (long) w * Long.BYTES));
+            }
+        }
+        return count;
+    }
+
+    private static long bitsFor(long limit) {
+        long oddNumbers = (limit + 1) / 2;
+        return (oddNumbers + SUPERBLOCK_BITS - 1) / SUPERBLOCK_BITS * SUPERBLOCK_BITS;
+    }
+
+    private static int superblocks(long bits) {
+        return (int) (bits / SUPERBLOCK_BITS);
+    }
+
+    private static long fileBytes(long limit) {
+        long bits = bitsFor(limit);
+        return HEADER_BYTES + bits / Byte.SIZE + superblocks(bits) * (long) Integer.BYTES + bits / BLOCK_BITS * Short.BYTES;
+    }
+}
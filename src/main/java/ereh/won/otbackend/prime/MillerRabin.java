@@ -0,0 +1,153 @@
+package ereh.won.otbackend.prime;
+
+/**
+ * Deterministic Miller–Rabin primality test. Candidates are first trial divided by the primes below
+ * 50; survivors below 2^32 are checked against the bases {2, 7, 61} and larger ones against Jim
+ * Sinclair's seven bases, both of which are known to have no strong pseudoprimes in their range.
+ */
+public final class MillerRabin {
+    private static final int[] SMALL_PRIMES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47};
+    private static final long SMALL_PRIME_LIMIT = 53L * 53L;
+    private static final long[] BASES_32 = {2, 7, 61};
+    private static final long[] BASES_64 = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+
+    private MillerRabin() {
+    }
+
+    public static boolean isPrime(long n) {
+        if (n < 2) {
+            return false;
+        }
+        for (int prime : SMALL_PRIMES) {
+            if (n % prime == 0) {
+                return n == prime;
+            }
+        }
+        if (n < SMALL_PRIME_LIMIT) {
+            return true;
+        }
+        return n <= 0xFFFF_FFFFL ? isStrongProbablePrime32(n) : isStrongProbablePrime64(n);
+    }
+
+    private static boolean isStrongProbablePrime32(long n) {
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>>= s;
+
+        for (long base : BASES_32) {
+            long x = powMod32(base, d, n);
+            if (x == 1 || x == n - 1) {
+                continue;
+            }
+            boolean witness = true;
+            for (int r = 1; r < s && witness; r++) {
+                x = mulMod32(x, x, n);
+                witness = x != n - 1;
+            }
+            if (witness) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long powMod32(long base, long exponent, long n) {
+        long result = 1;
+        long b = base % n;
+        for (long e = exponent; e > 0; e >>>= 1) {
+            if ((e & 1) != 0) {
+                result = mulMod32(result, b, n);
+            }
+            b = mulMod32(b, b, n);
+        }
+        return result;
+    }
+
+    private static long mulMod32(long a, long b, long n) {
+        // both operands are below 2^32, so the product fits in 64 unsigned bits
+        return Long.remainderUnsigned(a * b, n);
+    }
+
+    private static boolean isStrongProbablePrime64(long n) {
+        Montgomery montgomery = new Montgomery(n);
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>>= s;
+
+        for (long base : BASES_64) {
+            long a = base % n;
+            if (a == 0) {
+                continue;
+            }
+            long x = montgomery.pow(montgomery.toMontgomery(a), d);
+            if (x == montgomery.one || x == montgomery.minusOne) {
+                continue;
+            }
+            boolean witness = true;
+            for (int r = 1; r < s && witness; r++) {
+                x = montgomery.multiply(x, x);
+                witness = x != montgomery.minusOne;
+            }
+            if (witness) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Montgomery arithmetic modulo an odd {@code n < 2^63}, which keeps every 128-bit product
+     * reducible with two high multiplies instead of a division.
+     */
+    private static final class Montgomery {
+        private final long n;
+        private final long inverse;
+        private final long rSquared;
+        private final long one;
+        private final long minusOne;
+
+        Montgomery(long n) {
+            this.n = n;
+            long inv = n;
+            for (int i = 0; i < 5; i++) {
+                inv *= 2 - n * inv;
+            }
+            this.inverse = inv;
+            this.one = Long.remainderUnsigned(-n, n);
+            this.minusOne = n - one;
+
+            long r2 = one;
+            for (int i = 0; i < Long.SIZE; i++) {
+                r2 <<= 1;
+                if (Long.compareUnsigned(r2, n) >= 0) {
+                    r2 -= n;
+                }
+            }
+            this.rSquared = r2;
+        }
+
+        long toMontgomery(long value) {
+            return multiply(value, rSquared);
+        }
+
+        long multiply(long a, long b) {
+            long high = Math.unsignedMultiplyHigh(a, b);
+            long m = a * b * inverse;
+            long mHigh = Math.unsignedMultiplyHigh(m, n);
+            long result = high - mHigh;
+            return Long.compareUnsigned(high, mHigh) < 0 ? result + n : result;
+        }
+
+        long pow(long base, long exponent) {
+            long result = one;
+            long b = base;
+            for (long e = exponent; e > 0; e >>>= 1) {
+                if ((e & 1) != 0) {
+                    result = multiply(result, b);
+                }
+                b = multiply(b, b);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ereh.won.otbackend.prime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Splits long sieve runs into chunks of consecutive segments, counts the primes of a wave of chunks
+ * in parallel on a dedicated pool and prefix-sums the counts to find the chunk holding the answer,
+ * which is then sieved once more to select the prime. Runs shorter than the threshold stay on the
+ * calling thread.
+ */
+public final class ParallelSegmentedSieve implements AutoCloseable {
+    static final long CHUNK_NUMBERS = 32L * 2 * SegmentedSieve.SEGMENT_BITS;
+
+    private final ForkJoinPool pool;
+    private final long parallelThreshold;
+
+    public ParallelSegmentedSieve(ForkJoinPool pool, long parallelThreshold) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public static ParallelSegmentedSieve sequential() {
+        return new ParallelSegmentedSieve(null, Long.MAX_VALUE);
+    }
+
+    public int parallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    public long nthPrimeAfter(long knownPosition, long knownPrime, long n) {
+        return nthPrimeAfter(knownPosition, knownPrime, n, PrimeCheckpointSink.NONE);
+    }
+
+    /**
+     * Offers checkpoints passed on the way to {@code n}. Chunks are only counted here, so a checkpoint
+     * inside one is offered as the short sieve from the chunk's start that selects it, for the sink to
+     * run later.
+     */
+    public long nthPrimeAfter(long knownPosition, long knownPrime, long n, PrimeCheckpointSink checkpoints) {
+        long limit = SegmentedSieve.upperBound(n);
+        if (parallelism() == 1 || limit - knownPrime < parallelThreshold) {
+            return SegmentedSieve.nthPrimeAfter(knownPosition, knownPrime, n, checkpoints);
+        }
+
+        int[] basePrimes = SegmentedSieve.oddPrimesUpTo(SegmentedSieve.isqrt(limit));
+        int wave = 2 * parallelism();
+        long primesFound = knownPosition;
+        long low = knownPrime + 1;
+        long checkpoint = checkpoints.nextAfter(knownPosition);
+        while (low <= limit) {
+            List<Callable<Long>> chunks = new ArrayList<>(wave);
+            for (int i = 0; i < wave && low + i * CHUNK_NUMBERS <= limit; i++) {
+                long from = low + i * CHUNK_NUMBERS;
+                long to = Math.min(from + CHUNK_NUMBERS, limit + 1);
+                chunks.add(() -> SegmentedSieve.countPrimes(from, to, basePrimes));
+            }
+
+            List<Future<Long>> counts = pool.invokeAll(chunks);
+            for (int i = 0; i < counts.size(); i++) {
+                long chunkPrimes = join(counts.get(i));
+                long chunkStart = low + i * CHUNK_NUMBERS;
+                while (checkpoint < n && checkpoint <= primesFound + chunkPrimes) {
+                    long position = checkpoint;
+                    long before = primesFound;
+                    checkpoints.offer(position, () -> SegmentedSieve.nthPrimeAfter(before, chunkStart - 1, position));
+                    checkpoint += checkpoints.interval();
+                }
+                if (primesFound + chunkPrimes >= n) {
+                    return SegmentedSieve.nthPrimeAfter(primesFound, chunkStart - 1, n);
+                }
+                primesFound += chunkPrimes;
+            }
+            low += counts.size() * CHUNK_NUMBERS;
+            PrimeProgress.report(primesFound);
+        }
+
+        throw new IllegalStateException("Upper bound " + limit + " did not contain prime number " + n);
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static long join(Future<Long> count) {
+        try {
+            return count.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sieving", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Parallel sieve chunk failed", e.getCause());
+        }
+    }
+}
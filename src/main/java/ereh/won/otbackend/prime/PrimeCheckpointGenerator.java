@@ -0,0 +1,48 @@
+package ereh.won.otbackend.prime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Build step behind {@code prime-checkpoints.bin}, run by the exec plugin during
+ * {@code process-classes}. Arguments are the classes output directory and the checkpoint interval.
+ * An existing table with the same interval is kept, so incremental builds skip the sieve.
+ */
+public final class PrimeCheckpointGenerator {
+
+    private PrimeCheckpointGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: PrimeCheckpointGenerator <output directory> <interval>");
+        }
+        Path output = Path.of(args[0]).resolve(PrimeCheckpoints.RESOURCE);
+        int interval = Integer.parseInt(args[1]);
+        if (hasInterval(output, interval)) {
+            return;
+        }
+
+        Files.createDirectories(output.getParent());
+        Path partial = output.resolveSibling(PrimeCheckpoints.RESOURCE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(partial)) {
+            PrimeCheckpoints.write(out, interval, PrimeCheckpoints.LIMIT);
+        }
+        Files.move(partial, output, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static boolean hasInterval(Path table, int interval) {
+        if (!Files.isRegularFile(table)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(table)) {
+            return PrimeCheckpoints.read(in).interval() == interval;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
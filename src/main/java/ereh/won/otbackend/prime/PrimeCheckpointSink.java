@@ -0,0 +1,32 @@
+package ereh.won.otbackend.prime;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Receives the intermediate {@code (position, prime)} pairs a long sieve run passes on its way to the
+ * answer, one for every multiple of {@link #interval()}. The prime is supplied lazily: the parallel
+ * sieve only knows how many primes precede a chunk, so resolving its checkpoints takes a short extra
+ * sieve that the sink can run off the computing thread, or skip. Implementations must not block.
+ */
+public interface PrimeCheckpointSink {
+    PrimeCheckpointSink NONE = new PrimeCheckpointSink() {
+        @Override
+        public long interval() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public void offer(long position, LongSupplier prime) {
+        }
+    };
+
+    long interval();
+
+    void offer(long position, LongSupplier prime);
+
+    /** The first checkpoint position after {@code position}. */
+    default long nextAfter(long position) {
+        long interval = interval();
+        return interval == Long.MAX_VALUE ? Long.MAX_VALUE : (position / interval + 1) * interval;
+    }
+}
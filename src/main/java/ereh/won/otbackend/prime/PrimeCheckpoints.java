@@ -0,0 +1,123 @@
+package ereh.won.otbackend.prime;
+
+import lombok.extern.java.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Every {@code interval}-th prime below 2^32, generated at build time into a classpath resource so a
+ * computation can start sieving from the closest checkpoint below the requested position. Entries
+ * are stored as unsigned 32-bit values: checkpoint {@code i} is the prime at position
+ * {@code (i + 1) * interval}.
+ */
+@Log
+public final class PrimeCheckpoints {
+    static final String RESOURCE = "prime-checkpoints.bin";
+    static final long LIMIT = 0xFFFF_FFFFL;
+    private static final int MAGIC = 0x504D_4350;
+    private static final PrimeCheckpoints NONE = new PrimeCheckpoints(1, new int[0]);
+
+    private final int interval;
+    private final int[] primes;
+
+    private PrimeCheckpoints(int interval, int[] primes) {
+        this.interval = interval;
+        this.primes = primes;
+    }
+
+    public static PrimeCheckpoints none() {
+        return NONE;
+    }
+
+    /**
+     * Loads the generated resource, or returns {@link #none()} when the build step has not run, as
+     * can happen when running straight from an IDE.
+     */
+    public static PrimeCheckpoints load() {
+        try (InputStream resource = PrimeCheckpoints.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (resource == null) {
+                log.warning(RESOURCE + " not found on the classpath; computing without checkpoints");
+                return NONE;
+            }
+            PrimeCheckpoints checkpoints = read(resource);
+            log.info("Loaded " + checkpoints.size() + " prime checkpoints every " + checkpoints.interval() + " positions");
+            return checkpoints;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + RESOURCE, e);
+        }
+    }
+
+    static PrimeCheckpoints read(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a prime checkpoint table");
+        }
+        int interval = data.readInt();
+        int[] primes = new int[data.readInt()];
+        for (int i = 0; i < primes.length; i++) {
+            primes[i] = data.readInt();
+        }
+        return new PrimeCheckpoints(interval, primes);
+    }
+
+    /**
+     * Sieves up to {@code limit} once, writing the prime at every multiple of {@code interval}.
+     */
+    static void write(OutputStream output, int interval, long limit) throws IOException {
+        if (interval < 2 || limit < 2 || limit > LIMIT) {
+            throw new IllegalArgumentException("Checkpoints need an interval above 1 and a limit within 32 bits");
+        }
+        // Rosser and Schoenfeld: pi(x) < 1.25506 x / ln x
+        int[] primes = new int[(int) (1.25506 * limit / Math.log(limit) / interval) + 1];
+        int count = 0;
+        long primesFound = 1;
+        long nextPosition = interval;
+        SegmentedSieve.Cursor cursor = new SegmentedSieve.Cursor(3, limit);
+        while (cursor.next()) {
+            int segmentPrimes = cursor.countPrimes();
+            while (primesFound + segmentPrimes >= nextPosition) {
+                primes[count++] = (int) cursor.selectPrime((int) (nextPosition - primesFound));
+                nextPosition += interval;
+            }
+            primesFound += segmentPrimes;
+        }
+
+        DataOutputStream data = new DataOutputStream(output);
+        data.writeInt(MAGIC);
+        data.writeInt(interval);
+        data.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            data.writeInt(primes[i]);
+        }
+        data.flush();
+    }
+
+    public int interval() {
+        return interval;
+    }
+
+    public int size() {
+        return primes.length;
+    }
+
+    /**
+     * Index of the last checkpoint at or below {@code position}, or {@code -1} when there is none.
+     */
+    public int floorIndex(long position) {
+        return (int) Math.min(position / interval, primes.length) - 1;
+    }
+
+    public long position(int index) {
+        return (index + 1L) * interval;
+    }
+
+    public long prime(int index) {
+        return Integer.toUnsignedLong(primes[index]);
+    }
+}
@@ -0,0 +1,78 @@
+package ereh.won.otbackend.prime;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "prime.compute")
+public class PrimeComputeProperties {
+    private Engine engine = Engine.SIEVE;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long parallelThreshold = 1L << 26;
+    private int tableCapacity = SievePrimeEngine.DEFAULT_TABLE_CAPACITY;
+    private String bitmapFile;
+    private AutoTune autoTune = new AutoTune();
+    private Coalescing coalescing = new Coalescing();
+    private Batching batching = new Batching();
+    private Jobs jobs = new Jobs();
+    private Admission admission = new Admission();
+
+    @Getter
+    @Setter
+    public static class AutoTune {
+        private List<Long> rangeBoundaries = new ArrayList<>(List.of(1_000L, 100_000L, 10_000_000L));
+        private Duration budget = Duration.ofMillis(200);
+    }
+
+    @Getter
+    @Setter
+    public static class Coalescing {
+        private Duration waitTimeout = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Batching {
+        private Duration window = Duration.ZERO;
+        private int maxSize = 64;
+    }
+
+    @Getter
+    @Setter
+    public static class Jobs {
+        // estimated numbers sieved (see PrimeEngine.estimateCost) above which a job runs in the background,
+        // and the most the misses of one batch request may cost together
+        private long costThreshold = 1L << 30;
+        private int threads = 2;
+        private int queueCapacity = 16;
+        // how long finished jobs stay queryable
+        private Duration retention = Duration.ofHours(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Admission {
+        private boolean enabled = true;
+        // estimated numbers sieved per thread (see PrimeEngine.estimateCost) that may be in progress at once
+        private long budget = 1L << 28;
+        // the most one computation holds, however dear: one full sieve pass (see PrimeTable)
+        private long maxWeight = 1L << 26;
+        private int maxQueued = 32;
+        private Duration queueTimeout = Duration.ofSeconds(1);
+        // sent as Retry-After when a computation is refused
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    public enum Engine {
+        TRIAL_DIVISION,
+        SIEVE,
+        BITMAP,
+        AUTO
+    }
+}
@@ -0,0 +1,94 @@
+package ereh.won.otbackend.prime;
+
+/**
+ * Sublinear prime counting with Lucy_Hedgehog's method: {@code pi(x)} is obtained by sieving the
+ * {@code O(sqrt x)} distinct values of {@code x / i} in {@code O(x^(3/4))} time. It lets the nth
+ * prime be found by estimating it, counting the primes below the estimate and sieving only the
+ * short window between the estimate and the answer.
+ */
+public final class PrimeCounting {
+
+    private PrimeCounting() {
+    }
+
+    public static long pi(long x) {
+        return pi(x, 0);
+    }
+
+    // when counting towards the nth prime, reports the share of the sieving work done so far as that
+    // share of n (see PrimeProgress)
+    private static long pi(long x, long n) {
+        if (x < 2) {
+            return 0;
+        }
+        int root = (int) SegmentedSieve.isqrt(x);
+        // small[v] counts the survivors at or below v, large[i] those at or below x / i
+        long[] small = new long[root + 1];
+        long[] large = new long[root + 1];
+        for (int i = 1; i <= root; i++) {
+            small[i] = i - 1;
+            large[i] = x / i - 1;
+        }
+        double work = estimateWork(x);
+        long done = 0;
+
+        for (int p = 2; p <= root; p++) {
+            if (small[p] == small[p - 1]) {
+                continue;
+            }
+            long primesBelow = small[p - 1];
+            long square = (long) p * p;
+            long largeLimit = Math.min(root, x / square);
+            for (int i = 1; i <= largeLimit; i++) {
+                long divisor = (long) i * p;
+                long survivors = divisor <= root ? large[(int) divisor] : small[(int) (x / divisor)];
+                large[i] -= survivors - primesBelow;
+            }
+            for (int v = root; v >= square; v--) {
+                small[v] -= small[v / p] - primesBelow;
+            }
+            if (n > 0) {
+                done += largeLimit + Math.max(0, root - square + 1);
+                PrimeProgress.report(Math.min(n - 1, (long) (done / work * n)));
+            }
+        }
+        return large[1];
+    }
+
+    public static long nthPrime(long n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Prime position must be positive: " + n);
+        }
+        if (n < 6) {
+            return SegmentedSieve.nthPrime(n);
+        }
+
+        long x = estimateNthPrime(n);
+        long count = pi(x, n);
+        while (count >= n) {
+            long window = (long) ((count - n + 1) * 2 * Math.log(x)) + SegmentedSieve.SEGMENT_BITS;
+            long low = Math.max(3, x - window);
+            count -= SegmentedSieve.countPrimes(low, x + 1);
+            x = low - 1;
+        }
+        return SegmentedSieve.nthPrimeAfter(count, x, n);
+    }
+
+    // the updates made by the loop in pi, which is close to 11.4 x^(3/4) / ln x from a million upwards
+    private static double estimateWork(long x) {
+        return Math.max(1, 11.4 * Math.pow(x, 0.75) / Math.log(x));
+    }
+
+    /**
+     * Cipolla's asymptotic expansion of the nth prime, accurate to well under 0.1% from the low
+     * thousands onwards.
+     */
+    static long estimateNthPrime(long n) {
+        double logN = Math.log(n);
+        double logLogN = Math.log(logN);
+        double estimate = n * (logN + logLogN - 1
+                + (logLogN - 2) / logN
+                - (logLogN * logLogN - 6 * logLogN + 11) / (2 * logN * logN));
+        return Math.max(2, (long) estimate);
+    }
+}
@@ -0,0 +1,84 @@
+package ereh.won.otbackend.prime;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Computes primes for the service. Implementations must agree on every answer and differ only in
+ * cost, so the engine can be chosen per deployment without changing behaviour.
+ */
+public interface PrimeEngine {
+
+    String name();
+
+    /**
+     * Returns the prime at the 1-based {@code position}.
+     *
+     * @throws IllegalArgumentException when {@code position} is not positive
+     */
+    long nthPrime(long position);
+
+    /**
+     * Returns the prime at {@code position} given that {@code knownPrime} is the prime at the lower
+     * {@code knownPosition}, typically the nearest cached answer. Engines whose cost grows with the
+     * distance searched may continue from the pair; the default ignores it. A pair that is not below
+     * the position is ignored.
+     */
+    default long nthPrimeAfter(long knownPosition, long knownPrime, long position) {
+        return nthPrime(position);
+    }
+
+    /**
+     * Returns the primes at ascending {@code positions}, index for index. Engines that can answer
+     * nearby positions in one pass override this; the default asks for each position in turn.
+     *
+     * @throws IllegalArgumentException when a position is not positive or the positions are not ascending
+     */
+    default long[] nthPrimes(long[] positions) {
+        long[] primes = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            if (i > 0 && positions[i] < positions[i - 1]) {
+                throw new IllegalArgumentException("Prime positions must be ascending");
+            }
+            primes[i] = nthPrime(positions[i]);
+        }
+        return primes;
+    }
+
+    /**
+     * Batch form of {@link #nthPrimeAfter}, where the known pair is below every position.
+     */
+    default long[] nthPrimesAfter(long knownPosition, long knownPrime, long[] positions) {
+        return nthPrimes(positions);
+    }
+
+    /**
+     * Roughly how many numbers answering {@code position} from the known pair would sieve on one
+     * thread, so callers can decide whether to compute inline or in the background. Only the order of
+     * magnitude matters. The default assumes a sieve from the pair, or from zero when the pair is not
+     * below the position.
+     */
+    default long estimateCost(long knownPosition, long knownPrime, long position) {
+        long start = knownPosition > 0 && knownPosition < position ? knownPrime : 0;
+        return Math.max(0, SegmentedSieve.upperBound(position) - start);
+    }
+
+    /**
+     * Like {@link #estimateCost}, for answering ascending {@code positions} with
+     * {@link #nthPrimesAfter}: the sum over the passes the engine would make. The default asks for
+     * each position from zero, as its batch form does.
+     */
+    default long estimateBatchCost(long knownPosition, long knownPrime, long[] positions) {
+        long cost = 0;
+        for (long position : positions) {
+            cost += estimateCost(0, 0, position);
+        }
+        return cost;
+    }
+
+    boolean isPrime(long candidate);
+
+    /**
+     * Visits the primes in {@code [from, to)} in ascending order until {@code action} returns false.
+     */
+    void primesInRange(long from, long to, LongPredicate action);
+}
@@ -0,0 +1,39 @@
+package ereh.won.otbackend.prime;
+
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Lets a caller watch a long computation it runs on its own thread: while {@link #track} runs, the
+ * sieves report how many primes they have counted after every segment or parallel wave. A prime
+ * counting jump reports the share of its work done as the same share of the position it is looking
+ * for, since it only learns the count at the end. Work done on other threads, such as a computation
+ * another request already started, is not seen.
+ */
+public final class PrimeProgress {
+    private static final ThreadLocal<LongConsumer> LISTENER = new ThreadLocal<>();
+
+    private PrimeProgress() {
+    }
+
+    public static long track(LongConsumer primesCounted, LongSupplier computation) {
+        LongConsumer previous = LISTENER.get();
+        LISTENER.set(primesCounted);
+        try {
+            return computation.getAsLong();
+        } finally {
+            if (previous == null) {
+                LISTENER.remove();
+            } else {
+                LISTENER.set(previous);
+            }
+        }
+    }
+
+    static void report(long primesCounted) {
+        LongConsumer listener = LISTENER.get();
+        if (listener != null) {
+            listener.accept(primesCounted);
+        }
+    }
+}
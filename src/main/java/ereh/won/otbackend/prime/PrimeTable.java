@@ -0,0 +1,271 @@
+package ereh.won.otbackend.prime;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Grow-only table of the first primes, shared by every computation in the process. Lookups below the
+ * high-water mark read an immutable snapshot and never wait for a writer; extending the table is
+ * serialised so the sieve work behind each entry is only ever paid once.
+ */
+public final class PrimeTable {
+    static final int MIN_EXTENSION = 1 << 14;
+    static final long MAX_SIEVE_DISTANCE = 1L << 26;
+    /** p(105_097_565) is the largest prime below 2^31, the most an {@code int[]} table can hold. */
+    static final int MAX_CAPACITY = 105_097_565;
+
+    private final int capacity;
+    private final ParallelSegmentedSieve sieve;
+    private final PrimeCheckpoints checkpoints;
+    private final PrimeCheckpointSink checkpointSink;
+    private final ReentrantLock growLock = new ReentrantLock();
+    private volatile Snapshot snapshot = new Snapshot(new int[]{2}, 1);
+
+    public PrimeTable(int capacity) {
+        this(capacity, ParallelSegmentedSieve.sequential());
+    }
+
+    public PrimeTable(int capacity, ParallelSegmentedSieve sieve) {
+        this(capacity, sieve, PrimeCheckpoints.none());
+    }
+
+    public PrimeTable(int capacity, ParallelSegmentedSieve sieve, PrimeCheckpoints checkpoints) {
+        this(capacity, sieve, checkpoints, PrimeCheckpointSink.NONE);
+    }
+
+    /**
+     * {@code checkpointSink} receives the intermediate primes of runs past the table's end, so callers
+     * can keep them (for example in the prime cache) for later lookups to start from.
+     */
+    public PrimeTable(int capacity, ParallelSegmentedSieve sieve, PrimeCheckpoints checkpoints,
+                      PrimeCheckpointSink checkpointSink) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Prime table capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        this.capacity = capacity;
+        this.sieve = sieve;
+        this.checkpoints = checkpoints;
+        this.checkpointSink = checkpointSink;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Returns the prime at {@code position}. The table is extended when the position is within
+     * capacity and no checkpoint lies between the table's end and the position, so growing never
+     * costs more than one checkpoint interval. Otherwise the sieve continues from whichever of the
+     * table's end and the nearest checkpoint is closer when the answer is near it, a distance that
+     * scales with the sieve's parallelism, and jumps straight to the answer's neighbourhood with
+     * {@link PrimeCounting} when it is not.
+     */
+    public long nthPrime(long position) {
+        return nthPrimeAfter(0, 0, position);
+    }
+
+    /**
+     * Like {@link #nthPrime(long)}, but the sieve may also continue from a {@code (knownPosition,
+     * knownPrime)} pair learned elsewhere, such as a cached answer below the position, when that pair
+     * is closer than the table's end and every checkpoint. A pair at or above the position, or with a
+     * non-positive position, is ignored.
+     */
+    public long nthPrimeAfter(long hintPosition, long hintPrime, long position) {
+        if (position < 1) {
+            throw new IllegalArgumentException("Prime position must be positive: " + position);
+        }
+        Snapshot current = snapshot;
+        if (position <= current.size()) {
+            return current.primes()[(int) position - 1];
+        }
+
+        int checkpoint = checkpoints.floorIndex(position);
+        if (checkpoint < 0 || checkpoints.position(checkpoint) <= current.size()) {
+            current = growTo((int) Math.min(position, capacity));
+            if (position <= current.size()) {
+                return current.primes()[(int) position - 1];
+            }
+        }
+
+        long knownPosition = current.size();
+        long knownPrime = current.last();
+        if (checkpoint >= 0 && checkpoints.position(checkpoint) > knownPosition) {
+            knownPosition = checkpoints.position(checkpoint);
+            knownPrime = checkpoints.prime(checkpoint);
+            if (knownPosition == position) {
+                return knownPrime;
+            }
+        }
+        if (hintPosition > knownPosition && hintPosition < position) {
+            knownPosition = hintPosition;
+            knownPrime = hintPrime;
+        }
+        long sieveDistance = MAX_SIEVE_DISTANCE * sieve.parallelism();
+        if (PrimeCounting.estimateNthPrime(position) - knownPrime <= sieveDistance) {
+            return sieve.nthPrimeAfter(knownPosition, knownPrime, position, checkpointSink);
+        }
+        return PrimeCounting.nthPrime(position);
+    }
+
+    /**
+     * Estimates the work behind {@link #nthPrimeAfter} without doing it: zero below the high-water
+     * mark, the numbers one sieve thread crosses from the closest known start when the answer is near
+     * it, and the {@code x^(3/4)} values a prime-counting jump touches when it is not.
+     */
+    public long estimateCost(long hintPosition, long hintPrime, long position) {
+        Snapshot current = snapshot;
+        return estimateCost(current.size(), current.last(), hintPosition, hintPrime, position);
+    }
+
+    /**
+     * Estimates the work behind {@link #nthPrimesAfter}: the sum of {@link #estimateCost} over the
+     * positions each pass starts from, plus the sequential sieve that carries each pass on to the
+     * positions it continues to. The table is assumed to grow as the batch would grow it.
+     */
+    public long estimateCost(long hintPosition, long hintPrime, long[] positions) {
+        Snapshot current = snapshot;
+        long tableSize = current.size();
+        long tablePrime = current.last();
+        long cost = 0;
+        int index = 0;
+        while (index < positions.length) {
+            long position = positions[index++];
+            if (position <= tableSize || index > 1 && position == positions[index - 2]) {
+                continue;
+            }
+            cost += estimateCost(tableSize, tablePrime, hintPosition, hintPrime, position);
+            int checkpoint = checkpoints.floorIndex(position);
+            if (tableSize < capacity && (checkpoint < 0 || checkpoints.position(checkpoint) <= tableSize)) {
+                tableSize = Math.min(position, capacity);
+                tablePrime = PrimeCounting.estimateNthPrime(tableSize);
+            }
+
+            long knownPrime = PrimeCounting.estimateNthPrime(position);
+            long lastPrime = knownPrime;
+            while (index < positions.length && continuesFrom(tableSize, position, knownPrime, positions[index])) {
+                lastPrime = PrimeCounting.estimateNthPrime(positions[index++]);
+            }
+            cost += lastPrime - knownPrime;
+        }
+        return cost;
+    }
+
+    private long estimateCost(long tableSize, long tablePrime, long hintPosition, long hintPrime, long position) {
+        if (position <= tableSize) {
+            return 0;
+        }
+        long knownPrime = tablePrime;
+        long knownPosition = tableSize;
+        int checkpoint = checkpoints.floorIndex(position);
+        if (checkpoint >= 0 && checkpoints.position(checkpoint) > knownPosition) {
+            knownPosition = checkpoints.position(checkpoint);
+            knownPrime = checkpoints.prime(checkpoint);
+        }
+        if (hintPosition > knownPosition && hintPosition <= position) {
+            knownPrime = hintPrime;
+        }
+        long answer = PrimeCounting.estimateNthPrime(position);
+        long distance = Math.max(0, answer - knownPrime);
+        if (distance <= MAX_SIEVE_DISTANCE * sieve.parallelism()) {
+            return distance / sieve.parallelism();
+        }
+        return (long) Math.pow(answer, 0.75);
+    }
+
+    /**
+     * Answers ascending {@code positions} together. Each position is first looked up as {@link #nthPrime}
+     * would, growing the table where it would grow; the following positions that the table would not
+     * cover and whose answers are within the sequential sieve distance are then found in one forward
+     * pass from that answer rather than each sieved again from the same start.
+     */
+    public long[] nthPrimes(long[] positions) {
+        return nthPrimesAfter(0, 0, positions);
+    }
+
+    /**
+     * Batch form of {@link #nthPrimeAfter}: the known pair may start the first position's search.
+     */
+    public long[] nthPrimesAfter(long hintPosition, long hintPrime, long[] positions) {
+        for (int i = 1; i < positions.length; i++) {
+            if (positions[i] < positions[i - 1]) {
+                throw new IllegalArgumentException("Prime positions must be ascending");
+            }
+        }
+
+        long[] primes = new long[positions.length];
+        int index = 0;
+        while (index < positions.length) {
+            long position = positions[index];
+            if (index > 0 && position == positions[index - 1]) {
+                primes[index] = primes[index - 1];
+                index++;
+                continue;
+            }
+            primes[index] = nthPrimeAfter(hintPosition, hintPrime, position);
+            long knownPosition = position;
+            long knownPrime = primes[index++];
+
+            int runEnd = index;
+            while (runEnd < positions.length
+                    && continuesFrom(snapshot.size(), knownPosition, knownPrime, positions[runEnd])) {
+                runEnd++;
+            }
+            SegmentedSieve.nthPrimesAfter(knownPosition, knownPrime, positions, index, runEnd, primes, checkpointSink);
+            index = runEnd;
+        }
+        return primes;
+    }
+
+    private boolean continuesFrom(long tableSize, long knownPosition, long knownPrime, long position) {
+        if (position == knownPosition || position <= tableSize) {
+            return false;
+        }
+        int checkpoint = checkpoints.floorIndex(position);
+        boolean tableGrows = tableSize < capacity
+                && (checkpoint < 0 || checkpoints.position(checkpoint) <= tableSize);
+        if (tableGrows || checkpoint >= 0 && checkpoints.position(checkpoint) > knownPosition) {
+            return false;
+        }
+        return PrimeCounting.estimateNthPrime(position) - knownPrime <= MAX_SIEVE_DISTANCE;
+    }
+
+    private Snapshot growTo(int position) {
+        growLock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (position <= current.size()) {
+                return current;
+            }
+
+            int target = Math.min(capacity, Math.max(position, current.size() + MIN_EXTENSION));
+            int[] primes = current.primes();
+            if (primes.length < target) {
+                int length = (int) Math.min(capacity, Math.max(target, 2L * primes.length));
+                primes = Arrays.copyOf(primes, length);
+            }
+
+            int[] destination = primes;
+            int[] count = {current.size()};
+            SegmentedSieve.forEachPrime(current.last() + 1, SegmentedSieve.upperBound(target) + 1, prime -> {
+                destination[count[0]++] = (int) prime;
+                return count[0] < target;
+            });
+
+            Snapshot grown = new Snapshot(primes, count[0]);
+            snapshot = grown;
+            return grown;
+        } finally {
+            growLock.unlock();
+        }
+    }
+
+    private record Snapshot(int[] primes, int size) {
+        long last() {
+            return primes[size - 1];
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ereh.won.otbackend.prime;
+
+final class ScalarSieveKernel implements SieveKernel {
+    static final ScalarSieveKernel INSTANCE = new ScalarSieveKernel();
+
+    private ScalarSieveKernel() {
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void stamp(long[] segment, int words, long[] pattern, long bitOffset) {
+        int first = (int) (bitOffset >>> 6);
+        int shift = (int) (bitOffset & 63);
+        if (shift == 0) {
+            System.arraycopy(pattern, first, segment, 0, words);
+            return;
+        }
+        for (int w = 0; w < words; w++) {
+            segment[w] = (pattern[first + w] >>> shift) | (pattern[first + w + 1] << (Long.SIZE - shift));
+        }
+    }
+
+    @Override
+    public int countSet(long[] words, int bits) {
+        return countSet(words, 0, bits);
+    }
+
+    /**
+     * Counts the set bits in {@code [fromWord * 64, bits)}; also used for the tail of vector loops.
+     */
+    static int countSet(long[] words, int fromWord, int bits) {
+        int fullWords = bits >>> 6;
+        int count = 0;
+        for (int i = fromWord; i < fullWords; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        int tailBits = bits & 63;
+        if (tailBits != 0) {
+            count += Long.bitCount(words[fullWords] & ((1L << tailBits) - 1));
+        }
+        return count;
+    }
+}
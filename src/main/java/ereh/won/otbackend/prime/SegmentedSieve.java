@@ -0,0 +1,339 @@
+package ereh.won.otbackend.prime;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Segmented Sieve of Eratosthenes over odd numbers only. Each segment is a bitmap sized to stay
+ * resident in L1 cache, where bit {@code i} stands for the odd number {@code low + 2i} and a set
+ * bit marks a composite.
+ */
+public final class SegmentedSieve {
+    static final int SEGMENT_BYTES = 32 * 1024;
+    static final int SEGMENT_BITS = SEGMENT_BYTES * Byte.SIZE;
+    static final int SEGMENT_WORDS = SEGMENT_BITS / Long.SIZE;
+    /** Multiples of these primes are stamped from a repeating pattern rather than crossed off. */
+    static final int[] PRESIEVE_PRIMES = {3, 5, 7, 11, 13};
+    static final int PRESIEVE_PERIOD = 3 * 5 * 7 * 11 * 13;
+    /** Bit {@code t} of the pattern is set when {@code 2t + 1} is a multiple of a presieve prime. */
+    static final long[] PRESIEVE_PATTERN = presievePattern();
+
+    private SegmentedSieve() {
+    }
+
+    public static long nthPrime(long n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Prime position must be positive: " + n);
+        }
+        if (n == 1) {
+            return 2;
+        }
+        return nthPrimeAfter(1, 2, n);
+    }
+
+    /**
+     * Continues counting from a known {@code (position, prime)} pair instead of from 2, so the cost is
+     * proportional to the distance between {@code knownPrime} and the answer. {@code knownPrime} may
+     * be any bound as long as {@code knownPosition} is the number of primes at or below it.
+     */
+    public static long nthPrimeAfter(long knownPosition, long knownPrime, long n) {
+        return nthPrimeAfter(knownPosition, knownPrime, n, PrimeCheckpointSink.NONE);
+    }
+
+    /**
+     * Like {@link #nthPrimeAfter(long, long, long)}, also offering every checkpoint position passed
+     * strictly between the known position and {@code n} to {@code checkpoints}. Each is selected from
+     * the segment while it is still in cache.
+     */
+    public static long nthPrimeAfter(long knownPosition, long knownPrime, long n, PrimeCheckpointSink checkpoints) {
+        if (knownPosition < 1 || n <= knownPosition) {
+            throw new IllegalArgumentException(
+                    "Prime position " + n + " must be after known position " + knownPosition);
+        }
+
+        long limit = upperBound(n);
+        Cursor cursor = new Cursor(knownPrime + 1, limit);
+        long primesFound = knownPosition;
+        long checkpoint = checkpoints.nextAfter(knownPosition);
+        while (cursor.next()) {
+            int segmentPrimes = cursor.countPrimes();
+            checkpoint = offerCheckpoints(cursor, primesFound, segmentPrimes, Math.min(n - 1, primesFound + segmentPrimes),
+                    checkpoint, checkpoints);
+            if (primesFound + segmentPrimes >= n) {
+                return cursor.selectPrime((int) (n - primesFound));
+            }
+            primesFound += segmentPrimes;
+            PrimeProgress.report(primesFound);
+        }
+
+        throw new IllegalStateException("Upper bound " + limit + " did not contain prime number " + n);
+    }
+
+    /**
+     * Answers several positions in one pass: {@code positions[from, to)} must be ascending and after
+     * {@code knownPosition}, and each answer is written to the same index of {@code primes}. The sieve
+     * runs once up to the bound of the largest position, so the cost is that of the largest alone.
+     */
+    public static void nthPrimesAfter(long knownPosition, long knownPrime, long[] positions, int from, int to,
+                                      long[] primes) {
+        nthPrimesAfter(knownPosition, knownPrime, positions, from, to, primes, PrimeCheckpointSink.NONE);
+    }
+
+    public static void nthPrimesAfter(long knownPosition, long knownPrime, long[] positions, int from, int to,
+                                      long[] primes, PrimeCheckpointSink checkpoints) {
+        if (from >= to) {
+            return;
+        }
+        if (knownPosition < 1 || positions[from] <= knownPosition) {
+            throw new IllegalArgumentException(
+                    "Prime position " + positions[from] + " must be after known position " + knownPosition);
+        }
+
+        long limit = upperBound(positions[to - 1]);
+        Cursor cursor = new Cursor(knownPrime + 1, limit);
+        long primesFound = knownPosition;
+        int next = from;
+        long checkpoint = checkpoints.nextAfter(knownPosition);
+        while (next < to && cursor.next()) {
+            int segmentPrimes = cursor.countPrimes();
+            checkpoint = offerCheckpoints(cursor, primesFound, segmentPrimes,
+                    Math.min(positions[to - 1] - 1, primesFound + segmentPrimes), checkpoint, checkpoints);
+            while (next < to && positions[next] <= primesFound + segmentPrimes) {
+                primes[next] = cursor.selectPrime((int) (positions[next] - primesFound));
+                next++;
+            }
+            primesFound += segmentPrimes;
+            PrimeProgress.report(primesFound);
+        }
+
+        if (next < to) {
+            throw new IllegalStateException("Upper bound " + limit + " did not contain prime number " + positions[next]);
+        }
+    }
+
+    // offers each checkpoint up to lastPosition that falls in the current segment; returns the next one
+    private static long offerCheckpoints(Cursor cursor, long primesFound, int segmentPrimes, long lastPosition,
+                                         long checkpoint, PrimeCheckpointSink checkpoints) {
+        while (checkpoint <= lastPosition && checkpoint <= primesFound + segmentPrimes) {
+            long prime = cursor.selectPrime((int) (checkpoint - primesFound));
+            checkpoints.offer(checkpoint, () -> prime);
+            checkpoint += checkpoints.interval();
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Visits the primes in {@code [from, to)} in ascending order until {@code action} returns false.
+     */
+    public static void forEachPrime(long from, long to, LongPredicate action) {
+        if (from <= 2 && to > 2 && !action.test(2)) {
+            return;
+        }
+        Cursor cursor = new Cursor(from, to - 1);
+        while (cursor.next()) {
+            if (!cursor.forEachPrime(action)) {
+                return;
+            }
+        }
+    }
+
+    public static long countPrimes(long from, long to) {
+        return countPrimes(from, to, oddPrimesUpTo(isqrt(Math.max(to - 1, 0))));
+    }
+
+    static long countPrimes(long from, long to, int[] basePrimes) {
+        long count = from <= 2 && to > 2 ? 1 : 0;
+        Cursor cursor = new Cursor(from, to - 1, basePrimes);
+        while (cursor.next()) {
+            count += cursor.countPrimes();
+        }
+        return count;
+    }
+
+    /**
+     * Upper bound for the nth prime: Rosser's {@code n(ln n + ln ln n)} for {@code n >= 6}, tightened
+     * with Dusart's {@code n(ln n + ln ln n - 0.9484)} from {@code n >= 39017}.
+     */
+    public static long upperBound(long n) {
+        if (n < 6) {
+            return 13;
+        }
+        double logN = Math.log(n);
+        double logLogN = Math.log(logN);
+        double bound = n >= 39017
+                ? n * (logN + logLogN - 0.9484)
+                : n * (logN + logLogN);
+        return (long) Math.ceil(bound);
+    }
+
+    static int[] oddPrimesUpTo(long limit) {
+        if (limit < 3) {
+            return new int[0];
+        }
+        int bits = (int) ((limit - 1) / 2);
+        long[] composite = new long[(bits + 64) / 64];
+        for (int i = 1; ; i++) {
+            long prime = 2L * i + 1;
+            if (prime * prime > limit) {
+                break;
+            }
+            if ((composite[i >>> 6] & (1L << i)) != 0) {
+                continue;
+            }
+            for (long j = (prime * prime - 1) / 2; j <= bits; j += prime) {
+                composite[(int) (j >>> 6)] |= 1L << j;
+            }
+        }
+
+        int[] primes = new int[bits - ScalarSieveKernel.countSet(composite, 0, bits + 1)];
+        int count = 0;
+        for (int i = 1; i <= bits; i++) {
+            if ((composite[i >>> 6] & (1L << i)) == 0) {
+                primes[count++] = 2 * i + 1;
+            }
+        }
+        return primes;
+    }
+
+    static long isqrt(long value) {
+        long root = (long) Math.sqrt((double) value);
+        while (root * root > value) {
+            root--;
+        }
+        while ((root + 1) * (root + 1) <= value) {
+            root++;
+        }
+        return root;
+    }
+
+    private static long[] presievePattern() {
+        // one period plus a full segment, so a segment can be stamped from any phase without wrapping
+        long[] pattern = new long[(PRESIEVE_PERIOD + SEGMENT_BITS) / Long.SIZE + 2];
+        int bits = pattern.length * Long.SIZE;
+        for (int prime : PRESIEVE_PRIMES) {
+            for (int t = (prime - 1) / 2; t < bits; t += prime) {
+                pattern[t >>> 6] |= 1L << t;
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Walks consecutive segments covering the odd numbers in {@code [from, limit]}, carrying each
+     * base prime's next multiple from one segment to the next.
+     */
+    static final class Cursor {
+        private final long limit;
+        private final SieveKernel kernel;
+        private final int[] basePrimes;
+        private final int presievedPrimes;
+        private final int[] nextIndex;
+        private final long[] segment = new long[SEGMENT_WORDS];
+        private int activePrimes;
+        private long nextLow;
+        private long low;
+        private int bits;
+
+        Cursor(long from, long limit) {
+            this(from, limit, oddPrimesUpTo(isqrt(Math.max(limit, 0))));
+        }
+
+        Cursor(long from, long limit, int[] basePrimes) {
+            this(from, limit, basePrimes, SieveKernels.ACTIVE);
+        }
+
+        Cursor(long from, long limit, int[] basePrimes, SieveKernel kernel) {
+            this.limit = limit;
+            this.kernel = kernel;
+            this.nextLow = Math.max(3, from | 1);
+            this.basePrimes = basePrimes;
+            this.nextIndex = new int[basePrimes.length];
+            int presieved = 0;
+            while (presieved < basePrimes.length && basePrimes[presieved] <= PRESIEVE_PRIMES[PRESIEVE_PRIMES.length - 1]) {
+                presieved++;
+            }
+            this.presievedPrimes = presieved;
+        }
+
+        boolean next() {
+            if (nextLow > limit) {
+                return false;
+            }
+            low = nextLow;
+            bits = (int) Math.min(SEGMENT_BITS, (limit - low) / 2 + 1);
+            long high = low + 2L * (bits - 1);
+            nextLow = high + 2;
+
+            while (activePrimes < basePrimes.length
+                    && (long) basePrimes[activePrimes] * basePrimes[activePrimes] <= high) {
+                nextIndex[activePrimes] = firstMultipleIndex(basePrimes[activePrimes]);
+                activePrimes++;
+            }
+
+            kernel.stamp(segment, (bits + 63) >>> 6, PRESIEVE_PATTERN, (low >>> 1) % PRESIEVE_PERIOD);
+            if (low <= PRESIEVE_PRIMES[PRESIEVE_PRIMES.length - 1]) {
+                // the pattern marks the presieve primes themselves, which are only multiples of one
+                for (int prime : PRESIEVE_PRIMES) {
+                    if (prime >= low && prime <= high) {
+                        int index = (int) ((prime - low) / 2);
+                        segment[index >>> 6] &= ~(1L << index);
+                    }
+                }
+            }
+            for (int i = presievedPrimes; i < activePrimes; i++) {
+                int prime = basePrimes[i];
+                int j = nextIndex[i];
+                for (; j < bits; j += prime) {
+                    segment[j >>> 6] |= 1L << j;
+                }
+                nextIndex[i] = j - bits;
+            }
+            return true;
+        }
+
+        int countPrimes() {
+            return bits - kernel.countSet(segment, bits);
+        }
+
+        long selectPrime(int rank) {
+            int remaining = rank;
+            for (int word = 0; ; word++) {
+                long clear = ~segment[word];
+                int available = Long.bitCount(clear);
+                if (remaining <= available) {
+                    for (int k = 1; k < remaining; k++) {
+                        clear &= clear - 1;
+                    }
+                    return low + 2L * ((word << 6) + Long.numberOfTrailingZeros(clear));
+                }
+                remaining -= available;
+            }
+        }
+
+        boolean forEachPrime(LongPredicate action) {
+            int words = (bits + 63) >>> 6;
+            for (int word = 0; word < words; word++) {
+                long clear = ~segment[word];
+                if (word == words - 1 && (bits & 63) != 0) {
+                    clear &= (1L << bits) - 1;
+                }
+                while (clear != 0) {
+                    int index = (word << 6) + Long.numberOfTrailingZeros(clear);
+                    if (!action.test(low + 2L * index)) {
+                        return false;
+                    }
+                    clear &= clear - 1;
+                }
+            }
+            return true;
+        }
+
+        private int firstMultipleIndex(int prime) {
+            long square = (long) prime * prime;
+            long start = Math.max(square, (low + prime - 1) / prime * prime);
+            if ((start & 1) == 0) {
+                start += prime;
+            }
+            return (int) ((start - low) / 2);
+        }
+    }
+}
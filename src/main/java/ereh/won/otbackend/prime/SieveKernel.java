@@ -0,0 +1,22 @@
+package ereh.won.otbackend.prime;
+
+/**
+ * Word-level bitmap operations behind every sieve segment. Implementations must produce identical
+ * bitmaps and counts; they only differ in how many words they process per instruction.
+ */
+interface SieveKernel {
+
+    String name();
+
+    /**
+     * Overwrites {@code segment[0, words)} with {@code pattern} read from bit {@code bitOffset}
+     * onwards, which both clears the previous segment and pre-marks the multiples of the presieved
+     * primes in one pass.
+     */
+    void stamp(long[] segment, int words, long[] pattern, long bitOffset);
+
+    /**
+     * Number of set bits among the first {@code bits} bits of {@code words}.
+     */
+    int countSet(long[] words, int bits);
+}
@@ -0,0 +1,52 @@
+package ereh.won.otbackend.prime;
+
+import lombok.extern.java.Log;
+
+import java.util.Locale;
+
+/**
+ * Chooses the {@link SieveKernel} once at startup from the {@code prime.compute.kernel} system
+ * property: {@code scalar}, {@code vector}, or {@code auto} (the default), which uses the vector
+ * kernel whenever the JVM was started with {@code --add-modules jdk.incubator.vector}.
+ */
+@Log
+final class SieveKernels {
+    static final String KERNEL_PROPERTY = "prime.compute.kernel";
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    static final SieveKernel ACTIVE = select(System.getProperty(KERNEL_PROPERTY, "auto"));
+
+    private SieveKernels() {
+    }
+
+    static SieveKernel select(String requested) {
+        SieveKernel kernel = switch (requested.trim().toLowerCase(Locale.ROOT)) {
+            case "scalar" -> ScalarSieveKernel.INSTANCE;
+            case "vector", "auto" -> vectorOrScalar();
+            default -> throw new IllegalArgumentException(
+                    "Unknown sieve kernel '" + requested + "', expected scalar, vector or auto");
+        };
+        log.info("Using " + kernel.name() + " sieve kernel");
+        return kernel;
+    }
+
+    static boolean vectorAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    private static SieveKernel vectorOrScalar() {
+        if (!vectorAvailable()) {
+            log.info(VECTOR_MODULE + " is not resolved; falling back to the scalar sieve kernel");
+            return ScalarSieveKernel.INSTANCE;
+        }
+        try {
+            // loaded reflectively so the vector classes are never linked when the module is absent
+            return (SieveKernel) Class.forName("ereh.won.otbackend.prime.VectorSieveKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warning("Vector sieve kernel unavailable, falling back to scalar: " + e);
+            return ScalarSieveKernel.INSTANCE;
+        }
+    }
+}
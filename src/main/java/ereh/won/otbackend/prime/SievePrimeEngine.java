@@ -0,0 +1,66 @@
+package ereh.won.otbackend.prime;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Answers positions from the shared {@link PrimeTable} (checkpoints, segmented and parallel sieving,
+ * prime counting), primality with deterministic Miller–Rabin and ranges with the segmented sieve.
+ */
+public final class SievePrimeEngine implements PrimeEngine {
+    public static final int DEFAULT_TABLE_CAPACITY = 1 << 22;
+
+    private final PrimeTable table;
+
+    public SievePrimeEngine() {
+        this(new PrimeTable(DEFAULT_TABLE_CAPACITY, ParallelSegmentedSieve.sequential(), PrimeCheckpoints.load()));
+    }
+
+    public SievePrimeEngine(PrimeTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public String name() {
+        return "sieve";
+    }
+
+    @Override
+    public long nthPrime(long position) {
+        return table.nthPrime(position);
+    }
+
+    @Override
+    public long nthPrimeAfter(long knownPosition, long knownPrime, long position) {
+        return table.nthPrimeAfter(knownPosition, knownPrime, position);
+    }
+
+    @Override
+    public long[] nthPrimes(long[] positions) {
+        return table.nthPrimes(positions);
+    }
+
+    @Override
+    public long[] nthPrimesAfter(long knownPosition, long knownPrime, long[] positions) {
+        return table.nthPrimesAfter(knownPosition, knownPrime, positions);
+    }
+
+    @Override
+    public long estimateCost(long knownPosition, long knownPrime, long position) {
+        return table.estimateCost(knownPosition, knownPrime, position);
+    }
+
+    @Override
+    public long estimateBatchCost(long knownPosition, long knownPrime, long[] positions) {
+        return table.estimateCost(knownPosition, knownPrime, positions);
+    }
+
+    @Override
+    public boolean isPrime(long candidate) {
+        return MillerRabin.isPrime(candidate);
+    }
+
+    @Override
+    public void primesInRange(long from, long to, LongPredicate action) {
+        SegmentedSieve.forEachPrime(from, to, action);
+    }
+}
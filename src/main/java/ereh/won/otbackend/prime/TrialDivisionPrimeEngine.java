@@ -0,0 +1,70 @@
+package ereh.won.otbackend.prime;
+
+import java.util.function.LongPredicate;
+
+/**
+ * The original implementation: counts odd candidates one by one, testing each by trial division up
+ * to its square root. Needs no memory, but the cost of {@code nthPrime} grows faster than linearly.
+ */
+public final class TrialDivisionPrimeEngine implements PrimeEngine {
+
+    @Override
+    public String name() {
+        return "trial-division";
+    }
+
+    @Override
+    public long nthPrime(long position) {
+        return nthPrimeAfter(0, 0, position);
+    }
+
+    @Override
+    public long nthPrimeAfter(long knownPosition, long knownPrime, long position) {
+        if (position < 1) {
+            throw new IllegalArgumentException("Prime position must be positive: " + position);
+        }
+        if (position == 1) {
+            return 2;
+        }
+
+        long primesFound = 1;
+        long candidate = 1;
+        // counting resumes from any odd known prime below the position
+        if (knownPosition > 1 && knownPosition < position) {
+            primesFound = knownPosition;
+            candidate = knownPrime;
+        }
+        while (primesFound < position) {
+            candidate += 2;
+            if (isPrime(candidate)) {
+                primesFound++;
+            }
+        }
+        return candidate;
+    }
+
+    @Override
+    public boolean isPrime(long candidate) {
+        if (candidate < 2) {
+            return false;
+        }
+        if ((candidate & 1) == 0) {
+            return candidate == 2;
+        }
+        for (long divisor = 3; divisor <= candidate / divisor; divisor += 2) {
+            if (candidate % divisor == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void primesInRange(long from, long to, LongPredicate action) {
+        for (long candidate = Math.max(from, 2); candidate < to; candidate++) {
+            if (isPrime(candidate) && !action.test(candidate)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ereh.won.otbackend.prime;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link SieveKernel} on the incubating Vector API, using the widest long species the CPU supports.
+ * Only loaded through {@link SieveKernels} once {@code jdk.incubator.vector} is known to be resolved.
+ */
+final class VectorSieveKernel implements SieveKernel {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public void stamp(long[] segment, int words, long[] pattern, long bitOffset) {
+        int first = (int) (bitOffset >>> 6);
+        int shift = (int) (bitOffset & 63);
+        if (shift == 0) {
+            System.arraycopy(pattern, first, segment, 0, words);
+            return;
+        }
+
+        int upper = SPECIES.loopBound(words);
+        int w = 0;
+        for (; w < upper; w += SPECIES.length()) {
+            LongVector low = LongVector.fromArray(SPECIES, pattern, first + w);
+            LongVector high = LongVector.fromArray(SPECIES, pattern, first + w + 1);
+            low.lanewise(VectorOperators.LSHR, shift)
+                    .or(high.lanewise(VectorOperators.LSHL, Long.SIZE - shift))
+                    .intoArray(segment, w);
+        }
+        for (; w < words; w++) {
+            segment[w] = (pattern[first + w] >>> shift) | (pattern[first + w + 1] << (Long.SIZE - shift));
+        }
+    }
+
+    @Override
+    public int countSet(long[] words, int bits) {
+        int upper = SPECIES.loopBound(bits >>> 6);
+        LongVector counts = LongVector.zero(SPECIES);
+        for (int w = 0; w < upper; w += SPECIES.length()) {
+            counts = counts.add(LongVector.fromArray(SPECIES, words, w).lanewise(VectorOperators.BIT_COUNT));
+        }
+        return (int) counts.reduceLanes(VectorOperators.ADD) + ScalarSieveKernel.countSet(words, upper, bits);
+    }
+}
@@ -1,7 +1,7 @@
 -- Prime cache table for PostgreSQL backend
 CREATE TABLE IF NOT EXISTS prime_cache (
-    position INTEGER PRIMARY KEY,
-    prime_value INTEGER NOT NULL,
+    position BIGINT PRIMARY KEY,
+    prime_value BIGINT NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
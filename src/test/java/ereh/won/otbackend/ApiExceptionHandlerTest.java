@@ -3,6 +3,9 @@ package ereh.won.otbackend;
 import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -20,10 +23,86 @@ class ApiExceptionHandlerTest {
 		var response = handler.handleInvalidNumberException(new InvalidNumberException(0), request);
 
 		assertEquals(HttpStatusCode.valueOf(400), response.getStatusCode());
+		assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
 		assertNotNull(response.getBody());
 		assertEquals("INVALID_PRIME_POSITION", response.getBody().code());
 		assertEquals("Prime position must be greater than zero. Received: 0", response.getBody().message());
 		assertEquals("/api/primes/getPrime", response.getBody().path());
 		assertNotNull(response.getBody().timestamp());
 	}
+
+	@Test
+	void computationUnavailableExceptionMapsToServiceUnavailable() {
+		ApiExceptionHandler handler = new ApiExceptionHandler();
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getRequestURI()).thenReturn("/api/primes/getPrime");
+
+		var response = handler.handleComputationUnavailableException(
+				new ComputationUnavailableException(42, "timed out waiting for in-flight computation"), request);
+
+		assertEquals(HttpStatusCode.valueOf(503), response.getStatusCode());
+		assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+		assertNotNull(response.getBody());
+		assertEquals("PRIME_COMPUTATION_UNAVAILABLE", response.getBody().code());
+		assertEquals("Prime at position 42 is not available: timed out waiting for in-flight computation",
+				response.getBody().message());
+	}
+
+	@Test
+	void invalidBatchExceptionMapsToBadRequest() {
+		ApiExceptionHandler handler = new ApiExceptionHandler();
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getRequestURI()).thenReturn("/api/primes/batch");
+
+		var response = handler.handleInvalidBatchException(new InvalidBatchException(0), request);
+
+		assertEquals(HttpStatusCode.valueOf(400), response.getStatusCode());
+		assertNotNull(response.getBody());
+		assertEquals("INVALID_PRIME_BATCH", response.getBody().code());
+		assertEquals("A batch must contain between 1 and 1000 positions. Received: 0", response.getBody().message());
+	}
+
+	@Test
+	void invalidRangeExceptionMapsToJsonBadRequest() {
+		ApiExceptionHandler handler = new ApiExceptionHandler();
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getRequestURI()).thenReturn("/api/primes/range");
+
+		var response = handler.handleInvalidRangeException(new InvalidRangeException("bad range"), request);
+
+		assertEquals(HttpStatusCode.valueOf(400), response.getStatusCode());
+		assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+		assertNotNull(response.getBody());
+		assertEquals("INVALID_PRIME_RANGE", response.getBody().code());
+	}
+
+	@Test
+	void jobNotFoundExceptionMapsToNotFound() {
+		ApiExceptionHandler handler = new ApiExceptionHandler();
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getRequestURI()).thenReturn("/api/primes/jobs/missing");
+
+		var response = handler.handleJobNotFoundException(new JobNotFoundException("missing"), request);
+
+		assertEquals(HttpStatusCode.valueOf(404), response.getStatusCode());
+		assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+		assertNotNull(response.getBody());
+		assertEquals("PRIME_JOB_NOT_FOUND", response.getBody().code());
+		assertEquals("/api/primes/jobs/missing", response.getBody().path());
+	}
+
+	@Test
+	void computationRejectedExceptionMapsToServiceUnavailableWithRetryAfter() {
+		ApiExceptionHandler handler = new ApiExceptionHandler();
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getRequestURI()).thenReturn("/api/primes/getPrime");
+
+		var response = handler.handleComputationRejectedException(new ComputationRejectedException(42,
+				"the compute budget is exhausted", Duration.ofMillis(1_500)), request);
+
+		assertEquals(HttpStatusCode.valueOf(503), response.getStatusCode());
+		assertEquals("2", response.getHeaders().getFirst("Retry-After"));
+		assertNotNull(response.getBody());
+		assertEquals("PRIME_COMPUTATION_UNAVAILABLE", response.getBody().code());
+	}
 }
@@ -0,0 +1,159 @@
+package ereh.won.otbackend;
+
+import ereh.won.otbackend.cache.CacheMetrics;
+import ereh.won.otbackend.cache.InMemoryPrimeCache;
+import ereh.won.otbackend.cache.PrimeCache;
+import ereh.won.otbackend.cache.PrimeCacheKey;
+import ereh.won.otbackend.prime.PrimeEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ComputeAdmissionTest {
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    @Test
+    void admitsComputationsWhileTheirCostsFitTheBudget() {
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 100, 0, Duration.ZERO, Duration.ofSeconds(1));
+
+        try (ComputeAdmission.Permit first = admission.admit(1, 60);
+             ComputeAdmission.Permit second = admission.admit(2, 40)) {
+            assertEquals(100, admission.inUse());
+        }
+
+        assertEquals(0, admission.inUse());
+    }
+
+    @Test
+    void refusesAtOnceWhenTheQueueIsFull() {
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 100, 0, Duration.ofSeconds(10),
+                Duration.ofSeconds(3));
+
+        try (ComputeAdmission.Permit held = admission.admit(1, 100)) {
+            ComputationRejectedException rejected = assertThrows(ComputationRejectedException.class,
+                    () -> admission.admit(2, 1));
+            assertEquals(Duration.ofSeconds(3), rejected.getRetryAfter());
+        }
+        verify(serviceMetrics).recordAdmissionRejected("queue_full");
+    }
+
+    @Test
+    void queuedCallerGivesUpAfterTheTimeout() {
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 100, 4, Duration.ofMillis(20),
+                Duration.ofSeconds(1));
+
+        try (ComputeAdmission.Permit held = admission.admit(1, 100)) {
+            assertThrows(ComputationRejectedException.class, () -> admission.admit(2, 1));
+        }
+
+        assertEquals(0, admission.queued());
+        verify(serviceMetrics).recordAdmissionRejected("timeout");
+        verify(serviceMetrics).recordAdmissionQueued(1);
+        verify(serviceMetrics).recordAdmissionQueued(-1);
+    }
+
+    @Test
+    void queuedCallerRunsOnceTheBudgetIsReleased() throws Exception {
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 100, 4, Duration.ofSeconds(10),
+                Duration.ofSeconds(1));
+        ComputeAdmission.Permit held = admission.admit(1, 100);
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<Long> queued = executor.submit(() -> {
+                try (ComputeAdmission.Permit permit = admission.admit(2, 50)) {
+                    return admission.inUse();
+                }
+            });
+            awaitQueued(admission, 1);
+            assertFalse(queued.isDone());
+
+            held.close();
+
+            assertEquals(50, queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void freeAndOversizedComputationsAreNeverStarved() {
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 100, 0, Duration.ZERO, Duration.ofSeconds(1));
+
+        try (ComputeAdmission.Permit huge = admission.admit(1, Long.MAX_VALUE);
+             ComputeAdmission.Permit free = admission.admit(2, 0)) {
+            assertEquals(100, admission.inUse());
+        }
+    }
+
+    @Test
+    void cheapMissIsAdmittedWhileALargeComputationRuns() {
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 100, 25, 0, Duration.ZERO,
+                Duration.ofSeconds(1));
+
+        try (ComputeAdmission.Permit job = admission.admit(1, 1L << 40);
+             ComputeAdmission.Permit cheap = admission.admit(2, 10)) {
+            assertEquals(35, admission.inUse());
+        }
+
+        assertEquals(0, admission.inUse());
+    }
+
+    @Test
+    void cacheHitsAreServedWhileTheComputeBudgetIsExhausted() {
+        PrimeCache cache = new InMemoryPrimeCache();
+        cache.put(new PrimeCacheKey(1_000), 7_919);
+        PrimeEngine engine = mock(PrimeEngine.class);
+        when(engine.estimateCost(anyLong(), anyLong(), anyLong())).thenReturn(1_000L);
+        CacheMetrics cacheMetrics = mock(CacheMetrics.class);
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 100, 0, Duration.ZERO, Duration.ofSeconds(1));
+        MissBatcher missBatcher = new MissBatcher(engine, cache, cacheMetrics, serviceMetrics, admission,
+                Duration.ZERO, 1);
+        PrimesService service = new PrimesService(serviceMetrics, cache, cacheMetrics,
+                new InFlightComputations(serviceMetrics, Duration.ofSeconds(1)), missBatcher);
+
+        try (ComputeAdmission.Permit held = admission.admit(1, 100)) {
+            assertEquals(7_919, service.getPrime(1_000));
+            assertThrows(ComputationRejectedException.class, () -> service.getPrime(2_000));
+        }
+
+        verify(engine, never()).nthPrimeAfter(anyLong(), anyLong(), anyLong());
+        assertTrue(cache.get(new PrimeCacheKey(2_000)).isEmpty());
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ComputeAdmission(serviceMetrics, 0, 1, Duration.ZERO, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ComputeAdmission(serviceMetrics, 1, -1, Duration.ZERO, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ComputeAdmission(serviceMetrics, 100, 101, 1, Duration.ZERO, Duration.ZERO));
+    }
+
+    private static void awaitQueued(ComputeAdmission admission, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (admission.queued() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, admission.queued());
+    }
+}
@@ -0,0 +1,172 @@
+package ereh.won.otbackend;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class InFlightComputationsTest {
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    @Test
+    void concurrentCallersShareOneComputation() throws Exception {
+        InFlightComputations computations = new InFlightComputations(serviceMetrics, Duration.ofSeconds(10));
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 16;
+
+        List<Future<Long>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+            results.add(executor.submit(() -> computations.computeOnce(10, position -> {
+                runs.incrementAndGet();
+                started.countDown();
+                await(release);
+                return 29;
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> computations.computeOnce(10, position -> {
+                    runs.incrementAndGet();
+                    return 29;
+                })));
+            }
+            waitForWaiters(computations, 10, callers - 1);
+            release.countDown();
+            for (Future<Long> result : results) {
+                assertEquals(29, result.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, runs.get());
+        assertEquals(0, computations.inFlightCount());
+        verify(serviceMetrics, times(callers - 1)).recordCoalescedWaiter("joined");
+    }
+
+    @Test
+    void failureReachesWaitersAndIsNotCached() throws Exception {
+        InFlightComputations computations = new InFlightComputations(serviceMetrics, Duration.ofSeconds(10));
+        IllegalStateException failure = new IllegalStateException("engine failed");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<Long> owner = executor.submit(() -> computations.computeOnce(7, position -> {
+                started.countDown();
+                await(release);
+                throw failure;
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<Long> waiter = executor.submit(() -> computations.computeOnce(7, position -> 17));
+            waitForWaiters(computations, 7, 1);
+            release.countDown();
+
+            assertSame(failure, unwrap(owner));
+            assertSame(failure, unwrap(waiter));
+        }
+
+        verify(serviceMetrics).recordCoalescedWaiter("failed");
+        assertEquals(17, computations.computeOnce(7, position -> 17));
+    }
+
+    @Test
+    void waiterTimesOutWithoutCancellingTheComputation() throws Exception {
+        InFlightComputations computations = new InFlightComputations(serviceMetrics, Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<Long> owner = executor.submit(() -> computations.computeOnce(3, position -> {
+                started.countDown();
+                await(release);
+                return 5;
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertThrows(ComputationUnavailableException.class, () -> computations.computeOnce(3, position -> 5));
+            release.countDown();
+            assertEquals(5, owner.get(5, TimeUnit.SECONDS));
+        }
+
+        verify(serviceMetrics).recordCoalescedWaiter("timeout");
+    }
+
+    @Test
+    void interruptedWaiterGivesUpAndKeepsInterruptFlag() throws Exception {
+        InFlightComputations computations = new InFlightComputations(serviceMetrics, Duration.ofSeconds(10));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<Long> owner = executor.submit(() -> computations.computeOnce(4, position -> {
+                started.countDown();
+                await(release);
+                return 7;
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Thread.currentThread().interrupt();
+            assertThrows(ComputationUnavailableException.class, () -> computations.computeOnce(4, position -> 7));
+            assertTrue(Thread.interrupted());
+            release.countDown();
+            assertEquals(7, owner.get(5, TimeUnit.SECONDS));
+        }
+
+        verify(serviceMetrics).recordCoalescedWaiter("cancelled");
+    }
+
+    @Test
+    void rejectsNonPositiveTimeout() {
+        assertThrows(IllegalArgumentException.class, () -> new InFlightComputations(serviceMetrics, Duration.ZERO));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitForWaiters(InFlightComputations computations, long position, int expected)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (computations.waiters(position) < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static Throwable unwrap(Future<Long> future) throws InterruptedException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            throw new AssertionError("Expected failure");
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (TimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
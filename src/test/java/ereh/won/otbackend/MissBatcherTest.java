@@ -0,0 +1,242 @@
+package ereh.won.otbackend;
+
+import ereh.won.otbackend.cache.CacheMetrics;
+import ereh.won.otbackend.cache.InMemoryPrimeCache;
+import ereh.won.otbackend.cache.PrimeCache;
+import ereh.won.otbackend.cache.PrimeCacheKey;
+import ereh.won.otbackend.prime.PrimeEngine;
+import ereh.won.otbackend.prime.SegmentedSieve;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.quality.Strictness;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@ExtendWith(MockitoExtension.class)
+class MissBatcherTest {
+
+    @Mock
+    private CacheMetrics cacheMetrics;
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    @Test
+    void concurrentMissesShareOnePassAndOneBulkWrite() throws Exception {
+        PrimeEngine engine = sieveBackedEngine();
+        PrimeCache cache = spy(new InMemoryPrimeCache());
+        int callers = 8;
+        MissBatcher batcher = new MissBatcher(engine, cache, cacheMetrics, serviceMetrics, Duration.ofSeconds(10), callers);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+            for (int i = 0; i < callers; i++) {
+                long position = 1_000L + 7L * (callers - i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return batcher.computeAndCache(position);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < callers; i++) {
+                long position = 1_000L + 7L * (callers - i);
+                assertEquals(SegmentedSieve.nthPrime(position), results.get(i).get(10, TimeUnit.SECONDS));
+            }
+        }
+
+        verify(engine, times(1)).nthPrimesAfter(anyLong(), anyLong(), any());
+        verify(engine, never()).nthPrimeAfter(anyLong(), anyLong(), anyLong());
+        verify(cache, times(1)).putAll(any());
+        verify(cacheMetrics).record("put_all", "success");
+        assertEquals(SegmentedSieve.nthPrime(1_007), cache.get(new PrimeCacheKey(1_007)).orElseThrow());
+    }
+
+    @Test
+    void loneMissIsAnsweredWhenTheWindowCloses() {
+        PrimeEngine engine = sieveBackedEngine();
+        PrimeCache cache = new InMemoryPrimeCache();
+        MissBatcher batcher = new MissBatcher(engine, cache, cacheMetrics, serviceMetrics, Duration.ofMillis(20), 64);
+
+        long started = System.nanoTime();
+        assertEquals(7_919, batcher.computeAndCache(1_000));
+
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(7_919, cache.get(new PrimeCacheKey(1_000)).orElseThrow());
+        verify(serviceMetrics).recordMissBatch(any(int.class), any(double.class));
+    }
+
+    @Test
+    void engineFailureReachesEveryCallerInTheBatch() throws Exception {
+        PrimeEngine engine = mock(PrimeEngine.class);
+        IllegalStateException failure = new IllegalStateException("engine failed");
+        when(engine.nthPrimesAfter(anyLong(), anyLong(), any())).thenThrow(failure);
+        MissBatcher batcher = new MissBatcher(engine, new InMemoryPrimeCache(), cacheMetrics, serviceMetrics,
+                Duration.ofSeconds(10), 2);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<Long> first = executor.submit(() -> batcher.computeAndCache(10));
+            Future<Long> second = executor.submit(() -> batcher.computeAndCache(20));
+
+            assertEquals(failure, assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS)).getCause());
+            assertEquals(failure, assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS)).getCause());
+        }
+    }
+
+    @Test
+    void bulkWriteFailureStillReturnsComputedPrimes() {
+        PrimeCache cache = mock(PrimeCache.class);
+        doThrow(new RuntimeException("Cache unavailable")).when(cache).putAll(any(Map.class));
+        MissBatcher batcher = new MissBatcher(sieveBackedEngine(), cache, cacheMetrics, serviceMetrics,
+                Duration.ofMillis(1), 64);
+
+        assertEquals(29, batcher.computeAndCache(10));
+        verify(cacheMetrics).record("put_all", "error");
+    }
+
+    @Test
+    void zeroWindowComputesEachMissOnItsOwn() {
+        PrimeEngine engine = sieveBackedEngine();
+        PrimeCache cache = spy(new InMemoryPrimeCache());
+        MissBatcher batcher = MissBatcher.unbatched(engine, cache, cacheMetrics, serviceMetrics);
+
+        assertEquals(29, batcher.computeAndCache(10));
+
+        verify(engine).nthPrimeAfter(0, 0, 10);
+        verify(cache).put(new PrimeCacheKey(10), 29);
+        verify(cacheMetrics).record("put", "success");
+        verify(serviceMetrics, never()).recordMissBatch(any(int.class), any(double.class));
+    }
+
+    @Test
+    void missContinuesFromTheNearestCachedPosition() {
+        PrimeEngine engine = sieveBackedEngine();
+        PrimeCache cache = new InMemoryPrimeCache();
+        cache.put(new PrimeCacheKey(1_000), 7_919);
+        MissBatcher batcher = MissBatcher.unbatched(engine, cache, cacheMetrics, serviceMetrics);
+
+        assertEquals(7_933, batcher.computeAndCache(1_002));
+
+        verify(engine).nthPrimeAfter(1_000, 7_919, 1_002);
+        verify(cacheMetrics).record("floor", "hit");
+    }
+
+    @Test
+    void batchContinuesFromTheFloorOfItsSmallestPosition() {
+        PrimeEngine engine = sieveBackedEngine();
+        PrimeCache cache = new InMemoryPrimeCache();
+        cache.put(new PrimeCacheKey(1_000), 7_919);
+        MissBatcher batcher = new MissBatcher(engine, cache, cacheMetrics, serviceMetrics, Duration.ofMillis(1), 64);
+
+        assertEquals(7_933, batcher.computeAndCache(1_002));
+
+        verify(engine).nthPrimesAfter(1_000, 7_919, new long[]{1_002});
+    }
+
+    @Test
+    void floorFailureFallsBackToAFullComputation() {
+        PrimeEngine engine = sieveBackedEngine();
+        PrimeCache cache = mock(PrimeCache.class);
+        when(cache.floor(10)).thenThrow(new RuntimeException("Cache unavailable"));
+        MissBatcher batcher = MissBatcher.unbatched(engine, cache, cacheMetrics, serviceMetrics);
+
+        assertEquals(29, batcher.computeAndCache(10));
+
+        verify(engine).nthPrimeAfter(0, 0, 10);
+        verify(cacheMetrics).record("floor", "error");
+    }
+
+    @Test
+    void computeAndCacheAllAnswersTogetherWithoutAWindow() {
+        PrimeEngine engine = sieveBackedEngine();
+        PrimeCache cache = spy(new InMemoryPrimeCache());
+        cache.put(new PrimeCacheKey(5), 11);
+        MissBatcher batcher = MissBatcher.unbatched(engine, cache, cacheMetrics, serviceMetrics);
+
+        long[] primes = batcher.computeAndCacheAll(new long[]{10, 1_000});
+
+        assertEquals(29, primes[0]);
+        assertEquals(7_919, primes[1]);
+        verify(engine).nthPrimesAfter(5, 11, new long[]{10, 1_000});
+        verify(cache).putAll(Map.of(new PrimeCacheKey(10), 29L, new PrimeCacheKey(1_000), 7_919L));
+        verify(serviceMetrics).recordMissBatch(any(int.class), any(double.class));
+    }
+
+    @Test
+    void batchIsAdmittedAtTheCostOfAllItsPasses() {
+        PrimeEngine engine = sieveBackedEngine();
+        long[] positions = {10, 1_000};
+        when(engine.estimateBatchCost(0, 0, positions)).thenReturn(40L);
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 100, 0, Duration.ZERO, Duration.ofSeconds(1));
+        MissBatcher batcher = new MissBatcher(engine, new InMemoryPrimeCache(), cacheMetrics, serviceMetrics, admission,
+                Duration.ZERO, 1);
+
+        batcher.computeAndCacheAll(positions);
+
+        verify(serviceMetrics).recordAdmissionCostInUse(40);
+        verify(engine, never()).estimateCost(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void batchDearerThanTheLimitIsRejectedBeforeComputing() {
+        PrimeEngine engine = sieveBackedEngine();
+        long[] positions = {10, 1_000};
+        when(engine.estimateBatchCost(0, 0, positions)).thenReturn(1_001L);
+        MissBatcher batcher = new MissBatcher(engine, new InMemoryPrimeCache(), cacheMetrics, serviceMetrics,
+                ComputeAdmission.unlimited(serviceMetrics), 1_000, Duration.ZERO, 1);
+
+        assertThrows(InvalidBatchException.class, () -> batcher.computeAndCacheAll(positions));
+
+        verify(engine, never()).nthPrimesAfter(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void rejectsInvalidConfiguration() {
+        PrimeEngine engine = mock(PrimeEngine.class);
+        PrimeCache cache = mock(PrimeCache.class);
+        assertThrows(IllegalArgumentException.class,
+                () -> new MissBatcher(engine, cache, cacheMetrics, serviceMetrics, Duration.ofMillis(-1), 8));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MissBatcher(engine, cache, cacheMetrics, serviceMetrics, Duration.ofMillis(5), 0));
+    }
+
+    private static PrimeEngine sieveBackedEngine() {
+        PrimeEngine engine = mock(PrimeEngine.class, withSettings().strictness(Strictness.LENIENT));
+        when(engine.nthPrimeAfter(anyLong(), anyLong(), anyLong()))
+                .thenAnswer(invocation -> SegmentedSieve.nthPrime(invocation.getArgument(2)));
+        when(engine.nthPrimesAfter(anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            long[] positions = invocation.getArgument(2);
+            long[] primes = new long[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                primes[i] = SegmentedSieve.nthPrime(positions[i]);
+            }
+            return primes;
+        });
+        return engine;
+    }
+}
@@ -0,0 +1,40 @@
+package ereh.won.otbackend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimeETagTest {
+
+    @Test
+    void tagsCarryPositionAndPrime() {
+        assertEquals("\"1000-7919\"", PrimeETag.of(1_000, 7_919));
+    }
+
+    @Test
+    void matchesOnlyTheTagOfTheAnswer() {
+        assertTrue(PrimeETag.matches("\"1000-7919\"", 1_000, 7_919));
+        assertTrue(PrimeETag.matches("\"10-29\" , W/\"1000-7919\"", 1_000, 7_919));
+        assertFalse(PrimeETag.matches("\"10000-104729\"", 1_000, 7_919));
+        assertFalse(PrimeETag.matches("\"100-541\"", 1_000, 7_919));
+        assertFalse(PrimeETag.matches(null, 1_000, 7_919));
+    }
+
+    @Test
+    void ignoresWildcardsAndForeignTags() {
+        assertFalse(PrimeETag.matches("*", 1_000, 7_919));
+        assertFalse(PrimeETag.matches("\"1000-\"", 1_000, 7_919));
+        assertFalse(PrimeETag.matches("\"1000-abc\"", 1_000, 7_919));
+        assertFalse(PrimeETag.matches("1000-7919", 1_000, 7_919));
+    }
+
+    @Test
+    void rejectsTagsWhosePrimeIsNotTheAnswer() {
+        assertFalse(PrimeETag.matches("\"5-12\"", 5, 11));
+        // a neighbouring prime is plausible for the position, but it is not the answer
+        assertFalse(PrimeETag.matches("\"1000-7927\"", 1_000, 7_919));
+        assertFalse(PrimeETag.matches("\"10-31\"", 10, 29));
+    }
+}
@@ -0,0 +1,88 @@
+package ereh.won.otbackend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reference decoder for {@link PrimeGapEncoding} bodies, kept next to the tests as the executable
+ * description of the format for client authors.
+ */
+public final class PrimeGapDecoder {
+    private final byte[] body;
+    private int offset;
+
+    private PrimeGapDecoder(byte[] body, byte kind) {
+        if (body.length < PrimeGapEncoding.HEADER_BYTES || body[0] != 'P' || body[1] != 'G') {
+            throw new IllegalArgumentException("Not a gap-encoded prime body");
+        }
+        if (body[2] != PrimeGapEncoding.VERSION || body[3] != kind) {
+            throw new IllegalArgumentException("Unsupported version " + body[2] + " or kind " + (char) body[3]);
+        }
+        this.body = body;
+        this.offset = PrimeGapEncoding.HEADER_BYTES;
+    }
+
+    public record Range(long firstPosition, long[] primes) {
+    }
+
+    public static Range decodeRange(byte[] body) {
+        PrimeGapDecoder decoder = new PrimeGapDecoder(body, PrimeGapEncoding.RANGE);
+        long firstPosition = decoder.varint();
+        long[] primes = new long[64];
+        int count = 0;
+        long prime = 0;
+        while (decoder.offset < body.length) {
+            prime += decoder.varint();
+            if (count == primes.length) {
+                primes = Arrays.copyOf(primes, count * 2);
+            }
+            primes[count++] = prime;
+        }
+        return new Range(firstPosition, Arrays.copyOf(primes, count));
+    }
+
+    /** Decodes a batch body; failed results carry their error code and no message. */
+    public static List<PrimeBatchResult> decodeBatch(byte[] body) {
+        PrimeGapDecoder decoder = new PrimeGapDecoder(body, PrimeGapEncoding.BATCH);
+        long count = decoder.varint();
+        List<PrimeBatchResult> results = new ArrayList<>();
+        long position = 0;
+        long prime = 0;
+        for (long i = 0; i < count; i++) {
+            position += unzigzag(decoder.varint());
+            long tag = decoder.varint();
+            if (tag == PrimeGapEncoding.INVALID_POSITION_TAG) {
+                results.add(PrimeBatchResult.failed(position, "INVALID_PRIME_POSITION", null));
+            } else if (tag == PrimeGapEncoding.UNAVAILABLE_TAG) {
+                results.add(PrimeBatchResult.failed(position, "PRIME_COMPUTATION_UNAVAILABLE", null));
+            } else {
+                prime += unzigzag(tag - PrimeGapEncoding.PRIME_TAG_OFFSET);
+                results.add(PrimeBatchResult.found(position, prime));
+            }
+        }
+        if (decoder.offset != body.length) {
+            throw new IllegalArgumentException("Trailing bytes after " + count + " results");
+        }
+        return results;
+    }
+
+    private long varint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (offset >= body.length) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            byte next = body[offset++];
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint longer than 64 bits");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
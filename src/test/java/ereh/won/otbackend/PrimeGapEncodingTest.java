@@ -0,0 +1,79 @@
+package ereh.won.otbackend;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimeGapEncodingTest {
+
+    @Test
+    void varintsUseSevenBitsPerByte() {
+        byte[] buffer = new byte[PrimeGapEncoding.MAX_VARINT_BYTES];
+
+        assertEquals(1, PrimeGapEncoding.putVarint(buffer, 0, 127));
+        assertEquals(2, PrimeGapEncoding.putVarint(buffer, 0, 128));
+        assertArrayEquals(new byte[]{(byte) 0x80, 0x01}, Arrays.copyOf(buffer, 2));
+        assertEquals(PrimeGapEncoding.MAX_VARINT_BYTES, PrimeGapEncoding.putVarint(buffer, 0, -1L));
+    }
+
+    @Test
+    void zigzagKeepsSmallNegativeDeltasShort() {
+        assertEquals(0, PrimeGapEncoding.zigzag(0));
+        assertEquals(1, PrimeGapEncoding.zigzag(-1));
+        assertEquals(2, PrimeGapEncoding.zigzag(1));
+        assertEquals(-1L, PrimeGapEncoding.zigzag(Long.MIN_VALUE));
+    }
+
+    @Test
+    void batchConverterRoundTripsThroughTheReferenceDecoder() throws Exception {
+        List<PrimeBatchResult> results = List.of(
+                PrimeBatchResult.found(1_000, 7_919),
+                PrimeBatchResult.found(10, 29),
+                PrimeBatchResult.failed(0, "INVALID_PRIME_POSITION", "Prime position must be greater than zero"),
+                PrimeBatchResult.failed(11, "PRIME_COMPUTATION_UNAVAILABLE", "engine failed"),
+                PrimeBatchResult.found(1_000_000_000_000L, 29_996_224_275_833L));
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        new PrimeBatchVarintConverter().write(new PrimeBatchResponse(results), PrimeGapEncoding.MEDIA_TYPE, message);
+
+        assertEquals(PrimeGapEncoding.MEDIA_TYPE, message.getHeaders().getContentType());
+        assertEquals(List.of(
+                PrimeBatchResult.found(1_000, 7_919),
+                PrimeBatchResult.found(10, 29),
+                PrimeBatchResult.failed(0, "INVALID_PRIME_POSITION", null),
+                PrimeBatchResult.failed(11, "PRIME_COMPUTATION_UNAVAILABLE", null),
+                PrimeBatchResult.found(1_000_000_000_000L, 29_996_224_275_833L)),
+                PrimeGapDecoder.decodeBatch(message.getBodyAsBytes()));
+    }
+
+    @Test
+    void batchConverterOnlyWritesBatchResponses() {
+        PrimeBatchVarintConverter converter = new PrimeBatchVarintConverter();
+
+        assertTrue(converter.canWrite(PrimeBatchResponse.class, PrimeGapEncoding.MEDIA_TYPE));
+        assertFalse(converter.canWrite(PrimeBatchResponse.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(String.class, PrimeGapEncoding.MEDIA_TYPE));
+        assertFalse(converter.canRead(PrimeBatchResponse.class, PrimeGapEncoding.MEDIA_TYPE));
+    }
+
+    @Test
+    void decoderRejectsForeignBodies() {
+        byte[] text = "2\n3\n5\n".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IllegalArgumentException.class, () -> PrimeGapDecoder.decodeRange(text));
+
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        batch.writeBytes(new byte[]{'P', 'G', PrimeGapEncoding.VERSION, PrimeGapEncoding.BATCH});
+        assertThrows(IllegalArgumentException.class, () -> PrimeGapDecoder.decodeRange(batch.toByteArray()));
+    }
+}
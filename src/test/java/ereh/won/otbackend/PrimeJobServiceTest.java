@@ -0,0 +1,259 @@
+package ereh.won.otbackend;
+
+import ereh.won.otbackend.cache.CacheMetrics;
+import ereh.won.otbackend.cache.InMemoryPrimeCache;
+import ereh.won.otbackend.cache.PrimeCache;
+import ereh.won.otbackend.cache.PrimeCacheKey;
+import ereh.won.otbackend.prime.PrimeComputeProperties;
+import ereh.won.otbackend.prime.PrimeEngine;
+import ereh.won.otbackend.prime.PrimeTable;
+import ereh.won.otbackend.prime.SievePrimeEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PrimeJobServiceTest {
+
+    @Mock
+    private CacheMetrics cacheMetrics;
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    private final PrimeCache cache = new InMemoryPrimeCache() {
+        // holds the write-back of 20_000_000 so a test can look at the job after its computation
+        @Override
+        public void putPrime(long position, long prime) {
+            if (position == 20_000_000) {
+                computing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.putPrime(position, prime);
+        }
+    };
+    private final CountDownLatch computing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PrimeJobService jobs;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (jobs != null) {
+            jobs.close();
+        }
+    }
+
+    @Test
+    void cheapPositionsAreAnsweredInline() {
+        jobs = service(new SievePrimeEngine(), 1, 1);
+
+        PrimeJobStatus status = jobs.submit(1_000);
+
+        assertNull(status.id());
+        assertEquals(PrimeJobStatus.State.SUCCEEDED, status.state());
+        assertEquals(7_919L, status.prime());
+        assertEquals(7_919, cache.get(new PrimeCacheKey(1_000)).orElseThrow());
+        verify(serviceMetrics).recordJob("inline");
+    }
+
+    @Test
+    void cachedPositionsAreAnsweredWithoutEstimating() {
+        PrimeEngine engine = mock(PrimeEngine.class);
+        cache.put(new PrimeCacheKey(1_000), 7_919);
+        jobs = service(engine, 1, 1);
+
+        PrimeJobStatus status = jobs.submit(1_000);
+
+        assertEquals(7_919L, status.prime());
+        verify(engine, never()).estimateCost(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void expensivePositionsRunInTheBackgroundAndLandInTheCache() throws InterruptedException {
+        jobs = service(blockingEngine(), 1, 1);
+
+        PrimeJobStatus accepted = jobs.submit(1_000);
+        assertNotNull(accepted.id());
+        assertEquals(PrimeJobStatus.State.QUEUED, accepted.state());
+        assertEquals(PrimeJobStatus.State.RUNNING, awaitState(accepted.id(), PrimeJobStatus.State.RUNNING).state());
+
+        release.countDown();
+
+        PrimeJobStatus finished = awaitState(accepted.id(), PrimeJobStatus.State.SUCCEEDED);
+        assertEquals(7_919L, finished.prime());
+        assertEquals(1.0, finished.progress());
+        assertEquals(7_919, cache.get(new PrimeCacheKey(1_000)).orElseThrow());
+        verify(serviceMetrics).recordJob("accepted");
+        verify(serviceMetrics).recordJob("succeeded");
+    }
+
+    @Test
+    void primeCountingJobReportsProgress() throws InterruptedException {
+        // a table this small leaves 20_000_000 beyond sieving distance, so the job counts primes
+        jobs = service(new SievePrimeEngine(new PrimeTable(1_000)), 1, 1);
+
+        String id = jobs.submit(20_000_000).id();
+        assertTrue(computing.await(30, TimeUnit.SECONDS));
+
+        PrimeJobStatus running = jobs.status(id).orElseThrow();
+        assertEquals(PrimeJobStatus.State.RUNNING, running.state());
+        assertTrue(running.progress() > 0.9 && running.progress() < 1.0, "progress was " + running.progress());
+
+        release.countDown();
+        assertEquals(373_587_883L, awaitState(id, PrimeJobStatus.State.SUCCEEDED).prime());
+    }
+
+    @Test
+    void fullQueueIsRefusedInsteadOfBuffered() throws InterruptedException {
+        jobs = service(blockingEngine(), 1, 1);
+
+        jobs.submit(1_000);
+        assertTrue(computing.await(5, TimeUnit.SECONDS));
+        jobs.submit(1_001);
+
+        assertThrows(ComputationUnavailableException.class, () -> jobs.submit(1_002));
+        verify(serviceMetrics).recordJob("rejected");
+    }
+
+    @Test
+    void failedComputationIsReportedOnTheJob() throws InterruptedException {
+        PrimeEngine engine = mock(PrimeEngine.class);
+        when(engine.estimateCost(anyLong(), anyLong(), anyLong())).thenReturn(Long.MAX_VALUE);
+        when(engine.nthPrimeAfter(anyLong(), anyLong(), anyLong())).thenThrow(new IllegalStateException("sieve failed"));
+        jobs = service(engine, 1, 1);
+
+        String id = jobs.submit(1_000).id();
+
+        PrimeJobStatus failed = awaitState(id, PrimeJobStatus.State.FAILED);
+        assertNotNull(failed.error());
+        assertNull(failed.prime());
+        verify(serviceMetrics).recordJob("failed");
+    }
+
+    @Test
+    void jobGivesUpWhenTheComputeBudgetStaysSpent() throws InterruptedException {
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 100, 0, Duration.ZERO, Duration.ZERO);
+        MissBatcher missBatcher = new MissBatcher(new SievePrimeEngine(new PrimeTable(1_000)), cache, cacheMetrics,
+                serviceMetrics, admission, Duration.ZERO, 1);
+        PrimesService primesService = new PrimesService(serviceMetrics, cache, cacheMetrics,
+                new InFlightComputations(serviceMetrics, Duration.ofSeconds(1)), missBatcher);
+        PrimeComputeProperties.Jobs properties = new PrimeComputeProperties.Jobs();
+        properties.setCostThreshold(0);
+        jobs = new PrimeJobService(primesService, missBatcher, new SievePrimeEngine(), cache, cacheMetrics,
+                serviceMetrics, properties);
+
+        try (ComputeAdmission.Permit held = admission.admit(1, 100)) {
+            String id = jobs.submit(2_000).id();
+
+            assertNotNull(awaitState(id, PrimeJobStatus.State.FAILED).error());
+        }
+        verify(serviceMetrics, times(60)).recordAdmissionRejected("queue_full");
+    }
+
+    @Test
+    void jobsComputeOutsideTheBatchWindow() throws InterruptedException {
+        MissBatcher missBatcher = new MissBatcher(new SievePrimeEngine(), cache, cacheMetrics, serviceMetrics,
+                Duration.ofMinutes(1), 10);
+        PrimesService primesService = new PrimesService(serviceMetrics, cache, cacheMetrics,
+                new InFlightComputations(serviceMetrics, Duration.ofSeconds(1)), missBatcher);
+        PrimeComputeProperties.Jobs properties = new PrimeComputeProperties.Jobs();
+        properties.setCostThreshold(0);
+        jobs = new PrimeJobService(primesService, missBatcher, new SievePrimeEngine(), cache, cacheMetrics,
+                serviceMetrics, properties);
+
+        String id = jobs.submit(2_000).id();
+
+        assertEquals(17_389L, awaitState(id, PrimeJobStatus.State.SUCCEEDED).prime());
+    }
+
+    @Test
+    void jobsDoNotWaitOnARequestsComputation() throws Exception {
+        PrimeEngine engine = blockingEngine();
+        MissBatcher missBatcher = MissBatcher.unbatched(engine, cache, cacheMetrics, serviceMetrics);
+        PrimesService primesService = new PrimesService(serviceMetrics, cache, cacheMetrics,
+                new InFlightComputations(serviceMetrics, Duration.ofMillis(50)), missBatcher);
+        PrimeComputeProperties.Jobs properties = new PrimeComputeProperties.Jobs();
+        properties.setCostThreshold(0);
+        jobs = new PrimeJobService(primesService, missBatcher, engine, cache, cacheMetrics, serviceMetrics,
+                properties);
+        CompletableFuture<Long> request = CompletableFuture.supplyAsync(() -> primesService.getPrime(1_000));
+        assertTrue(computing.await(5, TimeUnit.SECONDS));
+
+        String id = jobs.submit(1_000).id();
+        Thread.sleep(200);
+
+        assertEquals(PrimeJobStatus.State.RUNNING, jobs.status(id).orElseThrow().state());
+        release.countDown();
+        assertEquals(7_919L, awaitState(id, PrimeJobStatus.State.SUCCEEDED).prime());
+        assertEquals(7_919L, request.get(5, TimeUnit.SECONDS));
+        verify(serviceMetrics, never()).recordCoalescedWaiter(anyString());
+    }
+
+    @Test
+    void unknownJobsAndInvalidPositionsAreRejected() {
+        jobs = service(mock(PrimeEngine.class), 1, 1);
+
+        assertTrue(jobs.status("missing").isEmpty());
+        assertThrows(InvalidNumberException.class, () -> jobs.submit(0));
+    }
+
+    private PrimeJobService service(PrimeEngine engine, int threads, int queueCapacity) {
+        PrimeComputeProperties.Jobs properties = new PrimeComputeProperties.Jobs();
+        properties.setCostThreshold(1_000_000);
+        properties.setThreads(threads);
+        properties.setQueueCapacity(queueCapacity);
+        MissBatcher missBatcher = MissBatcher.unbatched(engine, cache, cacheMetrics, serviceMetrics);
+        PrimesService primesService = new PrimesService(serviceMetrics, cache, cacheMetrics,
+                new InFlightComputations(serviceMetrics, InFlightComputations.DEFAULT_WAIT_TIMEOUT), missBatcher);
+        return new PrimeJobService(primesService, missBatcher, engine, cache, cacheMetrics, serviceMetrics,
+                properties);
+    }
+
+    // reports every position as expensive and holds each computation until the test releases it
+    private PrimeEngine blockingEngine() {
+        PrimeEngine engine = mock(PrimeEngine.class);
+        when(engine.estimateCost(anyLong(), anyLong(), anyLong())).thenReturn(Long.MAX_VALUE);
+        when(engine.nthPrimeAfter(anyLong(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            computing.countDown();
+            release.await();
+            return new SievePrimeEngine().nthPrime(invocation.getArgument(2));
+        });
+        return engine;
+    }
+
+    private PrimeJobStatus awaitState(String id, PrimeJobStatus.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        PrimeJobStatus status = jobs.status(id).orElseThrow();
+        while (status.state() != state && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            status = jobs.status(id).orElseThrow();
+        }
+        assertEquals(state, status.state());
+        return status;
+    }
+}
@@ -0,0 +1,218 @@
+package ereh.won.otbackend;
+
+import ereh.won.otbackend.prime.PrimeEngine;
+import ereh.won.otbackend.prime.SievePrimeEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PrimeRangeServiceTest {
+
+    @Mock
+    private PrimesService primesService;
+
+    @Mock
+    private ServiceMetrics serviceMetrics;
+
+    private final PrimeEngine engine = new SievePrimeEngine();
+
+    @Test
+    void valueRangeStreamsNdjsonWithPositions() throws IOException {
+        PrimeRangeService service = new PrimeRangeService(engine, primesService, serviceMetrics);
+
+        String body = stream(service, service.plan(7_910, 7_933, PrimeRange.Unit.VALUE, PrimeRangeFormat.NDJSON),
+                PrimeRangeFormat.NDJSON);
+
+        assertEquals("""
+                {"position":1000,"prime":7919}
+                {"position":1001,"prime":7927}
+                {"position":1002,"prime":7933}
+                """, body);
+        verify(serviceMetrics).recordRequest(PrimeRangeService.RANGE_ENDPOINT);
+        verify(serviceMetrics).recordResponseTime(any(), anyDouble());
+    }
+
+    @Test
+    void positionRangeStartsAtTheLookedUpPrimeAndStopsAfterItsCount() throws IOException {
+        when(primesService.getPrime(4)).thenReturn(7L);
+        PrimeRangeService service = new PrimeRangeService(engine, primesService, serviceMetrics);
+
+        String body = stream(service, service.plan(4, 8, PrimeRange.Unit.POSITION, PrimeRangeFormat.TEXT),
+                PrimeRangeFormat.TEXT);
+
+        assertEquals("7\n11\n13\n17\n19\n", body);
+    }
+
+    @Test
+    void largeRangesAreWrittenInBufferedChunks() throws IOException {
+        PrimeRangeService service = new PrimeRangeService(engine, primesService, serviceMetrics);
+        AtomicLong writes = new AtomicLong();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream counting = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writes.incrementAndGet();
+                bytes.write(b, off, len);
+            }
+        };
+
+        service.write(service.plan(0, 10_000_000, PrimeRange.Unit.VALUE, PrimeRangeFormat.TEXT), PrimeRangeFormat.TEXT,
+                counting);
+
+        String[] lines = bytes.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(664_579, lines.length);
+        assertEquals("9999991", lines[lines.length - 1]);
+        assertTrue(writes.get() < lines.length / 100, "primes should be written a buffer at a time");
+    }
+
+    @Test
+    void binaryRangeIsAnOrderOfMagnitudeSmallerThanNdjson() throws IOException {
+        PrimeRangeService service = new PrimeRangeService(engine, primesService, serviceMetrics);
+        PrimeRange range = service.plan(1_000_000, 3_000_000, PrimeRange.Unit.VALUE, PrimeRangeFormat.BINARY);
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+
+        service.write(range, PrimeRangeFormat.BINARY, binary);
+        String ndjson = stream(service, range, PrimeRangeFormat.NDJSON);
+
+        PrimeGapDecoder.Range decoded = PrimeGapDecoder.decodeRange(binary.toByteArray());
+        assertEquals(78_499, decoded.firstPosition());
+        assertEquals(1_000_003, decoded.primes()[0]);
+        assertEquals(2_999_999, decoded.primes()[decoded.primes().length - 1]);
+        assertEquals(ndjson.lines().count(), decoded.primes().length);
+        assertTrue(binary.size() * 10 < ndjson.length(), binary.size() + " bytes against " + ndjson.length());
+    }
+
+    @Test
+    void clientDisconnectStopsTheGenerator() {
+        PrimeEngine countingEngine = mock(PrimeEngine.class);
+        AtomicLong generated = new AtomicLong();
+        doAnswer(invocation -> {
+            for (long prime = 3; ; prime += 2) {
+                generated.incrementAndGet();
+                if (!invocation.<LongPredicate>getArgument(2).test(prime)) {
+                    return null;
+                }
+            }
+        }).when(countingEngine).primesInRange(anyLong(), anyLong(), any());
+        PrimeRangeService service = new PrimeRangeService(countingEngine, primesService, serviceMetrics);
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class, () -> service.write(new PrimeRange(0, 1_000_000_000, Long.MAX_VALUE, 1),
+                PrimeRangeFormat.TEXT, disconnected));
+
+        assertTrue(generated.get() < 10_000, "generation should stop at the first failed write");
+        verify(serviceMetrics).recordError(PrimeRangeService.RANGE_ENDPOINT, "client_disconnected");
+        verify(serviceMetrics, never()).recordResponseTime(any(), anyDouble());
+    }
+
+    @Test
+    void rejectsInvalidAndOversizedRanges() {
+        PrimeRangeService service = new PrimeRangeService(engine, primesService, serviceMetrics);
+        PrimeRangeFormat format = PrimeRangeFormat.NDJSON;
+
+        assertThrows(InvalidRangeException.class, () -> service.plan(10, 9, PrimeRange.Unit.VALUE, format));
+        assertThrows(InvalidRangeException.class, () -> service.plan(-1, 9, PrimeRange.Unit.VALUE, format));
+        assertThrows(InvalidRangeException.class,
+                () -> service.plan(0, PrimeRangeService.MAX_RANGE_VALUES, PrimeRange.Unit.VALUE, format));
+        assertThrows(InvalidRangeException.class, () -> service.plan(0, 5, PrimeRange.Unit.POSITION, format));
+        assertThrows(InvalidRangeException.class,
+                () -> service.plan(1, PrimeRangeService.MAX_RANGE_POSITIONS + 1, PrimeRange.Unit.POSITION, format));
+        verify(primesService, never()).getPrime(anyLong());
+    }
+
+    @Test
+    void valueRangesNeedingPositionsAreBoundedAndAdmitted() {
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 100, 0, Duration.ZERO, Duration.ofSeconds(1));
+        PrimeRangeService service = new PrimeRangeService(engine, primesService, serviceMetrics, admission);
+        long high = PrimeRangeService.MAX_COUNTED_VALUE + 1;
+
+        assertThrows(InvalidRangeException.class,
+                () -> service.plan(high, high + 100, PrimeRange.Unit.VALUE, PrimeRangeFormat.NDJSON));
+        assertThrows(InvalidRangeException.class,
+                () -> service.plan(high, high + 100, PrimeRange.Unit.VALUE, PrimeRangeFormat.BINARY));
+        assertEquals(new PrimeRange(high, high + 101, Long.MAX_VALUE, 0),
+                service.plan(high, high + 100, PrimeRange.Unit.VALUE, PrimeRangeFormat.TEXT));
+
+        try (ComputeAdmission.Permit held = admission.admit(1, 100)) {
+            assertThrows(ComputationRejectedException.class,
+                    () -> service.plan(1_000_000, 1_000_100, PrimeRange.Unit.VALUE, PrimeRangeFormat.NDJSON));
+        }
+        assertEquals(78_499, service.plan(1_000_000, 1_000_100, PrimeRange.Unit.VALUE, PrimeRangeFormat.NDJSON)
+                .firstPosition());
+    }
+
+    @Test
+    void streamsAreAdmittedForTheValuesTheySieve() {
+        ComputeAdmission admission = new ComputeAdmission(serviceMetrics, 1_000_000, 0, Duration.ZERO,
+                Duration.ofSeconds(1));
+        PrimeRangeService service = new PrimeRangeService(engine, primesService, serviceMetrics, admission);
+
+        try (ComputeAdmission.Permit permit = service.admit(new PrimeRange(0, 1_000, Long.MAX_VALUE, 0))) {
+            assertEquals(1_000, admission.inUse());
+        }
+        // ten primes from 7 are charged at their average gap, not up to the bound the range ends at
+        try (ComputeAdmission.Permit permit = service.admit(new PrimeRange(7, 1_000_000, 10, 4))) {
+            assertEquals(138, admission.inUse());
+        }
+        assertEquals(0, admission.inUse());
+
+        try (ComputeAdmission.Permit held = admission.admit(1, 1_000_000)) {
+            assertThrows(ComputationRejectedException.class,
+                    () -> service.admit(new PrimeRange(0, 1_000, Long.MAX_VALUE, 0)));
+        }
+    }
+
+    @Test
+    void formatFollowsTheMostPreferredAcceptedType() {
+        assertEquals(PrimeRangeFormat.NDJSON, PrimeRangeFormat.negotiate(null));
+        assertEquals(PrimeRangeFormat.NDJSON, PrimeRangeFormat.negotiate("*/*"));
+        assertEquals(PrimeRangeFormat.TEXT, PrimeRangeFormat.negotiate("text/plain, application/x-ndjson"));
+        assertEquals(PrimeRangeFormat.NDJSON, PrimeRangeFormat.negotiate("text/plain;q=0.1, application/x-ndjson"));
+        assertEquals(PrimeRangeFormat.TEXT, PrimeRangeFormat.negotiate("application/x-ndjson;q=0.9, text/*"));
+        assertEquals(PrimeRangeFormat.TEXT, PrimeRangeFormat.negotiate("*/*;q=0.5, text/plain"));
+        assertEquals(PrimeRangeFormat.TEXT, PrimeRangeFormat.negotiate("application/x-ndjson;q=0, text/plain;q=0.2"));
+        assertEquals(PrimeRangeFormat.BINARY,
+                PrimeRangeFormat.negotiate("text/plain;q=0.5, " + PrimeGapEncoding.MEDIA_TYPE_VALUE));
+        assertEquals(PrimeRangeFormat.NDJSON, PrimeRangeFormat.negotiate("not a media type"));
+        assertEquals(PrimeRangeFormat.BINARY, PrimeRangeFormat.negotiate(PrimeGapEncoding.MEDIA_TYPE_VALUE));
+    }
+
+    private static String stream(PrimeRangeService service, PrimeRange range, PrimeRangeFormat format)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.write(range, format, out);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+}
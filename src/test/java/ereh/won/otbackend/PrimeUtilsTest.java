@@ -1,6 +1,8 @@
 package ereh.won.otbackend;
 
+import ereh.won.otbackend.prime.SievePrimeEngine;
 import lombok.val;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -14,33 +16,61 @@ import static org.junit.jupiter.api.Assertions.*;
 
 class PrimeUtilsTest {
 
+    @BeforeAll
+    static void configureEngine() {
+        PrimeUtils.useEngine(new SievePrimeEngine());
+    }
+
     @ParameterizedTest
     @MethodSource("indexedPrimes")
-    void testCalculateNthPrime(int position, int expectedValue) {
+    void testCalculateNthPrime(long position, long expectedValue) {
         val result = calculateNthPrime(position);
         assertEquals(expectedValue, result);
     }
 
     private static Stream<Arguments> indexedPrimes() {
         return Stream.of(
-            Arguments.of(5, 11),
-            Arguments.of(6, 13),
-            Arguments.of(7, 17),
-            Arguments.of(10, 29),
-            Arguments.of(30, 113),
-            Arguments.of(50, 229)
+            Arguments.of(1L, 2L),
+            Arguments.of(2L, 3L),
+            Arguments.of(5L, 11L),
+            Arguments.of(6L, 13L),
+            Arguments.of(7L, 17L),
+            Arguments.of(10L, 29L),
+            Arguments.of(30L, 113L),
+            Arguments.of(50L, 229L),
+            Arguments.of(1_000L, 7_919L),
+            Arguments.of(1_000_000L, 15_485_863L),
+            Arguments.of(200_000_000L, 4_222_234_741L)
         );
     }
 
     @ParameterizedTest
-    @ValueSource(ints = {13, 17, 19, 23, 29, 31})
+    @ValueSource(longs = {0, -1, PrimeUtils.MAX_POSITION + 1})
+    void testCalculateNthPrimeRejectsUnsupportedPositions(long position) {
+        assertThrows(InvalidNumberException.class, () -> calculateNthPrime(position));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, -1, Long.MIN_VALUE})
+    void testIsPrimeRejectsNonPositiveCandidates(long candidate) {
+        assertThrows(InvalidNumberException.class, () -> isPrime(candidate));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 13, 17, 19, 23, 29, 31, Integer.MAX_VALUE})
     void testIsPrime(int candidate) {
         assertTrue(isPrime(candidate));
     }
 
+    @ParameterizedTest
+    @ValueSource(longs = {4_222_234_741L, 1_000_000_000_039L})
+    void testIsPrimeBeyondIntRange(long candidate) {
+        assertTrue(isPrime(candidate));
+    }
+
     @ParameterizedTest
     @ValueSource(ints = {12*13, 45, 69, 17*19*31})
     void testIsNotPrime(int candidate) {
         assertFalse(isPrime(candidate));
     }
-}
\ No newline at end of file
+}
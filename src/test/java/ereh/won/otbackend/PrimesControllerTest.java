@@ -2,12 +2,24 @@ package ereh.won.otbackend;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -16,17 +28,161 @@ class PrimesControllerTest {
 	@Mock
 	private PrimesService primesService;
 
+	@Mock
+	private PrimeRangeService primeRangeService;
+
+	@Mock
+	private PrimeJobService primeJobService;
+
+	@Mock
+	private ServiceMetrics serviceMetrics;
+
 	@InjectMocks
 	private PrimesController primesController;
 
 	@Test
 	void getPrimeReturnsOkResponseWithServiceResult() {
-		when(primesService.getPrime(10)).thenReturn(29);
+		when(primesService.getPrime(10)).thenReturn(29L);
 
-		var response = primesController.getPrime(10);
+		var response = primesController.getPrime(10, null);
 
 		assertEquals(HttpStatusCode.valueOf(200), response.getStatusCode());
 		assertEquals(29, response.getBody());
 		verify(primesService).getPrime(10);
 	}
+
+	@Test
+	void getPrimeMarksAnswersImmutableWithAStrongETag() {
+		when(primesService.getPrime(10)).thenReturn(29L);
+
+		var response = primesController.getPrime(10, "\"11-31\"");
+
+		assertEquals("\"10-29\"", response.getHeaders().getETag());
+		assertEquals("max-age=31536000, public, immutable", response.getHeaders().getCacheControl());
+	}
+
+	@Test
+	void ifNoneMatchNamingTheAnswerIsNotModified() {
+		when(primesService.getPrime(10)).thenReturn(29L);
+
+		var response = primesController.getPrime(10, "\"9-23\", W/\"10-29\"");
+
+		assertEquals(HttpStatusCode.valueOf(304), response.getStatusCode());
+		assertEquals("\"10-29\"", response.getHeaders().getETag());
+		assertEquals("max-age=31536000, public, immutable", response.getHeaders().getCacheControl());
+		verify(serviceMetrics).recordNotModified(PrimesService.GET_PRIME_ENDPOINT);
+	}
+
+	@Test
+	void invalidPositionIsRejectedEvenWithAMatchingLookingTag() {
+		when(primesService.getPrime(0)).thenThrow(new InvalidNumberException(0));
+
+		assertThrows(InvalidNumberException.class, () -> primesController.getPrime(0, "\"0-5\""));
+		verify(serviceMetrics, never()).recordNotModified(PrimesService.GET_PRIME_ENDPOINT);
+	}
+
+	@Test
+	void forgedTagIsAnsweredWithTheRealPrime() {
+		when(primesService.getPrime(5)).thenReturn(11L);
+
+		var response = primesController.getPrime(5, "\"5-12\"");
+
+		assertEquals(HttpStatusCode.valueOf(200), response.getStatusCode());
+		assertEquals("\"5-11\"", response.getHeaders().getETag());
+		verify(serviceMetrics, never()).recordNotModified(PrimesService.GET_PRIME_ENDPOINT);
+	}
+
+	@Test
+	void plausibleButWrongPrimeIsAnsweredWithTheRealPrime() {
+		when(primesService.getPrime(10)).thenReturn(29L);
+
+		var response = primesController.getPrime(10, "\"10-31\"");
+
+		assertEquals(HttpStatusCode.valueOf(200), response.getStatusCode());
+		assertEquals(29, response.getBody());
+		assertEquals("\"10-29\"", response.getHeaders().getETag());
+		verify(serviceMetrics, never()).recordNotModified(PrimesService.GET_PRIME_ENDPOINT);
+	}
+
+	@Test
+	void getPrimesWrapsServiceResultsInBatchResponse() {
+		long[] positions = {10, 1};
+		List<PrimeBatchResult> results = List.of(PrimeBatchResult.found(10, 29), PrimeBatchResult.found(1, 2));
+		when(primesService.getPrimes(positions)).thenReturn(results);
+
+		var response = primesController.getPrimes(new PrimeBatchRequest(positions));
+
+		assertEquals(HttpStatusCode.valueOf(200), response.getStatusCode());
+		assertEquals(new PrimeBatchResponse(results), response.getBody());
+	}
+
+	@Test
+	void getRangeStreamsInTheNegotiatedFormat() throws Exception {
+		PrimeRange range = new PrimeRange(7, 20, 5, 4);
+		when(primeRangeService.plan(4, 8, PrimeRange.Unit.POSITION, PrimeRangeFormat.TEXT)).thenReturn(range);
+
+		var response = primesController.getRange(4, 8, PrimeRange.Unit.POSITION, "text/plain");
+
+		assertEquals(HttpStatusCode.valueOf(200), response.getStatusCode());
+		assertEquals(MediaType.TEXT_PLAIN, response.getHeaders().getContentType());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		response.getBody().writeTo(out);
+		verify(primeRangeService).write(range, PrimeRangeFormat.TEXT, out);
+	}
+
+	@Test
+	void getRangeHoldsItsAdmissionUntilTheStreamEnds() throws Exception {
+		PrimeRange range = new PrimeRange(7, 20, 5, 4);
+		ComputeAdmission.Permit permit = mock(ComputeAdmission.Permit.class);
+		when(primeRangeService.plan(4, 8, PrimeRange.Unit.POSITION, PrimeRangeFormat.TEXT)).thenReturn(range);
+		when(primeRangeService.admit(range)).thenReturn(permit);
+
+		var response = primesController.getRange(4, 8, PrimeRange.Unit.POSITION, "text/plain");
+		verify(permit, never()).close();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		response.getBody().writeTo(out);
+
+		InOrder order = inOrder(primeRangeService, permit);
+		order.verify(primeRangeService).write(range, PrimeRangeFormat.TEXT, out);
+		order.verify(permit).close();
+	}
+
+	@Test
+	void getRangeIsRefusedBeforeStreamingWhenTheBudgetIsSpent() {
+		PrimeRange range = new PrimeRange(0, 1_000, Long.MAX_VALUE, 0);
+		when(primeRangeService.plan(0, 999, PrimeRange.Unit.VALUE, PrimeRangeFormat.NDJSON)).thenReturn(range);
+		when(primeRangeService.admit(range)).thenThrow(new ComputationRejectedException(0, "busy", Duration.ofSeconds(1)));
+
+		assertThrows(ComputationRejectedException.class,
+				() -> primesController.getRange(0, 999, PrimeRange.Unit.VALUE, null));
+	}
+
+	@Test
+	void submitJobAnswersCheapPositionsDirectly() {
+		when(primeJobService.submit(10)).thenReturn(PrimeJobStatus.inline(10, 29));
+
+		var response = primesController.submitJob(new PrimeJobRequest(10));
+
+		assertEquals(HttpStatusCode.valueOf(200), response.getStatusCode());
+		assertEquals(29L, response.getBody().prime());
+	}
+
+	@Test
+	void submitJobAcceptsExpensivePositionsWithTheStatusLocation() {
+		PrimeJobStatus queued = new PrimeJobStatus("abc", 10, PrimeJobStatus.State.QUEUED, 0, null, null);
+		when(primeJobService.submit(10)).thenReturn(queued);
+
+		var response = primesController.submitJob(new PrimeJobRequest(10));
+
+		assertEquals(HttpStatusCode.valueOf(202), response.getStatusCode());
+		assertEquals(URI.create("/api/primes/jobs/abc"), response.getHeaders().getLocation());
+		assertEquals(queued, response.getBody());
+	}
+
+	@Test
+	void getJobThrowsForUnknownIds() {
+		when(primeJobService.status("missing")).thenReturn(Optional.empty());
+
+		assertThrows(JobNotFoundException.class, () -> primesController.getJob("missing"));
+	}
 }
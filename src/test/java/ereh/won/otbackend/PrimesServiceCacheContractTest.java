@@ -4,16 +4,39 @@ import ereh.won.otbackend.cache.CacheMetrics;
 import ereh.won.otbackend.cache.InMemoryPrimeCache;
 import ereh.won.otbackend.cache.PrimeCache;
 import ereh.won.otbackend.cache.PrimeCacheKey;
+import ereh.won.otbackend.prime.PrimeEngine;
+import ereh.won.otbackend.prime.SievePrimeEngine;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class PrimesServiceCacheContractTest {
@@ -27,9 +50,9 @@ class PrimesServiceCacheContractTest {
 	@Test
 	void missPathComputesStoresAndReturnsPrime() {
 		PrimeCache primeCache = new InMemoryPrimeCache();
-		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics);
+		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics, new SievePrimeEngine());
 
-		int result = primesService.getPrime(10);
+		long result = primesService.getPrime(10);
 
 		assertEquals(29, result);
 		assertEquals(29, primeCache.get(new PrimeCacheKey(10)).orElseThrow());
@@ -41,9 +64,9 @@ class PrimesServiceCacheContractTest {
 		PrimeCache primeCache = new InMemoryPrimeCache();
 		PrimeCacheKey key = new PrimeCacheKey(10);
 		primeCache.put(key, 29);
-		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics);
+		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics, new SievePrimeEngine());
 
-		int result = primesService.getPrime(10);
+		long result = primesService.getPrime(10);
 
 		assertEquals(29, result);
 		assertTrue(primeCache.get(key).isPresent());
@@ -53,11 +76,139 @@ class PrimesServiceCacheContractTest {
 	@Test
 	void invalidPositionThrowsWithoutWritingCache() {
 		PrimeCache primeCache = new InMemoryPrimeCache();
-		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics);
+		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics, new SievePrimeEngine());
 
 		assertThrows(InvalidNumberException.class, () -> primesService.getPrime(0));
 		assertTrue(primeCache.get(new PrimeCacheKey(1)).isEmpty());
 		verify(serviceMetrics).recordError(PrimesService.GET_PRIME_ENDPOINT, "invalid_input");
 		verify(serviceMetrics, never()).recordRequest(PrimesService.GET_PRIME_ENDPOINT);
 	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {-1, PrimeUtils.MAX_POSITION + 1})
+	void positionsOutsideTheSupportedRangeAreRejected(long position) {
+		PrimesService primesService = new PrimesService(serviceMetrics, new InMemoryPrimeCache(), cacheMetrics,
+				new SievePrimeEngine());
+
+		assertThrows(InvalidNumberException.class, () -> primesService.getPrime(position));
+	}
+
+	@Test
+	void concurrentMissesForSamePositionComputeOnce() throws Exception {
+		PrimeCache primeCache = new InMemoryPrimeCache();
+		AtomicInteger computations = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		PrimeEngine slowEngine = mock(PrimeEngine.class);
+		when(slowEngine.nthPrimeAfter(anyLong(), anyLong(), eq(1_000L))).thenAnswer(invocation -> {
+			computations.incrementAndGet();
+			release.await();
+			return 7_919L;
+		});
+		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics, slowEngine);
+
+		int callers = 8;
+		List<Future<Long>> results = new ArrayList<>();
+		try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+			for (int i = 0; i < callers; i++) {
+				results.add(executor.submit(() -> primesService.getPrime(1_000)));
+			}
+			Thread.sleep(200);
+			release.countDown();
+			for (Future<Long> result : results) {
+				assertEquals(7_919, result.get(10, TimeUnit.SECONDS));
+			}
+		}
+
+		assertEquals(1, computations.get(), "a herd of misses should cost one computation");
+		assertEquals(7_919, primeCache.get(new PrimeCacheKey(1_000)).orElseThrow());
+	}
+
+	@Test
+	void batchAnswersInRequestOrderWithOneMultiGetAndOneBulkWrite() {
+		PrimeCache primeCache = spy(new InMemoryPrimeCache());
+		primeCache.put(new PrimeCacheKey(10), 29);
+		PrimeEngine engine = spy(new SievePrimeEngine());
+		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics, engine);
+
+		List<PrimeBatchResult> results = primesService.getPrimes(new long[]{1_000, 10, 1, 1_000});
+
+		assertEquals(List.of(
+				PrimeBatchResult.found(1_000, 7_919),
+				PrimeBatchResult.found(10, 29),
+				PrimeBatchResult.found(1, 2),
+				PrimeBatchResult.found(1_000, 7_919)), results);
+		verify(primeCache, times(1)).getAll(any());
+		verify(primeCache, times(1)).putAll(Map.of(new PrimeCacheKey(1), 2L, new PrimeCacheKey(1_000), 7_919L));
+		verify(engine, times(1)).nthPrimesAfter(anyLong(), anyLong(), eq(new long[]{1, 1_000}));
+		verify(serviceMetrics).recordRequest(PrimesService.BATCH_ENDPOINT);
+	}
+
+	@Test
+	void batchReportsInvalidPositionsWithoutFailingTheRest() {
+		PrimesService primesService = new PrimesService(serviceMetrics, new InMemoryPrimeCache(), cacheMetrics,
+				new SievePrimeEngine());
+
+		List<PrimeBatchResult> results = primesService.getPrimes(new long[]{10, 0});
+
+		assertEquals(PrimeBatchResult.found(10, 29), results.get(0));
+		assertEquals(PrimeBatchResult.failed(0, "INVALID_PRIME_POSITION",
+				"Prime position must be greater than zero. Received: 0"), results.get(1));
+		verify(serviceMetrics).recordError(PrimesService.BATCH_ENDPOINT, "invalid_input");
+	}
+
+	@Test
+	void batchReportsComputationFailuresPerPosition() {
+		PrimeCache primeCache = new InMemoryPrimeCache();
+		primeCache.put(new PrimeCacheKey(10), 29);
+		PrimeEngine failingEngine = mock(PrimeEngine.class);
+		when(failingEngine.nthPrimesAfter(anyLong(), anyLong(), any())).thenThrow(new IllegalStateException("engine failed"));
+		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics, failingEngine);
+
+		List<PrimeBatchResult> results = primesService.getPrimes(new long[]{10, 11});
+
+		assertEquals(List.of(
+				PrimeBatchResult.found(10, 29),
+				PrimeBatchResult.failed(11, "PRIME_COMPUTATION_UNAVAILABLE",
+						"Prime at position 11 is not available: engine failed")), results);
+		verify(serviceMetrics).recordError(PrimesService.BATCH_ENDPOINT, "computation_failed");
+	}
+
+	@Test
+	void batchStillComputesWhenTheMultiGetFails() {
+		PrimeCache primeCache = spy(new InMemoryPrimeCache());
+		doThrow(new RuntimeException("Cache unavailable")).when(primeCache).getAll(any());
+		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics, new SievePrimeEngine());
+
+		assertEquals(List.of(PrimeBatchResult.found(10, 29)), primesService.getPrimes(new long[]{10}));
+		verify(cacheMetrics).record("get_all", "error");
+	}
+
+	@Test
+	void rejectsEmptyAndOversizedBatches() {
+		PrimesService primesService = new PrimesService(serviceMetrics, new InMemoryPrimeCache(), cacheMetrics,
+				new SievePrimeEngine());
+
+		assertThrows(InvalidBatchException.class, () -> primesService.getPrimes(new long[0]));
+		assertThrows(InvalidBatchException.class, () -> primesService.getPrimes(null));
+		assertThrows(InvalidBatchException.class,
+				() -> primesService.getPrimes(new long[PrimesService.MAX_BATCH_POSITIONS + 1]));
+		verify(serviceMetrics, never()).recordRequest(PrimesService.BATCH_ENDPOINT);
+	}
+
+	@Test
+	void rejectsBatchesOfDistantMissesBeforeComputingThem() {
+		PrimeCache primeCache = spy(new InMemoryPrimeCache());
+		PrimeEngine engine = new SievePrimeEngine();
+		MissBatcher missBatcher = new MissBatcher(engine, primeCache, cacheMetrics, serviceMetrics,
+				ComputeAdmission.unlimited(serviceMetrics), 1L << 30, Duration.ZERO, 1);
+		PrimesService primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics,
+				new InFlightComputations(serviceMetrics, Duration.ofSeconds(1)), missBatcher);
+
+		// each position is a prime counting jump of its own, far too long to run on a request thread
+		assertThrows(InvalidBatchException.class,
+				() -> primesService.getPrimes(new long[]{100_000_000_000L, 200_000_000_000L, 300_000_000_000L}));
+
+		verify(primeCache, never()).putAll(any());
+		verify(serviceMetrics).recordError(PrimesService.BATCH_ENDPOINT, "invalid_input");
+	}
 }
@@ -46,7 +46,7 @@ public interface PrimesServiceFailureParityContract {
 		// or we verify the service handles empty Optional correctly
 		
 		// When: Requesting a prime value (position 10 = prime 29)
-		int result = service.getPrime(10);
+		long result = service.getPrime(10);
 
 		// Then: Service returns the correct computed prime
 		assertEquals(29, result, "Service should return correct 10th prime (29)");
@@ -63,7 +63,7 @@ public interface PrimesServiceFailureParityContract {
 		PrimesService service = primesService();
 		
 		// When: Requesting a prime value (position 20 = prime 71)
-		int result = service.getPrime(20);
+		long result = service.getPrime(20);
 
 		// Then: Service returns correct prime regardless of cache write behavior
 		assertEquals(71, result, "Service should return correct 20th prime (71)");
@@ -80,7 +80,7 @@ public interface PrimesServiceFailureParityContract {
 		PrimesService service = primesService();
 		
 		// When: Requesting a prime value (position 30 = prime 113)
-		int result = service.getPrime(30);
+		long result = service.getPrime(30);
 
 		// Then: Service computes and returns correct prime
 		assertEquals(113, result, "Service should return correct 30th prime (113)");
@@ -100,10 +100,10 @@ public interface PrimesServiceFailureParityContract {
 		// Then: No exceptions should propagate - service handles gracefully
 		
 		// Test various positions to ensure consistent behavior
-		int result1 = service.getPrime(1);   // First prime = 2
-		int result2 = service.getPrime(5);   // 5th prime = 11
-		int result3 = service.getPrime(50);  // 50th prime = 229
-		int result4 = service.getPrime(100); // 100th prime = 541
+		long result1 = service.getPrime(1);   // First prime = 2
+		long result2 = service.getPrime(5);   // 5th prime = 11
+		long result3 = service.getPrime(50);  // 50th prime = 229
+		long result4 = service.getPrime(100); // 100th prime = 541
 		
 		assertEquals(2, result1, "Service should return first prime correctly");
 		assertEquals(11, result2, "Service should return 5th prime correctly");
@@ -120,7 +120,7 @@ public interface PrimesServiceFailureParityContract {
 	default void serviceReturnsCorrectPrimeForFirstPosition() {
 		PrimesService service = primesService();
 		
-		int result = service.getPrime(1);
+		long result = service.getPrime(1);
 		assertEquals(2, result, "Service should return first prime (2) correctly");
 	}
 
@@ -133,7 +133,7 @@ public interface PrimesServiceFailureParityContract {
 	default void serviceReturnsCorrectPrimeForLargerPosition() {
 		PrimesService service = primesService();
 		
-		int result = service.getPrime(100);
+		long result = service.getPrime(100);
 		assertEquals(541, result, "Service should return 100th prime (541) correctly");
 	}
 }
@@ -3,6 +3,7 @@ package ereh.won.otbackend;
 import ereh.won.otbackend.cache.CacheMetrics;
 import ereh.won.otbackend.cache.PrimeCache;
 import ereh.won.otbackend.cache.PrimeCacheKey;
+import ereh.won.otbackend.prime.SievePrimeEngine;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,11 +13,11 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.Optional;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 
@@ -36,15 +37,15 @@ class PrimesServiceFailureParityTest {
 
 	@BeforeEach
 	void setUp() {
-		primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics);
+		primesService = new PrimesService(serviceMetrics, primeCache, cacheMetrics, new SievePrimeEngine());
 	}
 
 	@ParameterizedTest(name = "{index}: {0} read failure still returns correct prime")
 	@MethodSource("cacheReadFailureCases")
 	void serviceReturnsComputedPrimeWhenCacheReadThrows(String backend, String message, int position, int expectedPrime) {
-		doThrow(new RuntimeException(message)).when(primeCache).get(any(PrimeCacheKey.class));
+		doThrow(new RuntimeException(message)).when(primeCache).getPrime(anyLong());
 
-		int result = primesService.getPrime(position);
+		long result = primesService.getPrime(position);
 
 		assertEquals(expectedPrime, result, "Service should compute prime when " + backend + " read fails");
 	}
@@ -52,20 +53,20 @@ class PrimesServiceFailureParityTest {
 	@ParameterizedTest(name = "{index}: {0} write failure still returns correct prime")
 	@MethodSource("cacheWriteFailureCases")
 	void serviceReturnsComputedPrimeWhenCacheWriteThrows(String backend, int position, int expectedPrime) {
-		when(primeCache.get(any(PrimeCacheKey.class))).thenReturn(Optional.empty());
+		when(primeCache.getPrime(anyLong())).thenReturn(PrimeCache.ABSENT);
 		doThrow(new RuntimeException(backend + " write unavailable"))
-				.when(primeCache).put(any(PrimeCacheKey.class), any(Integer.class));
+				.when(primeCache).put(any(PrimeCacheKey.class), anyLong());
 
-		int result = primesService.getPrime(position);
+		long result = primesService.getPrime(position);
 
 		assertEquals(expectedPrime, result, "Service should compute prime when " + backend + " write fails");
 	}
 
 	@Test
 	void serviceReturnsComputedPrimeWhenCacheReturnsEmpty() {
-		when(primeCache.get(any(PrimeCacheKey.class))).thenReturn(Optional.empty());
+		when(primeCache.getPrime(anyLong())).thenReturn(PrimeCache.ABSENT);
 
-		int result = primesService.getPrime(30);
+		long result = primesService.getPrime(30);
 
 		assertEquals(113, result);
 	}
@@ -73,28 +74,28 @@ class PrimesServiceFailureParityTest {
 	@Test
 	void serviceNoExceptionPropagatesToCallerWhenBothCacheOperationsThrow() {
 		RuntimeException cacheException = new RuntimeException("Cache unavailable");
-		doThrow(cacheException).when(primeCache).get(any(PrimeCacheKey.class));
-		doThrow(cacheException).when(primeCache).put(any(PrimeCacheKey.class), any(Integer.class));
+		doThrow(cacheException).when(primeCache).getPrime(anyLong());
+		doThrow(cacheException).when(primeCache).put(any(PrimeCacheKey.class), anyLong());
 
-		int result = primesService.getPrime(5);
+		long result = primesService.getPrime(5);
 
 		assertEquals(11, result);
 	}
 
 	@Test
 	void serviceReturnsCorrectPrimeForFirstPosition() {
-		when(primeCache.get(any(PrimeCacheKey.class))).thenReturn(Optional.empty());
+		when(primeCache.getPrime(anyLong())).thenReturn(PrimeCache.ABSENT);
 
-		int result = primesService.getPrime(1);
+		long result = primesService.getPrime(1);
 
 		assertEquals(2, result);
 	}
 
 	@Test
 	void serviceReturnsCorrectPrimeForLargerPosition() {
-		when(primeCache.get(any(PrimeCacheKey.class))).thenReturn(Optional.empty());
+		when(primeCache.getPrime(anyLong())).thenReturn(PrimeCache.ABSENT);
 
-		int result = primesService.getPrime(100);
+		long result = primesService.getPrime(100);
 
 		assertEquals(541, result);
 	}
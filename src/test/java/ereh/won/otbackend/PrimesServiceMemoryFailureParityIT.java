@@ -2,6 +2,7 @@ package ereh.won.otbackend;
 
 import ereh.won.otbackend.cache.CacheMetrics;
 import ereh.won.otbackend.cache.PrimeCache;
+import ereh.won.otbackend.prime.PrimeEngine;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -35,8 +36,11 @@ class PrimesServiceMemoryFailureParityIT implements PrimesServiceFailureParityCo
 	@Autowired
 	private ServiceMetrics serviceMetrics;
 
+	@Autowired
+	private PrimeEngine primeEngine;
+
 	@Override
 	public PrimesService primesService() {
-		return new PrimesService(serviceMetrics, primeCache, cacheMetrics);
+		return new PrimesService(serviceMetrics, primeCache, cacheMetrics, primeEngine);
 	}
 }
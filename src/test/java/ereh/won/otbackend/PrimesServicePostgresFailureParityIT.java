@@ -3,6 +3,7 @@ package ereh.won.otbackend;
 import ereh.won.otbackend.cache.CacheMetrics;
 import ereh.won.otbackend.cache.PostgresPrimeCache;
 import ereh.won.otbackend.cache.PrimeCache;
+import ereh.won.otbackend.prime.PrimeEngine;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -54,6 +55,9 @@ class PrimesServicePostgresFailureParityIT implements PrimesServiceFailureParity
 	@Autowired
 	private ServiceMetrics serviceMetrics;
 
+	@Autowired
+	private PrimeEngine primeEngine;
+
 	@TestConfiguration
 	static class PostgresCacheTestConfig {
 
@@ -90,6 +94,6 @@ class PrimesServicePostgresFailureParityIT implements PrimesServiceFailureParity
 
 	@Override
 	public PrimesService primesService() {
-		return new PrimesService(serviceMetrics, primeCache, cacheMetrics);
+		return new PrimesService(serviceMetrics, primeCache, cacheMetrics, primeEngine);
 	}
 }
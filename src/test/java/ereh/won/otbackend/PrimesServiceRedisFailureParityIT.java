@@ -4,6 +4,7 @@ import ereh.won.otbackend.cache.CacheMetrics;
 import ereh.won.otbackend.cache.PrimeCache;
 import ereh.won.otbackend.cache.PrimeCacheProperties;
 import ereh.won.otbackend.cache.PrimeCacheSelection;
+import ereh.won.otbackend.prime.PrimeEngine;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -58,6 +59,9 @@ class PrimesServiceRedisFailureParityIT implements PrimesServiceFailureParityCon
 	@Autowired
 	private ServiceMetrics serviceMetrics;
 
+	@Autowired
+	private PrimeEngine primeEngine;
+
 	@Autowired
 	private PrimeCacheSelection cacheSelection;
 
@@ -100,10 +104,13 @@ class PrimesServiceRedisFailureParityIT implements PrimesServiceFailureParityCon
 	static void redisProperties(DynamicPropertyRegistry registry) {
 		registry.add("spring.data.redis.host", redis::getHost);
 		registry.add("spring.data.redis.port", () -> redis.getMappedPort(6379));
+		// the backend probe connects with the prime.cache settings, not Spring's
+		registry.add("prime.cache.redis.host", redis::getHost);
+		registry.add("prime.cache.redis.port", () -> redis.getMappedPort(6379));
 	}
 
 	@Override
 	public PrimesService primesService() {
-		return new PrimesService(serviceMetrics, primeCache, cacheMetrics);
+		return new PrimesService(serviceMetrics, primeCache, cacheMetrics, primeEngine);
 	}
 }
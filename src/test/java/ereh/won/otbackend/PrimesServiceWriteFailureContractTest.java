@@ -3,7 +3,9 @@ package ereh.won.otbackend;
 import ereh.won.otbackend.cache.CacheMetrics;
 import ereh.won.otbackend.cache.InMemoryPrimeCache;
 import ereh.won.otbackend.cache.PrimeCache;
+import ereh.won.otbackend.cache.PrimeCacheEntry;
 import ereh.won.otbackend.cache.PrimeCacheKey;
+import ereh.won.otbackend.prime.SievePrimeEngine;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -36,24 +38,29 @@ class PrimesServiceWriteFailureContractTest {
         private final PrimeCache delegate = new InMemoryPrimeCache();
         
         @Override
-        public java.util.Optional<Integer> get(PrimeCacheKey key) {
+        public java.util.Optional<Long> get(PrimeCacheKey key) {
             return delegate.get(key);
         }
         
         @Override
-        public void put(PrimeCacheKey key, int value) {
+        public void put(PrimeCacheKey key, long value) {
             throw new RuntimeException("Simulated cache write failure");
         }
+
+        @Override
+        public java.util.Optional<PrimeCacheEntry> floor(long position) {
+            return delegate.floor(position);
+        }
     }
 
     @Test
     void getPrimeReturnsComputedValueWhenCachePutFails() {
         // Given: A cache that fails on put operations
         PrimeCache failingCache = new FailingCache();
-        PrimesService primesService = new PrimesService(serviceMetrics, failingCache, cacheMetrics);
+        PrimesService primesService = new PrimesService(serviceMetrics, failingCache, cacheMetrics, new SievePrimeEngine());
 
         // When: Requesting a prime that isn't cached
-        int result = primesService.getPrime(10);
+        long result = primesService.getPrime(10);
 
         // Then: The computed prime should be returned (not an error)
         assertEquals(29, result, "Should return correct computed prime even when cache write fails");
@@ -65,10 +72,10 @@ class PrimesServiceWriteFailureContractTest {
         // Given: A cache with a value pre-populated (hit path)
         PrimeCache cacheWithValue = new InMemoryPrimeCache();
         cacheWithValue.put(new PrimeCacheKey(10), 29);
-        PrimesService primesService = new PrimesService(serviceMetrics, cacheWithValue, cacheMetrics);
+        PrimesService primesService = new PrimesService(serviceMetrics, cacheWithValue, cacheMetrics, new SievePrimeEngine());
 
         // When: Requesting a prime that is cached (hit path - no put will occur)
-        int result = primesService.getPrime(10);
+        long result = primesService.getPrime(10);
 
         // Then: The cached prime should be returned
         assertEquals(29, result);
@@ -79,7 +86,7 @@ class PrimesServiceWriteFailureContractTest {
     void getPrimeThrowsForInvalidInputRegardlessOfCache() {
         // Given: A failing cache
         PrimeCache failingCache = new FailingCache();
-        PrimesService primesService = new PrimesService(serviceMetrics, failingCache, cacheMetrics);
+        PrimesService primesService = new PrimesService(serviceMetrics, failingCache, cacheMetrics, new SievePrimeEngine());
 
         // When: Requesting a prime with invalid input
         // Then: Invalid input error should be thrown and reported with bounded metric tags
@@ -91,10 +98,10 @@ class PrimesServiceWriteFailureContractTest {
     void cacheWriteFailureDoesNotAffectSubsequentSuccessfulRequests() {
         // Given: A cache that fails on first write
         PrimeCache failingCache = new FailingCache();
-        PrimesService primesService = new PrimesService(serviceMetrics, failingCache, cacheMetrics);
+        PrimesService primesService = new PrimesService(serviceMetrics, failingCache, cacheMetrics, new SievePrimeEngine());
 
         // When: First request fails to write to cache
-        int firstResult = primesService.getPrime(10);
+        long firstResult = primesService.getPrime(10);
         
         // Then: The computed value should still be returned
         assertEquals(29, firstResult);
@@ -102,7 +109,7 @@ class PrimesServiceWriteFailureContractTest {
         // When: Second request (the cache has no value due to first failure)
         // Note: Since cache.put failed, the value won't be cached
         // So this will also compute and try to write (which will fail again)
-        int secondResult = primesService.getPrime(10);
+        long secondResult = primesService.getPrime(10);
         
         // Then: The computed value should still be returned correctly
         assertEquals(29, secondResult);
@@ -112,7 +119,7 @@ class PrimesServiceWriteFailureContractTest {
     void getPrimeMultiplePositionsWithCacheWriteFailures() {
         // Given: A failing cache
         PrimeCache failingCache = new FailingCache();
-        PrimesService primesService = new PrimesService(serviceMetrics, failingCache, cacheMetrics);
+        PrimesService primesService = new PrimesService(serviceMetrics, failingCache, cacheMetrics, new SievePrimeEngine());
 
         // When/Then: Multiple different prime positions should all return correct computed values
         assertEquals(2, primesService.getPrime(1));   // 1st prime: 2
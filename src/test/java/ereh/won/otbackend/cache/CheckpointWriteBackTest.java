@@ -0,0 +1,126 @@
+package ereh.won.otbackend.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CheckpointWriteBackTest {
+
+	@Mock
+	private CacheMetrics cacheMetrics;
+
+	private CheckpointWriteBack writeBack;
+
+	@AfterEach
+	void tearDown() {
+		if (writeBack != null) {
+			writeBack.close();
+		}
+	}
+
+	@Test
+	void dropsCheckpointsInsteadOfBlockingWhenTheQueueIsFull() {
+		writeBack = new CheckpointWriteBack(new InMemoryPrimeCache(), cacheMetrics, checkpoints(2, 10, Duration.ofHours(1)));
+
+		writeBack.offer(100, () -> 541);
+		writeBack.offer(200, () -> 1_223);
+		writeBack.offer(300, () -> 1_987);
+
+		assertEquals(2, writeBack.pendingCount());
+		verify(cacheMetrics).record("checkpoint", "dropped");
+	}
+
+	@Test
+	void flushWritesAtMostTheConfiguredNumberOfCheckpointsInOneBulkWrite() {
+		PrimeCache cache = spy(new InMemoryPrimeCache());
+		writeBack = new CheckpointWriteBack(cache, cacheMetrics, checkpoints(10, 2, Duration.ofHours(1)));
+		writeBack.offer(100, () -> 541);
+		writeBack.offer(200, () -> 1_223);
+		writeBack.offer(300, () -> 1_987);
+
+		writeBack.flush();
+
+		verify(cache, times(1)).putAll(Map.of(new PrimeCacheKey(100), 541L, new PrimeCacheKey(200), 1_223L));
+		assertEquals(1, writeBack.pendingCount());
+		assertEquals(541, cache.get(new PrimeCacheKey(100)).orElseThrow());
+		assertTrue(cache.get(new PrimeCacheKey(300)).isEmpty());
+		verify(cacheMetrics).record("checkpoint_flush", "success");
+	}
+
+	@Test
+	void primesAreResolvedOnlyWhenFlushed() {
+		PrimeCache cache = new InMemoryPrimeCache();
+		writeBack = new CheckpointWriteBack(cache, cacheMetrics, checkpoints(10, 10, Duration.ofHours(1)));
+
+		writeBack.offer(100, () -> {
+			throw new AssertionError("resolved on the offering thread");
+		});
+
+		assertEquals(1, writeBack.pendingCount());
+	}
+
+	@Test
+	void writerThreadFlushesOnItsOwn() throws InterruptedException {
+		PrimeCache cache = new InMemoryPrimeCache();
+		writeBack = new CheckpointWriteBack(cache, cacheMetrics, checkpoints(10, 10, Duration.ofMillis(5)));
+
+		writeBack.offer(100, () -> 541);
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (cache.get(new PrimeCacheKey(100)).isEmpty() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(541, cache.get(new PrimeCacheKey(100)).orElseThrow());
+	}
+
+	@Test
+	void failedWriteIsRecordedAndDiscarded() {
+		PrimeCache cache = mock(PrimeCache.class);
+		doThrow(new RuntimeException("Cache unavailable")).when(cache).putAll(any());
+		writeBack = new CheckpointWriteBack(cache, cacheMetrics, checkpoints(10, 10, Duration.ofHours(1)));
+		writeBack.offer(100, () -> 541);
+
+		writeBack.flush();
+		writeBack.flush();
+
+		verify(cache, times(1)).putAll(any());
+		verify(cacheMetrics).record("checkpoint_flush", "error");
+		verify(cacheMetrics, never()).record("checkpoint_flush", "success");
+	}
+
+	@Test
+	void rejectsNonPositiveSettings() {
+		PrimeCache cache = mock(PrimeCache.class);
+		assertThrows(IllegalArgumentException.class,
+				() -> new CheckpointWriteBack(cache, cacheMetrics, checkpoints(0, 10, Duration.ofHours(1))));
+		assertThrows(IllegalArgumentException.class,
+				() -> new CheckpointWriteBack(cache, cacheMetrics, checkpoints(10, 0, Duration.ofHours(1))));
+	}
+
+	private static PrimeCacheProperties.Checkpoints checkpoints(int queueCapacity, int maxWritesPerFlush,
+																 Duration flushInterval) {
+		PrimeCacheProperties.Checkpoints checkpoints = new PrimeCacheProperties.Checkpoints();
+		checkpoints.setQueueCapacity(queueCapacity);
+		checkpoints.setMaxWritesPerFlush(maxWritesPerFlush);
+		checkpoints.setFlushInterval(flushInterval);
+		return checkpoints;
+	}
+}
@@ -0,0 +1,120 @@
+package ereh.won.otbackend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DensePrimePagesTest {
+
+	@Test
+	void storesPrimesByPositionWithZeroAsEmpty() {
+		DensePrimePages pages = new DensePrimePages(1_000_000);
+
+		pages.put(1_000, 7_919);
+
+		assertEquals(7_919, pages.get(1_000));
+		assertEquals(0, pages.get(999));
+		assertEquals(0, pages.get(900_000));
+		assertEquals(1, pages.size());
+	}
+
+	@Test
+	void holdsPrimesUpToTwoToTheThirtyTwo() {
+		DensePrimePages pages = new DensePrimePages(DensePrimePages.MAX_POSITIONS);
+
+		pages.put(DensePrimePages.MAX_POSITIONS, 4_294_967_291L);
+
+		assertEquals(4_294_967_291L, pages.get(DensePrimePages.MAX_POSITIONS));
+	}
+
+	@Test
+	void allocatesPagesOnlyWhereWritten() {
+		DensePrimePages pages = new DensePrimePages(DensePrimePages.MAX_POSITIONS);
+		assertEquals(0, pages.allocatedBytes());
+
+		for (long position = 1; position < DensePrimePages.PAGE_SIZE; position++) {
+			pages.put(position, position);
+		}
+		pages.put(100_000_000, 2_038_074_743L);
+
+		assertEquals(2 * DensePrimePages.PAGE_BYTES, pages.allocatedBytes());
+		long bytesPerEntry = pages.allocatedBytes() / pages.size();
+		assertTrue(bytesPerEntry * 10 < InMemoryPrimeCache.ESTIMATED_ENTRY_BYTES,
+				bytesPerEntry + " bytes per dense entry");
+	}
+
+	@Test
+	void floorScansBackAcrossPages() {
+		DensePrimePages pages = new DensePrimePages(1_000_000);
+		pages.put(10, 29);
+		pages.put(50_000, 611_953);
+
+		assertEquals(50_000, pages.floorPosition(900_000));
+		assertEquals(50_000, pages.floorPosition(50_000));
+		assertEquals(10, pages.floorPosition(49_999));
+		assertEquals(0, pages.floorPosition(9));
+	}
+
+	@Test
+	void getAndPutDoNotAllocateOnceThePageExists() {
+		DensePrimePages pages = new DensePrimePages(1_000_000);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long sum = 0;
+		for (int round = 0; round < 3; round++) {
+			for (long position = 1; position < DensePrimePages.PAGE_SIZE; position++) {
+				pages.put(position, position + round);
+				sum += pages.get(position);
+			}
+		}
+
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (long position = 1; position < DensePrimePages.PAGE_SIZE; position++) {
+			pages.put(position, position);
+			sum += pages.get(position);
+		}
+		long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+		assertTrue(sum > 0);
+		assertTrue(allocated < 1_024, allocated + " bytes allocated for " + DensePrimePages.PAGE_SIZE + " puts and gets");
+	}
+
+	@Test
+	void concurrentWritersPublishEveryValue() throws Exception {
+		DensePrimePages pages = new DensePrimePages(1_000_000);
+		int writers = 4;
+		List<Future<?>> done = new ArrayList<>();
+		try (ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+			for (int w = 0; w < writers; w++) {
+				int offset = w;
+				done.add(executor.submit(() -> {
+					for (long position = 1 + offset; position <= 200_000; position += writers) {
+						pages.put(position, position * 3);
+					}
+				}));
+			}
+			for (Future<?> future : done) {
+				future.get();
+			}
+		}
+
+		assertEquals(200_000, pages.size());
+		for (long position = 1; position <= 200_000; position++) {
+			assertEquals(position * 3, pages.get(position));
+		}
+	}
+
+	@Test
+	void rejectsPositionRangesBeyondThirtyTwoBitPrimes() {
+		assertThrows(IllegalArgumentException.class, () -> new DensePrimePages(0));
+		assertThrows(IllegalArgumentException.class, () -> new DensePrimePages(DensePrimePages.MAX_POSITIONS + 1));
+	}
+}
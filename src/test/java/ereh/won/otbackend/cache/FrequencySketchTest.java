@@ -0,0 +1,38 @@
+package ereh.won.otbackend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencySketchTest {
+
+	@Test
+	void countsAccessesUpToFifteen() {
+		FrequencySketch sketch = new FrequencySketch(1_000);
+
+		for (int i = 0; i < 5; i++) {
+			sketch.increment(42);
+		}
+		assertEquals(5, sketch.frequency(42));
+
+		for (int i = 0; i < 20; i++) {
+			sketch.increment(42);
+		}
+		assertEquals(15, sketch.frequency(42));
+	}
+
+	@Test
+	void agesCountsOnceTheSampleIsFull() {
+		FrequencySketch sketch = new FrequencySketch(64);
+		for (int i = 0; i < 8; i++) {
+			sketch.increment(7);
+		}
+
+		for (long position = 1_000; position < 1_640; position++) {
+			sketch.increment(position);
+		}
+
+		assertTrue(sketch.frequency(7) <= 4, "counts should have been halved: " + sketch.frequency(7));
+	}
+}
@@ -0,0 +1,149 @@
+package ereh.won.otbackend.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class InMemoryPrimeCacheTest {
+
+	@Mock
+	private CacheMetrics cacheMetrics;
+
+	@Test
+	void staysWithinItsMaximumSize() {
+		InMemoryPrimeCache cache = new InMemoryPrimeCache(100, cacheMetrics);
+
+		for (long position = 1; position <= 10_000; position++) {
+			cache.put(new PrimeCacheKey(position), position);
+		}
+
+		assertEquals(100, cache.size());
+		verify(cacheMetrics, times(9_900)).record(eq("evict"), anyString());
+	}
+
+	@Test
+	void oneOffScanDoesNotFlushTheHotSet() {
+		InMemoryPrimeCache cache = new InMemoryPrimeCache(100);
+		for (long position = 1; position <= 50; position++) {
+			cache.put(new PrimeCacheKey(position), position);
+		}
+		for (int round = 0; round < 5; round++) {
+			for (long position = 1; position <= 50; position++) {
+				cache.get(new PrimeCacheKey(position));
+			}
+		}
+
+		for (long position = 1_000; position < 100_000; position++) {
+			cache.put(new PrimeCacheKey(position), position);
+		}
+
+		int hot = 0;
+		for (long position = 1; position <= 50; position++) {
+			hot += cache.get(new PrimeCacheKey(position)).isPresent() ? 1 : 0;
+		}
+		assertTrue(hot >= 45, hot + " of 50 hot entries survived the scan");
+	}
+
+	@Test
+	void frequentlyRequestedNewcomerDisplacesAColdEntry() {
+		InMemoryPrimeCache cache = new InMemoryPrimeCache(100, cacheMetrics);
+		for (long position = 1; position <= 100; position++) {
+			cache.put(new PrimeCacheKey(position), position);
+		}
+
+		PrimeCacheKey newcomer = new PrimeCacheKey(5_000);
+		for (int i = 0; i < 5; i++) {
+			cache.get(newcomer);
+		}
+		cache.put(newcomer, 5_000);
+		cache.put(new PrimeCacheKey(5_001), 5_001);
+
+		assertEquals(5_000, cache.get(newcomer).orElseThrow());
+		assertEquals(100, cache.size());
+		verify(cacheMetrics).record("evict", "victim");
+	}
+
+	@Test
+	void rewritingAnEntryKeepsOneCopy() {
+		InMemoryPrimeCache cache = new InMemoryPrimeCache(10);
+		Map<PrimeCacheKey, Long> entries = new HashMap<>();
+		entries.put(new PrimeCacheKey(10), 29L);
+		entries.put(new PrimeCacheKey(11), 31L);
+
+		cache.putAll(entries);
+		cache.putAll(entries);
+		cache.put(new PrimeCacheKey(10), 29);
+
+		assertEquals(2, cache.size());
+		assertEquals(new PrimeCacheEntry(11, 31), cache.floor(100).orElseThrow());
+	}
+
+	@Test
+	void estimatesItsFootprintFromTheEntryCount() {
+		InMemoryPrimeCache cache = new InMemoryPrimeCache(1_000);
+		long empty = cache.estimatedBytes();
+
+		for (long position = 1; position <= 500; position++) {
+			cache.put(new PrimeCacheKey(position), position);
+		}
+
+		assertEquals(empty + 500L * InMemoryPrimeCache.ESTIMATED_ENTRY_BYTES, cache.estimatedBytes());
+	}
+
+	@Test
+	void byteLimitTightensTheEntryLimit() {
+		PrimeCacheProperties.Memory memory = new PrimeCacheProperties.Memory();
+		assertEquals(InMemoryPrimeCache.DEFAULT_MAXIMUM_SIZE, memory.maximumSize());
+
+		memory.setMaxBytes(DataSize.ofKilobytes(64));
+		assertEquals(64 * 1024 / InMemoryPrimeCache.ESTIMATED_ENTRY_BYTES, memory.maximumSize());
+
+		memory.setMaxEntries(10);
+		assertEquals(10, memory.maximumSize());
+	}
+
+	@Test
+	void densePositionsAreKeptOutsideTheBoundAndNeverEvicted() {
+		InMemoryPrimeCache cache = new InMemoryPrimeCache(10, 1_000, cacheMetrics);
+
+		for (long position = 1; position <= 1_000; position++) {
+			cache.put(new PrimeCacheKey(position), position * 2);
+		}
+		cache.put(new PrimeCacheKey(5_000), 48_611);
+
+		assertEquals(1_001, cache.size());
+		assertEquals(2_000, cache.get(new PrimeCacheKey(1_000)).orElseThrow());
+		assertEquals(new PrimeCacheEntry(1_000, 2_000), cache.floor(4_999).orElseThrow());
+		assertEquals(new PrimeCacheEntry(5_000, 48_611), cache.floor(6_000).orElseThrow());
+		verify(cacheMetrics, times(0)).record(eq("evict"), anyString());
+	}
+
+	@Test
+	void valuesThatDoNotFitADenseSlotAreKeptInTheMap() {
+		InMemoryPrimeCache cache = new InMemoryPrimeCache(10, 1_000, null);
+
+		cache.put(new PrimeCacheKey(10), 5_000_000_000L);
+
+		assertEquals(5_000_000_000L, cache.get(new PrimeCacheKey(10)).orElseThrow());
+		assertEquals(new PrimeCacheEntry(10, 5_000_000_000L), cache.floor(10).orElseThrow());
+	}
+
+	@Test
+	void rejectsNonPositiveMaximumSize() {
+		assertThrows(IllegalArgumentException.class, () -> new InMemoryPrimeCache(0));
+	}
+}
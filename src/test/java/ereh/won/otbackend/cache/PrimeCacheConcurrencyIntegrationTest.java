@@ -17,8 +17,9 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  * Integration tests for concurrent cache access correctness.
  * <p>
  * These tests verify that concurrent same-key operations maintain correctness
- * without requiring deduplication. Duplicate computes and last-write-wins are
- * acceptable as long as the final cached value is correct.
+ * at the cache level: last-write-wins is acceptable as long as the final cached
+ * value is correct. Duplicate computes are prevented one layer up, where
+ * PrimesService coalesces concurrent misses through InFlightComputations.
  */
 @SpringBootTest
 @TestPropertySource(properties = {
@@ -2,6 +2,9 @@ package ereh.won.otbackend.cache;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -38,10 +41,52 @@ class PrimeCacheContractTest {
 		assertEquals(113, cache.get(key).orElseThrow());
 	}
 
+	@Test
+	void storesPositionsAndValuesBeyondIntRange() {
+		PrimeCache cache = new InMemoryPrimeCache();
+		PrimeCacheKey key = new PrimeCacheKey(200_000_000L);
+		cache.put(key, 4_222_234_741L);
+
+		assertEquals(4_222_234_741L, cache.get(key).orElseThrow());
+	}
+
 	@Test
 	void rejectsInvalidCacheKeyConstruction() {
-		assertThrows(IllegalArgumentException.class, () -> new PrimeCacheKey(null));
 		assertThrows(IllegalArgumentException.class, () -> new PrimeCacheKey(0));
 		assertThrows(IllegalArgumentException.class, () -> new PrimeCacheKey(-1));
 	}
+
+	@Test
+	void floorFindsNearestLowerPositionInMemory() {
+		PrimeCache cache = new InMemoryPrimeCache();
+		cache.put(new PrimeCacheKey(5_000_000), 86_028_121);
+
+		assertEquals(new PrimeCacheEntry(5_000_000, 86_028_121), cache.floor(5_000_100).orElseThrow());
+		assertTrue(cache.floor(4_999_999).isEmpty());
+	}
+
+	@Test
+	void getAllReturnsOnlyCachedKeys() {
+		PrimeCache cache = new InMemoryPrimeCache();
+		cache.put(new PrimeCacheKey(10), 29);
+		cache.put(new PrimeCacheKey(1_000), 7_919);
+
+		Map<PrimeCacheKey, Long> found = cache.getAll(List.of(new PrimeCacheKey(10), new PrimeCacheKey(11),
+				new PrimeCacheKey(1_000)));
+
+		assertEquals(Map.of(new PrimeCacheKey(10), 29L, new PrimeCacheKey(1_000), 7_919L), found);
+	}
+
+	@Test
+	void primitiveReadsCoverDenseAndMapEntries() {
+		PrimeCache cache = new InMemoryPrimeCache();
+		cache.putPrime(10, 29);
+		cache.putPrime(200_000_000L, 4_222_234_741L);
+
+		assertEquals(29, cache.getPrime(10));
+		assertEquals(4_222_234_741L, cache.getPrime(200_000_000L));
+		assertEquals(PrimeCache.ABSENT, cache.getPrime(11));
+		assertEquals(PrimeCache.ABSENT, cache.getPrime(200_000_001L));
+		assertThrows(IllegalArgumentException.class, () -> cache.getPrime(0));
+	}
 }
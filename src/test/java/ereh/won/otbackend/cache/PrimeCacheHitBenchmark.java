@@ -0,0 +1,85 @@
+package ereh.won.otbackend.cache;
+
+import ereh.won.otbackend.prime.SegmentedSieve;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares cache hits through the keyed {@code get} and the primitive {@code getPrime}, on the in-memory
+ * cache and on a near cache in front of it. Run with {@code -prof gc}, as shown in the README, to see
+ * the bytes allocated per hit ({@code gc.alloc.rate.norm}). The primitive reads report zero. The keyed
+ * reads only do when escape analysis removes their key, {@code Optional} and boxed value, which needs the
+ * whole call inlined as it is here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimeCacheHitBenchmark {
+    // consecutive positions, which Fibonacci hashing spreads over the near cache without collisions
+    private static final int HOT_POSITIONS = 1 << 10;
+    private static final int NEAR_CACHE_CAPACITY = 1 << 16;
+
+    private InMemoryPrimeCache memory;
+    private TieredPrimeCache tiered;
+    private long position;
+
+    @Setup
+    public void setUp() {
+        memory = new InMemoryPrimeCache();
+        MemoryBackend backend = new MemoryBackend();
+        long[] next = {1};
+        SegmentedSieve.forEachPrime(2, SegmentedSieve.upperBound(HOT_POSITIONS) + 1, prime -> {
+            memory.putPrime(next[0], prime);
+            backend.putPrime(next[0], prime);
+            return ++next[0] <= HOT_POSITIONS;
+        });
+        CacheMetrics cacheMetrics = new CacheMetrics(new SimpleMeterRegistry(), new PrimeCacheSelection(
+                PrimeCacheProperties.Backend.MEMORY, PrimeCacheProperties.Backend.MEMORY, null));
+        tiered = new TieredPrimeCache(backend, cacheMetrics, NEAR_CACHE_CAPACITY);
+        for (long hot = 1; hot <= HOT_POSITIONS; hot++) {
+            tiered.getPrime(hot);
+        }
+    }
+
+    @Benchmark
+    public long memoryGet() {
+        return memory.get(new PrimeCacheKey(nextPosition())).orElseThrow();
+    }
+
+    @Benchmark
+    public long memoryGetPrime() {
+        return memory.getPrime(nextPosition());
+    }
+
+    @Benchmark
+    public long nearCacheGet() {
+        return tiered.get(new PrimeCacheKey(nextPosition())).orElseThrow();
+    }
+
+    @Benchmark
+    public long nearCacheGetPrime() {
+        return tiered.getPrime(nextPosition());
+    }
+
+    private long nextPosition() {
+        position = (position + 1) & (HOT_POSITIONS - 1);
+        return position + 1;
+    }
+
+    static class MemoryBackend extends InMemoryPrimeCache implements PrimeCacheBackend {
+    }
+}
@@ -3,15 +3,18 @@ package ereh.won.otbackend.cache;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 /**
  * Parity tests for in-memory cache backend.
  * Implements PrimeCacheParityContract to verify MEMORY backend satisfies all contract assertions.
+ * The contract stores made-up primes (such as 99 at position 10), so the context is not reused.
  */
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
+@DirtiesContext
 @TestPropertySource(properties = {
 	"prime.cache.backend=MEMORY"
 })
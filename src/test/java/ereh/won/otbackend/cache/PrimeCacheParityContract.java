@@ -2,6 +2,8 @@ package ereh.won.otbackend.cache;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -9,6 +11,7 @@ import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -47,14 +50,78 @@ public interface PrimeCacheParityContract {
 		assertEquals(113, cache().get(key30).orElseThrow(), "Key 30 should retain its value");
 	}
 
+	@Test
+	default void floorReturnsLargestCachedPositionAtOrBelow() {
+		// Contract: floor(n) finds the nearest cached entry at or below n (positions far from other tests' keys)
+		long base = 900_000_000_000L;
+		cache().put(new PrimeCacheKey(base + 10), 101);
+		cache().put(new PrimeCacheKey(base + 40), 401);
+		cache().put(new PrimeCacheKey(base + 20), 201);
+
+		assertEquals(new PrimeCacheEntry(base + 20, 201), cache().floor(base + 39).orElseThrow());
+		assertEquals(new PrimeCacheEntry(base + 40, 401), cache().floor(base + 40).orElseThrow());
+		assertEquals(new PrimeCacheEntry(base + 40, 401), cache().floor(base + 1_000).orElseThrow());
+		assertTrue(cache().floor(base + 9).map(entry -> entry.position() < base).orElse(true),
+				"Floor below the smallest entry must not return a larger position");
+		assertFalse(cache().floor(0).isPresent(), "No position is cached at or below zero");
+	}
+
+	@Test
+	default void bulkWritesAndReadsMatchSingleKeyOperations() {
+		// Contract: putAll stores what put would, and getAll returns exactly the cached subset of its keys
+		long base = 800_000_000_000L;
+		cache().putAll(Map.of(
+				new PrimeCacheKey(base + 1), 11L,
+				new PrimeCacheKey(base + 2), 13L,
+				new PrimeCacheKey(base + 3), 17L));
+		cache().put(new PrimeCacheKey(base + 4), 19);
+
+		Map<PrimeCacheKey, Long> found = cache().getAll(List.of(new PrimeCacheKey(base + 1), new PrimeCacheKey(base + 3),
+				new PrimeCacheKey(base + 4), new PrimeCacheKey(base + 5)));
+
+		assertEquals(Map.of(new PrimeCacheKey(base + 1), 11L, new PrimeCacheKey(base + 3), 17L,
+				new PrimeCacheKey(base + 4), 19L), found, "getAll should leave out only the missing key");
+		assertEquals(13, cache().get(new PrimeCacheKey(base + 2)).orElseThrow(), "putAll should be visible to get");
+		assertEquals(new PrimeCacheEntry(base + 4, 19), cache().floor(base + 5).orElseThrow(),
+				"putAll and put entries should both be visible to floor");
+		assertEquals(new PrimeCacheEntry(base + 3, 17), cache().floor(base + 3).orElseThrow());
+	}
+
+	@Test
+	default void bulkOperationsAcceptEmptyInput() {
+		// Contract: empty bulk calls are no-ops rather than errors
+		cache().putAll(Map.of());
+		assertTrue(cache().getAll(List.of()).isEmpty(), "getAll of no keys should be empty");
+	}
+
 	@Test
 	default void emptyCacheReturnsEmpty() {
 		// Contract: get on missing key returns empty Optional
 		PrimeCacheKey key = new PrimeCacheKey(999);
-		Optional<Integer> result = cache().get(key);
+		Optional<Long> result = cache().get(key);
 		assertFalse(result.isPresent(), "Cache should return empty Optional for missing key");
 	}
 
+	@Test
+	default void primitiveReadsAndWritesMatchTheKeyedOnes() {
+		// Contract: getPrime/putPrime see the same entries as get/put, with ABSENT for a missing position
+		cache().putPrime(40, 173);
+		cache().put(new PrimeCacheKey(41), 179);
+
+		assertEquals(173, cache().get(new PrimeCacheKey(40)).orElseThrow(), "putPrime should be visible to get");
+		assertEquals(179, cache().getPrime(41), "put should be visible to getPrime");
+		assertEquals(PrimeCache.ABSENT, cache().getPrime(998), "getPrime should return ABSENT for missing key");
+		assertEquals(new PrimeCacheEntry(41, 179), cache().floor(41).orElseThrow());
+	}
+
+	@Test
+	default void primitiveCallsRejectInvalidPositions() {
+		// Contract: the primitive calls validate positions exactly like PrimeCacheKey does
+		assertThrows(IllegalArgumentException.class, () -> cache().getPrime(0));
+		assertThrows(IllegalArgumentException.class, () -> cache().getPrime(-1));
+		assertThrows(IllegalArgumentException.class, () -> cache().putPrime(0, 2));
+	}
+
 	@Test
 	default void valueUpdateOverwritesPrevious() {
 		// Contract: putting same key again overwrites previous value
@@ -94,10 +161,10 @@ public interface PrimeCacheParityContract {
 		}
 
 		// Verify that some value was stored and is retrievable
-		Optional<Integer> result = cache().get(key);
+		Optional<Long> result = cache().get(key);
 		assertTrue(result.isPresent(), "Cache should have a value after concurrent writes");
 		// The exact value depends on timing, but it should be within our write range
-		int value = result.get();
+		long value = result.get();
 		assertTrue(value >= 0 && value < 300, "Value should be from our write range: " + value);
 	}
 }
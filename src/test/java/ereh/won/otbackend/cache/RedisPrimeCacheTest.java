@@ -0,0 +1,79 @@
+package ereh.won.otbackend.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RedisPrimeCacheTest {
+
+	@Mock
+	private StringRedisTemplate redisTemplate;
+
+	@Mock
+	private RedisOperations<String, String> operations;
+
+	@Mock
+	private ValueOperations<String, String> valueOperations;
+
+	@Mock
+	private ZSetOperations<String, String> zSetOperations;
+
+	@Test
+	void singleWriteSetsTheValueAndIndexInOnePipelinedTransaction() {
+		when(operations.opsForValue()).thenReturn(valueOperations);
+		when(operations.opsForZSet()).thenReturn(zSetOperations);
+
+		new RedisPrimeCache(redisTemplate).putPrime(1_000, 7_919);
+		runPipelinedCallback();
+
+		InOrder order = inOrder(operations, valueOperations, zSetOperations);
+		order.verify(operations).multi();
+		order.verify(valueOperations).set("prime:cache:1000", "7919");
+		order.verify(zSetOperations).add("prime:cache-index", "1000", 1_000);
+		order.verify(operations).exec();
+		verifyNoMoreInteractions(valueOperations, zSetOperations);
+	}
+
+	@Test
+	void bulkWriteUsesTheCallbackOperationsInOnePipelinedTransaction() {
+		when(operations.opsForValue()).thenReturn(valueOperations);
+		when(operations.opsForZSet()).thenReturn(zSetOperations);
+
+		new RedisPrimeCache(redisTemplate).putAll(Map.of(new PrimeCacheKey(10), 29L, new PrimeCacheKey(11), 31L));
+		runPipelinedCallback();
+
+		InOrder order = inOrder(operations, valueOperations, zSetOperations);
+		order.verify(operations).multi();
+		order.verify(valueOperations).multiSet(Map.of("prime:cache:10", "29", "prime:cache:11", "31"));
+		order.verify(zSetOperations).add("prime:cache-index", Set.of(
+				ZSetOperations.TypedTuple.of("10", 10.0), ZSetOperations.TypedTuple.of("11", 11.0)));
+		order.verify(operations).exec();
+		verify(redisTemplate, never()).opsForValue();
+		verify(redisTemplate, never()).opsForZSet();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void runPipelinedCallback() {
+		ArgumentCaptor<SessionCallback<Object>> callback = ArgumentCaptor.forClass(SessionCallback.class);
+		verify(redisTemplate).executePipelined(callback.capture());
+		callback.getValue().execute(operations);
+	}
+}
@@ -0,0 +1,127 @@
+package ereh.won.otbackend.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TieredPrimeCacheTest {
+
+	@Mock
+	private CacheMetrics cacheMetrics;
+
+	@Test
+	void repeatedReadsAreAnsweredFromTheNearCache() {
+		MemoryBackend backend = spy(new MemoryBackend());
+		backend.put(new PrimeCacheKey(1_000), 7_919);
+		TieredPrimeCache cache = new TieredPrimeCache(backend, cacheMetrics, 16);
+
+		assertEquals(7_919, cache.get(new PrimeCacheKey(1_000)).orElseThrow());
+		assertEquals(7_919, cache.get(new PrimeCacheKey(1_000)).orElseThrow());
+		assertEquals(7_919, cache.get(new PrimeCacheKey(1_000)).orElseThrow());
+
+		verify(backend, times(1)).get(new PrimeCacheKey(1_000));
+		verify(cacheMetrics, times(1)).recordTier("l2", "get", "hit");
+		verify(cacheMetrics, times(2)).recordTier("l1", "get", "hit");
+	}
+
+	@Test
+	void primitiveReadsShareTheNearCache() {
+		MemoryBackend backend = spy(new MemoryBackend());
+		backend.putPrime(1_000, 7_919);
+		TieredPrimeCache cache = new TieredPrimeCache(backend, cacheMetrics, 16);
+
+		assertEquals(7_919, cache.getPrime(1_000));
+		assertEquals(7_919, cache.get(new PrimeCacheKey(1_000)).orElseThrow());
+		assertEquals(PrimeCache.ABSENT, cache.getPrime(1_001));
+		cache.putPrime(1_002, 7_933);
+		assertEquals(7_933, cache.getPrime(1_002));
+
+		verify(backend, times(1)).getPrime(1_000);
+		verify(backend, never()).get(any());
+		verify(backend).putPrime(1_002, 7_933);
+		verify(cacheMetrics, times(2)).recordTier("l1", "get", "hit");
+	}
+
+	@Test
+	void writesGoThroughToBothTiers() {
+		MemoryBackend backend = spy(new MemoryBackend());
+		TieredPrimeCache cache = new TieredPrimeCache(backend, cacheMetrics, 16);
+
+		cache.put(new PrimeCacheKey(10), 29);
+		cache.putAll(Map.of(new PrimeCacheKey(11), 31L));
+
+		assertEquals(31, cache.get(new PrimeCacheKey(11)).orElseThrow());
+		verify(backend, never()).get(any());
+		verify(cacheMetrics).recordTier("l1", "get", "hit");
+		assertEquals(29, backend.get(new PrimeCacheKey(10)).orElseThrow());
+		assertEquals(31, backend.get(new PrimeCacheKey(11)).orElseThrow());
+	}
+
+	@Test
+	void nearCacheKeepsAValueWhoseBackendWriteFailed() {
+		MemoryBackend backend = spy(new MemoryBackend());
+		doThrow(new RuntimeException("Cache unavailable")).when(backend).put(any(), any(Long.class));
+		TieredPrimeCache cache = new TieredPrimeCache(backend, cacheMetrics, 16);
+
+		assertThrows(RuntimeException.class, () -> cache.put(new PrimeCacheKey(10), 29));
+
+		assertEquals(29, cache.get(new PrimeCacheKey(10)).orElseThrow());
+	}
+
+	@Test
+	void multiGetOnlyAsksTheBackendForNearCacheMisses() {
+		MemoryBackend backend = spy(new MemoryBackend());
+		backend.put(new PrimeCacheKey(2), 3);
+		backend.put(new PrimeCacheKey(3), 5);
+		TieredPrimeCache cache = new TieredPrimeCache(backend, cacheMetrics, 16);
+		cache.put(new PrimeCacheKey(1), 2);
+
+		Map<PrimeCacheKey, Long> found = cache.getAll(List.of(new PrimeCacheKey(1), new PrimeCacheKey(2),
+				new PrimeCacheKey(4)));
+
+		assertEquals(Map.of(new PrimeCacheKey(1), 2L, new PrimeCacheKey(2), 3L), found);
+		verify(backend).getAll(List.of(new PrimeCacheKey(2), new PrimeCacheKey(4)));
+		verify(cacheMetrics).recordTier("l2", "get", "miss");
+		assertEquals(3, cache.get(new PrimeCacheKey(2)).orElseThrow());
+	}
+
+	@Test
+	void nearCacheIsBoundedAndFloorComesFromTheBackend() {
+		MemoryBackend backend = new MemoryBackend();
+		TieredPrimeCache cache = new TieredPrimeCache(backend, cacheMetrics, 100);
+		for (long position = 1; position <= 10_000; position++) {
+			cache.put(new PrimeCacheKey(position), position * 2);
+		}
+
+		assertEquals(128, cache.capacity());
+		assertEquals(new PrimeCacheEntry(10_000, 20_000), cache.floor(20_000).orElseThrow());
+		for (long position = 1; position <= 10_000; position++) {
+			assertEquals(position * 2, cache.get(new PrimeCacheKey(position)).orElseThrow());
+		}
+		assertTrue(cache.floor(0).isEmpty());
+	}
+
+	@Test
+	void rejectsInvalidCapacity() {
+		MemoryBackend backend = new MemoryBackend();
+		assertThrows(IllegalArgumentException.class, () -> new TieredPrimeCache(backend, cacheMetrics, 0));
+	}
+
+	static class MemoryBackend extends InMemoryPrimeCache implements PrimeCacheBackend {
+	}
+}
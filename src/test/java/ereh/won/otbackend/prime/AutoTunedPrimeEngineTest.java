@@ -0,0 +1,130 @@
+package ereh.won.otbackend.prime;
+
+import ereh.won.otbackend.prime.AutoTunedPrimeEngine.Candidate;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AutoTunedPrimeEngineTest implements PrimeEngineParityContract {
+    private static final PrimeEngine ENGINE = AutoTunedPrimeEngine.tune(
+            List.of(Candidate.stateless(new TrialDivisionPrimeEngine()),
+                    new Candidate(new SievePrimeEngine(new PrimeTable(50_000)),
+                            () -> new SievePrimeEngine(new PrimeTable(50_000)))),
+            List.of(1_000L, 100_000L), PrimeCheckpoints.none(), Duration.ofMillis(200));
+
+    @Override
+    public PrimeEngine engine() {
+        return ENGINE;
+    }
+
+    @Test
+    void routesEachRangeToItsFastestEngine() {
+        PrimeEngine cheap = new FixedCostEngine("cheap-at-small", 0, 5_000_000);
+        PrimeEngine scalable = new FixedCostEngine("scalable", 1_000_000, 1_000_000);
+
+        AutoTunedPrimeEngine tuned = AutoTunedPrimeEngine.tune(List.of(Candidate.stateless(cheap),
+                Candidate.stateless(scalable)), List.of(1_000L), PrimeCheckpoints.none(), Duration.ofSeconds(10));
+
+        assertSame(cheap, tuned.engineFor(1));
+        assertSame(cheap, tuned.engineFor(999));
+        assertSame(scalable, tuned.engineFor(1_000));
+        assertSame(scalable, tuned.engineFor(Long.MAX_VALUE));
+        assertEquals("auto[1:cheap-at-small, 1000:scalable]", tuned.name());
+    }
+
+    @Test
+    void dropsEnginesPredictedToExceedTheBudget() {
+        PrimeEngine slow = new FixedCostEngine("slow", 20_000_000, 20_000_000);
+        PrimeEngine steady = new FixedCostEngine("steady", 30_000_000, 30_000_000);
+
+        long start = System.nanoTime();
+        AutoTunedPrimeEngine tuned = AutoTunedPrimeEngine.tune(
+                List.of(Candidate.stateless(slow), Candidate.stateless(steady)), List.of(10L, 100L, 1_000L),
+                PrimeCheckpoints.none(), Duration.ofMillis(10));
+
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+        assertSame(steady, tuned.engineFor(5_000));
+    }
+
+    @Test
+    void routesOnTheMedianSampleRatherThanTheLuckiest() {
+        AtomicInteger probes = new AtomicInteger();
+        PrimeEngine lucky = new FixedCostEngine("lucky", 5_000_000, 5_000_000);
+        PrimeEngine steady = new FixedCostEngine("steady", 1_000_000, 1_000_000);
+
+        AutoTunedPrimeEngine tuned = AutoTunedPrimeEngine.tune(List.of(
+                new Candidate(lucky, () -> probes.getAndIncrement() == 0 ? new FixedCostEngine("lucky", 0, 0) : lucky),
+                Candidate.stateless(steady)), List.of(), PrimeCheckpoints.none(), Duration.ofSeconds(10));
+
+        assertSame(steady, tuned.engineFor(1));
+    }
+
+    @Test
+    void tunesOnProbesWithoutGrowingTheServedTable() {
+        PrimeTable table = new PrimeTable(50_000);
+        AtomicInteger probes = new AtomicInteger();
+
+        AutoTunedPrimeEngine.tune(List.of(new Candidate(new SievePrimeEngine(table), () -> {
+            probes.incrementAndGet();
+            return new SievePrimeEngine(new PrimeTable(50_000));
+        })), List.of(1_000L, 10_000L), PrimeCheckpoints.none(), Duration.ofMillis(200));
+
+        assertEquals(1, table.size());
+        assertEquals(15, probes.get());
+    }
+
+    @Test
+    void samplesHalfwayBetweenCheckpoints() {
+        long[] bounds = {100_000L, 10_000_000L};
+
+        assertEquals(50_000, AutoTunedPrimeEngine.samplePosition(bounds, 0, 100_000));
+        assertEquals(5_050_000, AutoTunedPrimeEngine.samplePosition(bounds, 1, 100_000));
+        assertEquals(5_500_000, AutoTunedPrimeEngine.samplePosition(bounds, 1, 1_000_000));
+        assertEquals(15_050_000, AutoTunedPrimeEngine.samplePosition(bounds, 2, 100_000));
+        assertEquals(5_050_000, AutoTunedPrimeEngine.samplePosition(bounds, 1, 1));
+    }
+
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> AutoTunedPrimeEngine.tune(
+                List.of(), List.of(), PrimeCheckpoints.none(), Duration.ofMillis(10)));
+        assertThrows(IllegalArgumentException.class, () -> AutoTunedPrimeEngine.tune(
+                List.of(Candidate.stateless(new TrialDivisionPrimeEngine())), List.of(1L), PrimeCheckpoints.none(),
+                Duration.ofMillis(10)));
+    }
+
+    /**
+     * Spins for a fixed number of nanoseconds below and above position 1000 so routing is
+     * deterministic.
+     */
+    private record FixedCostEngine(String name, long smallNanos, long largeNanos) implements PrimeEngine {
+
+        @Override
+        public long nthPrime(long position) {
+            long cost = position < 1_000 ? smallNanos : largeNanos;
+            long end = System.nanoTime() + cost;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            return SegmentedSieve.nthPrime(Math.min(position, 1_000));
+        }
+
+        @Override
+        public boolean isPrime(long candidate) {
+            return MillerRabin.isPrime(candidate);
+        }
+
+        @Override
+        public void primesInRange(long from, long to, LongPredicate action) {
+            SegmentedSieve.forEachPrime(from, to, action);
+        }
+    }
+}
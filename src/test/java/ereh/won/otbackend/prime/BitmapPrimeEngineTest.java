@@ -0,0 +1,58 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BitmapPrimeEngineTest implements PrimeEngineParityContract {
+    private static final long LIMIT = 50_000;
+
+    @TempDir
+    Path directory;
+
+    private MappedPrimeBitmap bitmap;
+    private BitmapPrimeEngine engine;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        bitmap = MappedPrimeBitmap.openOrBuild(directory.resolve("primes.bitmap"), LIMIT);
+        engine = new BitmapPrimeEngine(bitmap, new SievePrimeEngine(new PrimeTable(1_000)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    @Override
+    public PrimeEngine engine() {
+        return engine;
+    }
+
+    @Test
+    void fallsBackBeyondTheBitmap() {
+        assertEquals(5_133, bitmap.primeCount());
+        assertEquals(49_999, engine.nthPrime(5_133));
+        assertEquals(50_021, engine.nthPrime(5_134));
+        assertTrue(engine.isPrime(50_021));
+        assertFalse(engine.isPrime(50_001));
+    }
+
+    @Test
+    void rangesSpanningTheLimitAreStitchedInOrder() {
+        List<Long> primes = new ArrayList<>();
+        engine.primesInRange(49_970, 50_060, primes::add);
+
+        assertEquals(List.of(49_991L, 49_993L, 49_999L, 50_021L, 50_023L, 50_033L, 50_047L, 50_051L, 50_053L), primes);
+    }
+}
@@ -0,0 +1,80 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedPrimeBitmapTest {
+    private static final long LIMIT = 20_000_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void bitTestMatchesMillerRabin() throws IOException {
+        try (MappedPrimeBitmap bitmap = MappedPrimeBitmap.openOrBuild(directory.resolve("primes.bitmap"), LIMIT)) {
+            for (long n = 0; n <= 2_000_000; n++) {
+                assertEquals(MillerRabin.isPrime(n), bitmap.isPrime(n), "Mismatch for " + n);
+            }
+            assertEquals(MillerRabin.isPrime(LIMIT - 1), bitmap.isPrime(LIMIT - 1));
+        }
+    }
+
+    @Test
+    void rankMatchesPrimeCounting() throws IOException {
+        try (MappedPrimeBitmap bitmap = MappedPrimeBitmap.openOrBuild(directory.resolve("primes.bitmap"), LIMIT)) {
+            assertEquals(1_270_607, bitmap.primeCount());
+            assertEquals(bitmap.primeCount(), bitmap.pi(LIMIT));
+            for (long x : new long[]{0, 1, 2, 3, 4, 1_023, 1_024, 1_025, 131_071, 131_072, 131_073, 1_000_000, 19_999_999}) {
+                assertEquals(PrimeCounting.pi(x), bitmap.pi(x), "pi(" + x + ")");
+            }
+        }
+    }
+
+    @Test
+    void selectMatchesSegmentedSieve() throws IOException {
+        try (MappedPrimeBitmap bitmap = MappedPrimeBitmap.openOrBuild(directory.resolve("primes.bitmap"), LIMIT)) {
+            for (long n = 1; n <= 20_000; n++) {
+                assertEquals(SegmentedSieve.nthPrime(n), bitmap.nthPrime(n), "p(" + n + ")");
+            }
+            assertEquals(SegmentedSieve.nthPrime(bitmap.primeCount()), bitmap.nthPrime(bitmap.primeCount()));
+            assertEquals(15_485_863, bitmap.nthPrime(1_000_000));
+        }
+    }
+
+    @Test
+    void reusesExistingFileAndRebuildsForDifferentLimit() throws IOException {
+        Path file = directory.resolve("primes.bitmap");
+        MappedPrimeBitmap.openOrBuild(file, 1_000_000).close();
+        FileTime built = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, built);
+
+        try (MappedPrimeBitmap reopened = MappedPrimeBitmap.openOrBuild(file, 1_000_000)) {
+            assertEquals(built, Files.getLastModifiedTime(file));
+            assertEquals(78_498, reopened.primeCount());
+        }
+        try (MappedPrimeBitmap rebuilt = MappedPrimeBitmap.openOrBuild(file, 2_000_000)) {
+            assertNotEquals(built, Files.getLastModifiedTime(file));
+            assertEquals(148_933, rebuilt.primeCount());
+        }
+    }
+
+    @Test
+    void rejectsQueriesOutsideTheBitmap() throws IOException {
+        try (MappedPrimeBitmap bitmap = MappedPrimeBitmap.openOrBuild(directory.resolve("primes.bitmap"), 1_000)) {
+            assertThrows(IllegalArgumentException.class, () -> bitmap.isPrime(1_001));
+            assertThrows(IllegalArgumentException.class, () -> bitmap.nthPrime(0));
+            assertThrows(IllegalArgumentException.class, () -> bitmap.nthPrime(bitmap.primeCount() + 1));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> MappedPrimeBitmap.openOrBuild(directory.resolve("too-large.bitmap"), MappedPrimeBitmap.DEFAULT_LIMIT + 1));
+    }
+}
@@ -0,0 +1,75 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MillerRabinTest {
+
+    @Test
+    void agreesWithSieveBelowTwoMillion() {
+        int limit = 2_000_000;
+        boolean[] composite = new boolean[limit];
+        composite[0] = true;
+        composite[1] = true;
+        for (int i = 2; (long) i * i < limit; i++) {
+            if (!composite[i]) {
+                for (int j = i * i; j < limit; j += i) {
+                    composite[j] = true;
+                }
+            }
+        }
+
+        for (int n = 0; n < limit; n++) {
+            assertEquals(!composite[n], MillerRabin.isPrime(n), "Mismatch for " + n);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {
+            2_147_483_647L,
+            4_294_967_291L,
+            4_294_967_311L,
+            1_000_000_000_039L,
+            2_305_843_009_213_693_951L,
+            9_223_372_036_854_775_783L
+    })
+    void recognisesLargePrimes(long prime) {
+        assertTrue(MillerRabin.isPrime(prime));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {
+            561L,
+            2_047L,
+            41_041L,
+            3_215_031_751L,
+            4_294_967_297L,
+            2_147_483_647L * 2_147_483_629L,
+            1_000_000_007L * 998_244_353L,
+            3_825_123_056_546_413_051L,
+            9_223_372_036_854_775_807L
+    })
+    void rejectsCompositesIncludingStrongPseudoprimes(long composite) {
+        assertFalse(MillerRabin.isPrime(composite));
+    }
+
+    @Test
+    void agreesWithBigIntegerAroundThirtyTwoBitBoundary() {
+        for (long n = 0xFFFF_0000L; n <= 0x1_0001_0000L; n++) {
+            assertEquals(BigInteger.valueOf(n).isProbablePrime(64), MillerRabin.isPrime(n), "Mismatch for " + n);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {-7, -1, 0, 1})
+    void treatsValuesBelowTwoAsNotPrime(long value) {
+        assertFalse(MillerRabin.isPrime(value));
+    }
+}
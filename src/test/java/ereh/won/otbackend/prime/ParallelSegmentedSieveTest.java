@@ -0,0 +1,81 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParallelSegmentedSieveTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {2, 1_000, 1_000_000, 2_000_000, 10_000_000})
+    void parallelSieveMatchesSequentialSieve(long position) {
+        ParallelSegmentedSieve sieve = new ParallelSegmentedSieve(pool, 0);
+
+        assertEquals(SegmentedSieve.nthPrime(position), sieve.nthPrimeAfter(1, 2, position));
+    }
+
+    @Test
+    void parallelSieveFindsPrimesAtChunkBoundaries() {
+        ParallelSegmentedSieve sieve = new ParallelSegmentedSieve(pool, 0);
+        long firstChunkPrimes = SegmentedSieve.countPrimes(0, 3 + ParallelSegmentedSieve.CHUNK_NUMBERS);
+
+        for (long position = firstChunkPrimes - 2; position <= firstChunkPrimes + 2; position++) {
+            assertEquals(SegmentedSieve.nthPrime(position), sieve.nthPrimeAfter(1, 2, position));
+        }
+    }
+
+    @Test
+    void parallelSieveContinuesFromKnownPosition() {
+        ParallelSegmentedSieve sieve = new ParallelSegmentedSieve(pool, 0);
+
+        assertEquals(179_424_673, sieve.nthPrimeAfter(1_000_000, 15_485_863, 10_000_000));
+    }
+
+    @Test
+    void parallelSieveOffersCheckpointsThatResolveToTheirPrimes() {
+        ParallelSegmentedSieve sieve = new ParallelSegmentedSieve(pool, 0);
+        Map<Long, Long> checkpoints = new TreeMap<>();
+
+        assertEquals(179_424_673, sieve.nthPrimeAfter(1, 2, 10_000_000,
+                SegmentedSieveTest.recordingSink(2_500_000, checkpoints)));
+
+        assertEquals(List.of(2_500_000L, 5_000_000L, 7_500_000L), List.copyOf(checkpoints.keySet()));
+        checkpoints.forEach((position, prime) -> assertEquals(SegmentedSieve.nthPrime(position), prime));
+    }
+
+    @Test
+    void sequentialSieveFallsBackToSegmentedSieve() {
+        ParallelSegmentedSieve sieve = ParallelSegmentedSieve.sequential();
+
+        assertEquals(1, sieve.parallelism());
+        assertEquals(15_485_863, sieve.nthPrimeAfter(1, 2, 1_000_000));
+    }
+
+    @Test
+    void primeTableUsesParallelSieveBeyondCapacity() {
+        PrimeTable table = new PrimeTable(1_000, new ParallelSegmentedSieve(pool, 0));
+
+        assertEquals(15_485_863, table.nthPrime(1_000_000));
+    }
+}
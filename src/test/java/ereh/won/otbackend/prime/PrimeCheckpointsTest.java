@@ -0,0 +1,90 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimeCheckpointsTest {
+
+    @Test
+    void writtenTableRoundTripsEveryIntervalPrime() throws IOException {
+        PrimeCheckpoints checkpoints = generate(1_000, 10_000_000);
+
+        assertEquals(1_000, checkpoints.interval());
+        assertEquals(664, checkpoints.size());
+        for (int i = 0; i < checkpoints.size(); i += 37) {
+            assertEquals((i + 1) * 1_000L, checkpoints.position(i));
+            assertEquals(SegmentedSieve.nthPrime(checkpoints.position(i)), checkpoints.prime(i));
+        }
+    }
+
+    @Test
+    void floorIndexFindsLastCheckpointAtOrBelowPosition() throws IOException {
+        PrimeCheckpoints checkpoints = generate(1_000, 1_000_000);
+
+        assertEquals(-1, checkpoints.floorIndex(1));
+        assertEquals(-1, checkpoints.floorIndex(999));
+        assertEquals(0, checkpoints.floorIndex(1_000));
+        assertEquals(0, checkpoints.floorIndex(1_999));
+        assertEquals(checkpoints.size() - 1, checkpoints.floorIndex(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    void generatedResourceCoversTheThirtyTwoBitRange() {
+        PrimeCheckpoints checkpoints = PrimeCheckpoints.load();
+
+        assertEquals(100_000, checkpoints.interval());
+        assertEquals(2_032, checkpoints.size());
+        assertEquals(1_299_709, checkpoints.prime(0));
+        assertEquals(SegmentedSieve.nthPrime(50_000_000), checkpoints.prime(499));
+        assertTrue(checkpoints.prime(checkpoints.size() - 1) <= PrimeCheckpoints.LIMIT);
+    }
+
+    @Test
+    void tableStartsFromCheckpointInsteadOfGrowing() throws IOException {
+        PrimeTable table = new PrimeTable(1_000_000, ParallelSegmentedSieve.sequential(), generate(10_000, 20_000_000));
+
+        assertEquals(15_485_863, table.nthPrime(1_000_000));
+        assertEquals(1, table.size());
+        assertEquals(104_729, table.nthPrime(10_000));
+        assertEquals(1, table.size());
+
+        assertEquals(7_919, table.nthPrime(1_000));
+        assertTrue(table.size() >= 1_000);
+    }
+
+    @Test
+    void continuesBeyondLastCheckpoint() throws IOException {
+        PrimeTable table = new PrimeTable(100, ParallelSegmentedSieve.sequential(), generate(1_000, 100_000));
+
+        assertEquals(SegmentedSieve.nthPrime(20_000), table.nthPrime(20_000));
+    }
+
+    @Test
+    void missingCheckpointsLeaveTableBehaviourUnchanged() {
+        PrimeTable table = new PrimeTable(10_000, ParallelSegmentedSieve.sequential(), PrimeCheckpoints.none());
+
+        assertEquals(104_729, table.nthPrime(10_000));
+        assertEquals(10_000, table.size());
+    }
+
+    @Test
+    void rejectsInvalidGeneratorArguments() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(IllegalArgumentException.class, () -> PrimeCheckpoints.write(out, 1, 1_000));
+        assertThrows(IllegalArgumentException.class, () -> PrimeCheckpoints.write(out, 100, PrimeCheckpoints.LIMIT + 1));
+        assertThrows(IOException.class, () -> PrimeCheckpoints.read(new ByteArrayInputStream(new byte[12])));
+    }
+
+    private static PrimeCheckpoints generate(int interval, long limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrimeCheckpoints.write(out, interval, limit);
+        return PrimeCheckpoints.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
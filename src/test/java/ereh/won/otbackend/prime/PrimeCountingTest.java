@@ -0,0 +1,81 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimeCountingTest {
+
+    @ParameterizedTest
+    @MethodSource("knownCounts")
+    void piMatchesKnownValues(long x, long expectedCount) {
+        assertEquals(expectedCount, PrimeCounting.pi(x));
+    }
+
+    private static Stream<Arguments> knownCounts() {
+        return Stream.of(
+                Arguments.of(0, 0),
+                Arguments.of(1, 0),
+                Arguments.of(2, 1),
+                Arguments.of(10, 4),
+                Arguments.of(100, 25),
+                Arguments.of(1_000, 168),
+                Arguments.of(1_000_000, 78_498),
+                Arguments.of(1_000_000_000L, 50_847_534),
+                Arguments.of(2_147_483_647L, 105_097_565),
+                Arguments.of(10_000_000_000L, 455_052_511)
+        );
+    }
+
+    @Test
+    void piMatchesSieveCounts() {
+        for (long x = 2; x < 200_000; x += 997) {
+            assertEquals(SegmentedSieve.countPrimes(0, x + 1), PrimeCounting.pi(x), "Mismatch for " + x);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 5, 6, 7, 1_000, 39_017, 250_000, 1_000_000})
+    void nthPrimeMatchesSegmentedSieve(long position) {
+        assertEquals(SegmentedSieve.nthPrime(position), PrimeCounting.nthPrime(position));
+    }
+
+    @Test
+    void nthPrimeReachesLargePositionsThroughWindowedSieve() {
+        assertEquals(2_038_074_743L, PrimeCounting.nthPrime(100_000_000));
+        assertEquals(22_801_763_489L, PrimeCounting.nthPrime(1_000_000_000));
+    }
+
+    @Test
+    void nthPrimeReportsProgressWhileCounting() {
+        List<Long> reports = new ArrayList<>();
+
+        long prime = PrimeProgress.track(reports::add, () -> PrimeCounting.nthPrime(100_000_000));
+
+        assertEquals(2_038_074_743L, prime);
+        assertTrue(reports.size() > 100, "expected reports from the counting loop");
+        assertTrue(reports.getFirst() < 50_000_000, "the first report should come early");
+        assertTrue(reports.getLast() > 90_000_000 && reports.getLast() < 100_000_000);
+        for (int i = 1; i < reports.size(); i++) {
+            assertTrue(reports.get(i) >= reports.get(i - 1));
+        }
+    }
+
+    @Test
+    void piAloneReportsNothing() {
+        List<Long> reports = new ArrayList<>();
+
+        PrimeProgress.track(reports::add, () -> PrimeCounting.pi(1_000_000_000L));
+
+        assertEquals(List.of(), reports);
+    }
+}
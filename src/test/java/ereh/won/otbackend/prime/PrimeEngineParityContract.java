@@ -0,0 +1,105 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contract every {@link PrimeEngine} must satisfy. Implementing classes run these default tests to
+ * show the engines are interchangeable.
+ */
+public interface PrimeEngineParityContract {
+
+    PrimeEngine engine();
+
+    @Test
+    default void nthPrimeMatchesKnownValues() {
+        assertEquals(2, engine().nthPrime(1));
+        assertEquals(3, engine().nthPrime(2));
+        assertEquals(29, engine().nthPrime(10));
+        assertEquals(7_919, engine().nthPrime(1_000));
+        assertEquals(104_729, engine().nthPrime(10_000));
+    }
+
+    @Test
+    default void nthPrimeAgreesWithSegmentedSieve() {
+        for (long position = 1; position <= 3_000; position += 7) {
+            assertEquals(SegmentedSieve.nthPrime(position), engine().nthPrime(position), "p(" + position + ")");
+        }
+    }
+
+    @Test
+    default void nthPrimesAnswersBatchesLikeSingleLookups() {
+        long[] positions = {1, 2, 10, 10, 999, 1_000, 5_133, 5_134, 20_000};
+
+        long[] primes = engine().nthPrimes(positions);
+
+        for (int i = 0; i < positions.length; i++) {
+            assertEquals(SegmentedSieve.nthPrime(positions[i]), primes[i], "p(" + positions[i] + ")");
+        }
+        assertEquals(0, engine().nthPrimes(new long[0]).length);
+        assertThrows(IllegalArgumentException.class, () -> engine().nthPrimes(new long[]{10, 9}));
+    }
+
+    @Test
+    default void nthPrimeAfterContinuesFromAKnownPair() {
+        assertEquals(7_927, engine().nthPrimeAfter(1_000, 7_919, 1_001));
+        assertEquals(104_729, engine().nthPrimeAfter(9_000, 93_179, 10_000));
+        // pairs that are not below the position are ignored
+        assertEquals(29, engine().nthPrimeAfter(1_000, 7_919, 10));
+        assertEquals(29, engine().nthPrimeAfter(10, 29, 10));
+        assertEquals(29, engine().nthPrimeAfter(0, 0, 10));
+
+        long[] positions = {1_001, 1_002, 5_134};
+        long[] primes = engine().nthPrimesAfter(1_000, 7_919, positions);
+        for (int i = 0; i < positions.length; i++) {
+            assertEquals(SegmentedSieve.nthPrime(positions[i]), primes[i], "p(" + positions[i] + ")");
+        }
+    }
+
+    @Test
+    default void isPrimeAgreesWithMillerRabin() {
+        for (long candidate = -3; candidate <= 20_000; candidate++) {
+            assertEquals(MillerRabin.isPrime(candidate), engine().isPrime(candidate), "isPrime(" + candidate + ")");
+        }
+        assertTrue(engine().isPrime(2_147_483_647L));
+        assertFalse(engine().isPrime(3_215_031_751L));
+    }
+
+    @Test
+    default void primesInRangeVisitsHalfOpenRangeInOrder() {
+        List<Long> primes = new ArrayList<>();
+        engine().primesInRange(0, 30, primes::add);
+        assertEquals(List.of(2L, 3L, 5L, 7L, 11L, 13L, 17L, 19L, 23L, 29L), primes);
+
+        primes.clear();
+        engine().primesInRange(7_900, 7_920, primes::add);
+        assertEquals(List.of(7_901L, 7_907L, 7_919L), primes);
+
+        primes.clear();
+        engine().primesInRange(30, 30, primes::add);
+        assertTrue(primes.isEmpty());
+    }
+
+    @Test
+    default void primesInRangeStopsWhenActionDeclines() {
+        List<Long> primes = new ArrayList<>();
+        engine().primesInRange(100, 1_000, prime -> {
+            primes.add(prime);
+            return primes.size() < 3;
+        });
+        assertEquals(List.of(101L, 103L, 107L), primes);
+    }
+
+    @Test
+    default void rejectsNonPositivePositions() {
+        assertThrows(IllegalArgumentException.class, () -> engine().nthPrime(0));
+        assertThrows(IllegalArgumentException.class, () -> engine().nthPrime(-5));
+    }
+}
@@ -0,0 +1,38 @@
+package ereh.won.otbackend.prime;
+
+import ereh.won.otbackend.PrimesService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+    "prime.cache.backend=MEMORY",
+    "prime.compute.engine=AUTO",
+    "prime.compute.auto-tune.range-boundaries=100,10000",
+    "prime.compute.auto-tune.budget=50ms"
+})
+class PrimeEngineSelectionIntegrationTest {
+
+    @Autowired
+    private PrimeEngine primeEngine;
+
+    @Autowired
+    private PrimesService primesService;
+
+    @Test
+    void autoEngineIsTunedAtStartup() {
+        AutoTunedPrimeEngine tuned = assertInstanceOf(AutoTunedPrimeEngine.class, primeEngine);
+        assertTrue(tuned.name().startsWith("auto[1:"), tuned.name());
+    }
+
+    @Test
+    void serviceComputesThroughTheConfiguredEngine() {
+        assertEquals(104_743, primesService.getPrime(10_001));
+    }
+}
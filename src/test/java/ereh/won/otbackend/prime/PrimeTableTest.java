@@ -0,0 +1,146 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimeTableTest {
+
+    @Test
+    void growsLazilyToRequestedPosition() {
+        PrimeTable table = new PrimeTable(1_000_000);
+        assertEquals(1, table.size());
+
+        assertEquals(29, table.nthPrime(10));
+        assertTrue(table.size() >= 10);
+        assertTrue(table.size() <= PrimeTable.MIN_EXTENSION + 1);
+
+        assertEquals(15_485_863, table.nthPrime(1_000_000));
+        assertEquals(1_000_000, table.size());
+    }
+
+    @Test
+    void answersPositionsBelowHighWaterMarkWithoutGrowing() {
+        PrimeTable table = new PrimeTable(100_000);
+        table.nthPrime(50_000);
+        int size = table.size();
+
+        assertEquals(7_919, table.nthPrime(1_000));
+        assertEquals(2, table.nthPrime(1));
+        assertEquals(size, table.size());
+    }
+
+    @Test
+    void continuesSieveBeyondCapacityFromLastEntry() {
+        PrimeTable table = new PrimeTable(1_000);
+
+        assertEquals(104_729, table.nthPrime(10_000));
+        assertEquals(1_000, table.size());
+    }
+
+    @Test
+    void jumpsWithPrimeCountingWhenAnswerIsFarBeyondCapacity() {
+        PrimeTable table = new PrimeTable(1_000);
+
+        assertEquals(179_424_673, table.nthPrime(10_000_000));
+        assertEquals(1_000, table.size());
+    }
+
+    @Test
+    void continuesFromAHintCloserThanTheTable() {
+        PrimeTable table = new PrimeTable(1_000);
+
+        assertEquals(15_485_867, table.nthPrimeAfter(1_000_000, 15_485_863, 1_000_001));
+        assertEquals(104_729, table.nthPrimeAfter(5, 11, 10_000));
+        assertEquals(1_000, table.size());
+    }
+
+    @Test
+    void estimatesNothingBelowTheTableAndLessFromACloserHint() {
+        PrimeTable table = new PrimeTable(1_000);
+        table.nthPrime(1_000);
+
+        assertEquals(0, table.estimateCost(0, 0, 500));
+        long fromTable = table.estimateCost(0, 0, 1_000_000);
+        long fromHint = table.estimateCost(999_000, 15_472_019, 1_000_000);
+        assertTrue(fromHint < fromTable / 100, fromHint + " against " + fromTable);
+        assertTrue(table.estimateCost(0, 0, 10_000_000_000L) > 1_000_000,
+                "prime counting jumps should not look free");
+    }
+
+    @Test
+    void estimatesBatchesPerPass() {
+        PrimeTable table = new PrimeTable(1_000);
+        table.nthPrime(1_000);
+
+        long onePass = table.estimateCost(0, 0, new long[]{1_000_000, 1_000_100, 1_001_000});
+        assertTrue(onePass < table.estimateCost(0, 0, 1_001_000) * 1.01, "nearby positions share a sieve");
+        assertEquals(0, table.estimateCost(0, 0, new long[]{10, 500, 1_000}));
+
+        long[] farApart = {10_000_000, 20_000_000, 40_000_000};
+        long separate = 0;
+        for (long position : farApart) {
+            separate += table.estimateCost(0, 0, position);
+        }
+        assertEquals(separate, table.estimateCost(0, 0, farApart), "every far position is its own jump");
+    }
+
+    @Test
+    void answersBatchesOfPositionsLikeSingleLookups() {
+        PrimeTable table = new PrimeTable(1_000, ParallelSegmentedSieve.sequential(), checkpoints(50_000, 200_000_000));
+        long[] positions = {1, 10, 1_000, 1_001, 1_001, 5_000, 60_000, 60_001, 100_000, 3_000_000, 10_000_000};
+
+        long[] primes = table.nthPrimes(positions);
+
+        for (int i = 0; i < positions.length; i++) {
+            assertEquals(SegmentedSieve.nthPrime(positions[i]), primes[i], "p(" + positions[i] + ")");
+        }
+        assertEquals(1_000, table.size());
+        assertThrows(IllegalArgumentException.class, () -> table.nthPrimes(new long[]{10, 5}));
+    }
+
+    @Test
+    void concurrentReadersSeeConsistentPrimesWhileTableGrows() throws Exception {
+        PrimeTable table = new PrimeTable(500_000);
+        List<Future<Long>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 64; i++) {
+                long position = 1 + (i * 7_919L) % 500_000;
+                results.add(executor.submit(() -> table.nthPrime(position)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                long position = 1 + (i * 7_919L) % 500_000;
+                assertEquals(SegmentedSieve.nthPrime(position), results.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    void rejectsInvalidCapacityAndPositions() {
+        assertThrows(IllegalArgumentException.class, () -> new PrimeTable(0));
+        assertThrows(IllegalArgumentException.class, () -> new PrimeTable(PrimeTable.MAX_CAPACITY + 1));
+        assertThrows(IllegalArgumentException.class, () -> new PrimeTable(10).nthPrime(0));
+    }
+
+    private static PrimeCheckpoints checkpoints(int interval, long limit) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrimeCheckpoints.write(bytes, interval, limit);
+            return PrimeCheckpoints.read(new ByteArrayInputStream(bytes.toByteArray()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedSieveTest {
+
+    @ParameterizedTest
+    @MethodSource("knownPrimes")
+    void nthPrimeMatchesKnownValues(long position, long expectedPrime) {
+        assertEquals(expectedPrime, SegmentedSieve.nthPrime(position));
+    }
+
+    private static Stream<Arguments> knownPrimes() {
+        return Stream.of(
+                Arguments.of(1, 2),
+                Arguments.of(2, 3),
+                Arguments.of(6, 13),
+                Arguments.of(1_000, 7_919),
+                Arguments.of(39_017, 467_473),
+                Arguments.of(82_025, 1_048_573),
+                Arguments.of(1_000_000, 15_485_863),
+                Arguments.of(10_000_000, 179_424_673)
+        );
+    }
+
+    @Test
+    void nthPrimeMatchesTrialDivisionAcrossSegmentBoundaries() {
+        long firstSegmentEnd = 3 + 2L * SegmentedSieve.SEGMENT_BITS;
+        List<Integer> primes = new ArrayList<>(List.of(2));
+        int firstSegmentPrimes = 0;
+        for (int candidate = 3; candidate < 3 * firstSegmentEnd; candidate += 2) {
+            if (isPrimeByTrialDivision(candidate)) {
+                primes.add(candidate);
+                if (candidate < firstSegmentEnd) {
+                    firstSegmentPrimes = primes.size();
+                }
+            }
+        }
+
+        for (int position = 1; position <= primes.size(); position++) {
+            boolean nearBoundary = Math.abs(position - firstSegmentPrimes) <= 50;
+            if (nearBoundary || position % 97 == 0) {
+                assertEquals((long) primes.get(position - 1), SegmentedSieve.nthPrime(position), "Mismatch at position " + position);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 5, 6, 100, 39_016, 39_017, 1_000_000, 50_000_000})
+    void upperBoundIsNeverBelowTheNthPrime(long position) {
+        assertTrue(SegmentedSieve.upperBound(position) >= SegmentedSieve.nthPrime(position));
+    }
+
+    @Test
+    void nthPrimeAfterContinuesFromKnownPosition() {
+        assertEquals(15_485_863, SegmentedSieve.nthPrimeAfter(1_000, 7_919, 1_000_000));
+        assertEquals(7_927, SegmentedSieve.nthPrimeAfter(1_000, 7_919, 1_001));
+        assertThrows(IllegalArgumentException.class, () -> SegmentedSieve.nthPrimeAfter(1_000, 7_919, 1_000));
+    }
+
+    @Test
+    void nthPrimesAfterAnswersAscendingPositionsInOnePass() {
+        long[] positions = {999, 1_001, 1_001, 5_000, 100_000, 1_000_000};
+        long[] primes = new long[positions.length];
+
+        SegmentedSieve.nthPrimesAfter(1_000, 7_919, positions, 1, positions.length, primes);
+
+        assertEquals(0, primes[0]);
+        assertEquals(7_927, primes[1]);
+        assertEquals(7_927, primes[2]);
+        assertEquals(48_611, primes[3]);
+        assertEquals(1_299_709, primes[4]);
+        assertEquals(15_485_863, primes[5]);
+        assertThrows(IllegalArgumentException.class,
+                () -> SegmentedSieve.nthPrimesAfter(1_000, 7_919, positions, 0, 2, primes));
+    }
+
+    @Test
+    void offersCheckpointsStrictlyBetweenKnownPositionAndAnswer() {
+        Map<Long, Long> checkpoints = new TreeMap<>();
+
+        assertEquals(15_485_863, SegmentedSieve.nthPrimeAfter(1_000, 7_919, 1_000_000, recordingSink(250_000, checkpoints)));
+
+        assertEquals(Map.of(250_000L, 3_497_861L, 500_000L, 7_368_787L, 750_000L, SegmentedSieve.nthPrime(750_000)), checkpoints);
+    }
+
+    @Test
+    void batchOffersCheckpointsBelowItsLastPosition() {
+        Map<Long, Long> checkpoints = new TreeMap<>();
+        long[] positions = {1_001, 100_000, 500_000};
+
+        SegmentedSieve.nthPrimesAfter(1_000, 7_919, positions, 0, positions.length, new long[positions.length],
+                recordingSink(100_000, checkpoints));
+
+        assertEquals(List.of(100_000L, 200_000L, 300_000L, 400_000L), List.copyOf(checkpoints.keySet()));
+        assertEquals(1_299_709, checkpoints.get(100_000L));
+        assertEquals(SegmentedSieve.nthPrime(400_000), checkpoints.get(400_000L));
+    }
+
+    @Test
+    void reportsPrimesCountedToTheTrackingCaller() {
+        List<Long> reports = new ArrayList<>();
+
+        long prime = PrimeProgress.track(reports::add, () -> SegmentedSieve.nthPrime(1_000_000));
+
+        assertEquals(15_485_863, prime);
+        assertTrue(reports.size() > 1, "expected a report per segment");
+        assertTrue(reports.getLast() <= 1_000_000);
+        for (int i = 1; i < reports.size(); i++) {
+            assertTrue(reports.get(i) > reports.get(i - 1));
+        }
+        int reported = reports.size();
+        SegmentedSieve.nthPrime(100_000);
+        assertEquals(reported, reports.size(), "nothing should be reported outside track");
+    }
+
+    @Test
+    void forEachPrimeVisitsPrimesInHalfOpenRange() {
+        List<Long> visited = new ArrayList<>();
+        SegmentedSieve.forEachPrime(0, 30, visited::add);
+        assertEquals(List.of(2L, 3L, 5L, 7L, 11L, 13L, 17L, 19L, 23L, 29L), visited);
+
+        visited.clear();
+        SegmentedSieve.forEachPrime(7_919, 7_950, visited::add);
+        assertEquals(List.of(7_919L, 7_927L, 7_933L, 7_937L, 7_949L), visited);
+    }
+
+    @Test
+    void forEachPrimeStopsWhenActionDeclines() {
+        List<Long> visited = new ArrayList<>();
+        SegmentedSieve.forEachPrime(2, 1_000_000, prime -> visited.add(prime) && visited.size() < 4);
+        assertEquals(List.of(2L, 3L, 5L, 7L), visited);
+    }
+
+    @Test
+    void rejectsNonPositivePositions() {
+        assertThrows(IllegalArgumentException.class, () -> SegmentedSieve.nthPrime(0));
+        assertThrows(IllegalArgumentException.class, () -> SegmentedSieve.nthPrime(-3));
+    }
+
+    static PrimeCheckpointSink recordingSink(long interval, Map<Long, Long> checkpoints) {
+        return new PrimeCheckpointSink() {
+            @Override
+            public long interval() {
+                return interval;
+            }
+
+            @Override
+            public void offer(long position, LongSupplier prime) {
+                checkpoints.put(position, prime.getAsLong());
+            }
+        };
+    }
+
+    private static boolean isPrimeByTrialDivision(int candidate) {
+        for (int divisor = 3; divisor * divisor <= candidate; divisor += 2) {
+            if (candidate % divisor == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
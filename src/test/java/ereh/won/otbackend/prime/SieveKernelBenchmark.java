@@ -0,0 +1,70 @@
+package ereh.won.otbackend.prime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and vector sieve kernels, both per operation and over a full sieve run.
+ * Run through {@code org.openjdk.jmh.Main} on the test classpath, as shown in the README.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SieveKernelBenchmark {
+    private static final long SIEVE_FROM = 1_000_000_000L;
+    private static final long SIEVE_TO = SIEVE_FROM + 64L * SegmentedSieve.SEGMENT_BITS;
+
+    @Param({"scalar", "vector"})
+    public String kernelName;
+
+    private SieveKernel kernel;
+    private long[] segment;
+    private long[] bitmap;
+    private int[] basePrimes;
+    private long offset;
+
+    @Setup
+    public void setUp() {
+        kernel = SieveKernels.select(kernelName);
+        segment = new long[SegmentedSieve.SEGMENT_WORDS];
+        bitmap = new SplittableRandom(42).longs(SegmentedSieve.SEGMENT_WORDS).toArray();
+        basePrimes = SegmentedSieve.oddPrimesUpTo(SegmentedSieve.isqrt(SIEVE_TO));
+    }
+
+    @Benchmark
+    public long[] stamp() {
+        offset = (offset + 4099) % SegmentedSieve.PRESIEVE_PERIOD;
+        kernel.stamp(segment, segment.length, SegmentedSieve.PRESIEVE_PATTERN, offset);
+        return segment;
+    }
+
+    @Benchmark
+    public int countSet() {
+        return kernel.countSet(bitmap, SegmentedSieve.SEGMENT_BITS);
+    }
+
+    @Benchmark
+    public long sieve() {
+        SegmentedSieve.Cursor cursor = new SegmentedSieve.Cursor(SIEVE_FROM, SIEVE_TO, basePrimes, kernel);
+        long count = 0;
+        while (cursor.next()) {
+            count += cursor.countPrimes();
+        }
+        return count;
+    }
+}
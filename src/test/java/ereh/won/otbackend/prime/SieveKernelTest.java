@@ -0,0 +1,89 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SieveKernelTest {
+
+    @Test
+    void scalarKernelCanBeSelectedExplicitly() {
+        assertSame(ScalarSieveKernel.INSTANCE, SieveKernels.select("scalar"));
+    }
+
+    @Test
+    void vectorKernelIsSelectedWhenModuleIsResolved() {
+        assumeTrue(SieveKernels.vectorAvailable());
+
+        assertTrue(SieveKernels.select("auto").name().startsWith("vector"));
+        assertTrue(SieveKernels.select("VECTOR").name().startsWith("vector"));
+    }
+
+    @Test
+    void rejectsUnknownKernel() {
+        assertThrows(IllegalArgumentException.class, () -> SieveKernels.select("gpu"));
+    }
+
+    @Test
+    void stampedPatternMarksExactlyTheMultiplesOfPresievePrimes() {
+        long[] segment = new long[SegmentedSieve.SEGMENT_WORDS];
+        long low = 1_000_001;
+        ScalarSieveKernel.INSTANCE.stamp(segment, segment.length, SegmentedSieve.PRESIEVE_PATTERN, (low >>> 1) % SegmentedSieve.PRESIEVE_PERIOD);
+
+        for (int i = 0; i < SegmentedSieve.SEGMENT_BITS; i++) {
+            long n = low + 2L * i;
+            boolean multiple = Arrays.stream(SegmentedSieve.PRESIEVE_PRIMES).anyMatch(p -> n % p == 0);
+            assertEquals(multiple, (segment[i >>> 6] & (1L << i)) != 0, "Mismatch for " + n);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 7, 8, 63, 64, 65, 1000, SegmentedSieve.SEGMENT_WORDS})
+    void vectorKernelMatchesScalarKernel(int words) {
+        assumeTrue(SieveKernels.vectorAvailable());
+        SieveKernel vector = SieveKernels.select("vector");
+        SieveKernel scalar = ScalarSieveKernel.INSTANCE;
+        long[] pattern = SegmentedSieve.PRESIEVE_PATTERN;
+
+        for (long offset = 0; offset < SegmentedSieve.PRESIEVE_PERIOD; offset += 97) {
+            long[] expected = new long[words];
+            long[] actual = new long[words];
+            scalar.stamp(expected, words, pattern, offset);
+            vector.stamp(actual, words, pattern, offset);
+            assertArrayEquals(expected, actual, "Stamp mismatch at offset " + offset);
+        }
+
+        long[] random = new SplittableRandom(words).longs(words).toArray();
+        for (int bits = 0; bits <= words * Long.SIZE; bits += 37) {
+            assertEquals(scalar.countSet(random, bits), vector.countSet(random, bits), "Count mismatch for " + bits + " bits");
+        }
+    }
+
+    @Test
+    void bothKernelsSieveIdentically() {
+        int[] basePrimes = SegmentedSieve.oddPrimesUpTo(SegmentedSieve.isqrt(3_000_000));
+        assertEquals(216_816, countWith(ScalarSieveKernel.INSTANCE, basePrimes));
+        if (SieveKernels.vectorAvailable()) {
+            assertEquals(216_816, countWith(SieveKernels.select("vector"), basePrimes));
+        }
+    }
+
+    private static long countWith(SieveKernel kernel, int[] basePrimes) {
+        SegmentedSieve.Cursor cursor = new SegmentedSieve.Cursor(0, 2_999_999, basePrimes, kernel);
+        long count = 1;
+        while (cursor.next()) {
+            count += cursor.countPrimes();
+        }
+        return count;
+    }
+}
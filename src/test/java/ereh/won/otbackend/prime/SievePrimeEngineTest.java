@@ -0,0 +1,35 @@
+package ereh.won.otbackend.prime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SievePrimeEngineTest implements PrimeEngineParityContract {
+    private final PrimeEngine engine = new SievePrimeEngine(new PrimeTable(50_000));
+
+    @Override
+    public PrimeEngine engine() {
+        return engine;
+    }
+
+    @Test
+    void reachesPositionsBeyondItsTable() {
+        assertEquals(179_424_673, engine.nthPrime(10_000_000));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1, 2", "6, 13", "50, 229", "1000000, 15485863", "200000000, 4222234741"})
+    void defaultEngineAnswersPositionsUpToAndBeyondIntRange(long position, long expectedPrime) {
+        assertEquals(expectedPrime, new SievePrimeEngine().nthPrime(position));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {2_147_483_647L, 4_222_234_741L, 1_000_000_000_039L})
+    void recognisesPrimesBeyondIntRange(long candidate) {
+        assertTrue(engine.isPrime(candidate));
+    }
+}
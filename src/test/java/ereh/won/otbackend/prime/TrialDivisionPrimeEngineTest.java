@@ -0,0 +1,10 @@
+package ereh.won.otbackend.prime;
+
+class TrialDivisionPrimeEngineTest implements PrimeEngineParityContract {
+    private final PrimeEngine engine = new TrialDivisionPrimeEngine();
+
+    @Override
+    public PrimeEngine engine() {
+        return engine;
+    }
+}